@@ -0,0 +1,152 @@
+package com.telenor.possumcore;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.hardware.TriggerEvent;
+import android.hardware.TriggerEventListener;
+import android.os.Build;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+
+import com.telenor.possumcore.constants.GateTrigger;
+import com.telenor.possumcore.interfaces.IGateListener;
+
+/**
+ * Listens for the cheap events that tell the user is likely using the phone, like significant
+ * motion, the screen turning on or steps, and tells a listener when one fires. Used by PossumCore
+ * to only run costly detectors when there is something worth detecting.
+ */
+public class DetectorGate {
+    private final Context context;
+    private final IGateListener listener;
+    private final SensorManager sensorManager;
+    private int triggers;
+    private int started; // The triggers presently listened for
+    private Object motionListener; // TriggerEventListener, kept as object for api 17
+    private final SensorEventListener stepListener = new SensorEventListener() {
+        @Override
+        public void onSensorChanged(SensorEvent sensorEvent) {
+            listener.gateTriggered(GateTrigger.StepDetected);
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        }
+    };
+    private final BroadcastReceiver screenReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (Intent.ACTION_SCREEN_ON.equals(intent.getAction()))
+                listener.gateTriggered(GateTrigger.ScreenOn);
+        }
+    };
+
+    /**
+     * Constructor for the gate
+     *
+     * @param context  a valid android context
+     * @param listener the listener told about triggers
+     */
+    public DetectorGate(@NonNull Context context, @NonNull IGateListener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+        sensorManager = (SensorManager) this.context.getSystemService(Context.SENSOR_SERVICE);
+    }
+
+    /**
+     * Sets which triggers to listen for. Takes effect the next time the gate is started.
+     *
+     * @param triggers GateTrigger flags
+     */
+    public void setTriggers(int triggers) {
+        this.triggers = triggers;
+    }
+
+    /**
+     * The triggers the gate listens for when started
+     *
+     * @return GateTrigger flags
+     */
+    public int triggers() {
+        return triggers;
+    }
+
+    /**
+     * The triggers actually listened for, missing those the phone does not support
+     *
+     * @return GateTrigger flags, None if stopped
+     */
+    public int started() {
+        return started;
+    }
+
+    /**
+     * Starts listening for the triggers
+     *
+     * @param handler handler for the thread the screen and step events are delivered on
+     */
+    public void start(@NonNull Handler handler) {
+        if (started != GateTrigger.None) return;
+        if ((triggers & GateTrigger.ScreenOn) != 0) {
+            context.registerReceiver(screenReceiver, new IntentFilter(Intent.ACTION_SCREEN_ON), null, handler);
+            started |= GateTrigger.ScreenOn;
+        }
+        if (sensorManager == null) return;
+        if ((triggers & GateTrigger.SignificantMotion) != 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            if (requestMotion()) started |= GateTrigger.SignificantMotion;
+        }
+        if ((triggers & GateTrigger.StepDetected) != 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            Sensor step = sensorManager.getDefaultSensor(Sensor.TYPE_STEP_DETECTOR);
+            if (step != null && sensorManager.registerListener(stepListener, step, SensorManager.SENSOR_DELAY_NORMAL, handler))
+                started |= GateTrigger.StepDetected;
+        }
+    }
+
+    /**
+     * Stops listening for all triggers
+     */
+    public void stop() {
+        if ((started & GateTrigger.ScreenOn) != 0)
+            context.unregisterReceiver(screenReceiver);
+        if ((started & GateTrigger.SignificantMotion) != 0)
+            cancelMotion();
+        if ((started & GateTrigger.StepDetected) != 0)
+            sensorManager.unregisterListener(stepListener);
+        started = GateTrigger.None;
+    }
+
+    /**
+     * Significant motion is a one shot sensor, so it is requested again each time it fires
+     *
+     * @return true if the phone has the sensor
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private boolean requestMotion() {
+        Sensor motion = sensorManager.getDefaultSensor(Sensor.TYPE_SIGNIFICANT_MOTION);
+        if (motion == null) return false;
+        if (motionListener == null) {
+            motionListener = new TriggerEventListener() {
+                @Override
+                public void onTrigger(TriggerEvent triggerEvent) {
+                    if ((started & GateTrigger.SignificantMotion) == 0) return;
+                    requestMotion();
+                    listener.gateTriggered(GateTrigger.SignificantMotion);
+                }
+            };
+        }
+        return sensorManager.requestTriggerSensor((TriggerEventListener) motionListener, motion);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private void cancelMotion() {
+        Sensor motion = sensorManager.getDefaultSensor(Sensor.TYPE_SIGNIFICANT_MOTION);
+        if (motion != null) sensorManager.cancelTriggerSensor((TriggerEventListener) motionListener, motion);
+    }
+}
@@ -7,6 +7,8 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.res.Configuration;
 import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.support.annotation.NonNull;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.content.ContextCompat;
@@ -15,6 +17,7 @@ import android.util.Log;
 import com.telenor.possumcore.abstractdetectors.AbstractDetector;
 import com.telenor.possumcore.constants.Constants;
 import com.telenor.possumcore.constants.CoreStatus;
+import com.telenor.possumcore.constants.GateTrigger;
 import com.telenor.possumcore.detectors.Accelerometer;
 import com.telenor.possumcore.detectors.AmbientSoundDetector;
 import com.telenor.possumcore.detectors.BluetoothDetector;
@@ -22,10 +25,13 @@ import com.telenor.possumcore.detectors.GyroScope;
 import com.telenor.possumcore.detectors.HardwareDetector;
 import com.telenor.possumcore.detectors.ImageDetector;
 import com.telenor.possumcore.detectors.LocationDetector;
+import com.telenor.possumcore.detectors.MultiSensorDetector;
 import com.telenor.possumcore.detectors.NetworkDetector;
 import com.telenor.possumcore.interfaces.IDetectorChange;
+import com.telenor.possumcore.interfaces.ISensorDelivery;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -52,6 +58,14 @@ public abstract class PossumCore implements IDetectorChange {
     private List<IDetectorChange> changeListeners = new ArrayList<>();
     private AtomicBoolean deniedCamera = new AtomicBoolean(false);
     private long timeOut = 3000; // Default timeOut
+    private long memoryBudget; // Bytes all dataSets may use together, 0 for no budget
+    private final Runnable memoryCheck = this::checkMemory;
+    private static final long memoryCheckInterval = 1000;
+    private HandlerThread sensorThread; // Delivers sensor events while listening, off the main thread
+    private final DetectorGate gate;
+    private long burstMillis; // How long costly detectors run each time the gate opens
+    private volatile boolean gateOpen;
+    private final Runnable closeGate = this::closeGate;
 
     private static final String tag = PossumCore.class.getName();
 
@@ -66,6 +80,7 @@ public abstract class PossumCore implements IDetectorChange {
         for (AbstractDetector detector : detectors)
             detector.setUniqueUserId(uniqueUserId);
         userId = uniqueUserId;
+        gate = new DetectorGate(context, trigger -> openGate());
     }
 
     /**
@@ -103,6 +118,30 @@ public abstract class PossumCore implements IDetectorChange {
         addDetector(new LocationDetector(context, this));
         addDetector(new ImageDetector(context, "tensorflow_facerecognition.pb", this));
         addDetector(new BluetoothDetector(context, this));
+        addDetector(new MultiSensorDetector(context, this));
+    }
+
+    /**
+     * Aligns the accelerometer and the gyroscope into one 6-axis stream with a uniform rate,
+     * stored in the "aligned" dataSet of the accelerometer. Off by default, as both sensors are
+     * then kept at the aligned rate and no longer slow down while the device lies still. Call it
+     * before listening starts.
+     *
+     * @param periodMillis     milliseconds between aligned samples
+     * @param maxLatencyMillis how long to wait for a lagging sensor before skipping ahead
+     * @return false if the device lacks one of the sensors, else true
+     */
+    public boolean alignMotionSensors(int periodMillis, int maxLatencyMillis) {
+        Accelerometer accelerometer = null;
+        GyroScope gyroScope = null;
+        for (AbstractDetector detector : detectors) {
+            if (detector instanceof Accelerometer) accelerometer = (Accelerometer) detector;
+            else if (detector instanceof GyroScope) gyroScope = (GyroScope) detector;
+        }
+        if (accelerometer == null || gyroScope == null || !accelerometer.isEnabled() || !gyroScope.isEnabled())
+            return false;
+        accelerometer.alignWith(gyroScope, periodMillis, maxLatencyMillis);
+        return true;
     }
 
     /**
@@ -116,18 +155,229 @@ public abstract class PossumCore implements IDetectorChange {
             return false;
         // Question: What happens if it is paused or processing? Should it start a new data set?
 //        Log.i(tag, "AP: Start Listening");
+        Handler sensorHandler = startSensorThread();
         for (AbstractDetector detector : detectors) {
+            detector.clearData(); // Only here, so bursts of gated detectors add to each other
             if (detector instanceof ImageDetector && deniedCamera.get())
                 continue;
+            if (detector instanceof ISensorDelivery)
+                ((ISensorDelivery) detector).setSensorHandler(sensorHandler);
+            if (isGated() && detector.isCostly())
+                continue;
             executorService.submit(detector);
         }
         status.set(CoreStatus.Running);
+        if (isGated()) {
+            gate.start(handler);
+        }
         if (timeOut > 0) {
             handler.postDelayed(this::stopListening, timeOut);
         }
+        if (memoryBudget > 0) {
+            handler.postDelayed(memoryCheck, memoryCheckInterval);
+        }
         return true;
     }
 
+    /**
+     * Starts the thread all sensor detectors get their events on, keeping them off the main
+     * thread so sensor events and UI frames do not delay each other
+     *
+     * @return a handler for the sensor thread
+     */
+    private Handler startSensorThread() {
+        if (sensorThread == null) {
+            sensorThread = new HandlerThread("PossumSensors", Process.THREAD_PRIORITY_DISPLAY);
+            sensorThread.start();
+        }
+        return new Handler(sensorThread.getLooper());
+    }
+
+    private void stopSensorThread() {
+        if (sensorThread == null) return;
+        for (AbstractDetector detector : detectors) {
+            if (detector instanceof ISensorDelivery)
+                ((ISensorDelivery) detector).setSensorHandler(null);
+        }
+        sensorThread.quit();
+        sensorThread = null;
+    }
+
+    /**
+     * Makes costly detectors, like the camera, the microphone and radio scans, only run in bursts
+     * after a trigger fires while the cheap detectors run all the time. A trigger firing while the
+     * gate is open does not extend the burst. Takes effect the next time listening starts.
+     *
+     * @param triggers    GateTrigger flags opening the gate, None to always run costly detectors
+     * @param burstMillis how long costly detectors run each time the gate opens
+     */
+    public void setGating(int triggers, long burstMillis) {
+        if (triggers != GateTrigger.None && burstMillis <= 0)
+            throw new IllegalArgumentException("Burst duration must be positive");
+        gate.setTriggers(triggers);
+        this.burstMillis = burstMillis;
+    }
+
+    /**
+     * Whether costly detectors only run when the gate is open
+     *
+     * @return true if gating is set
+     */
+    public boolean isGated() {
+        return gate.triggers() != GateTrigger.None;
+    }
+
+    /**
+     * Whether costly detectors are presently running in a burst
+     *
+     * @return true if the gate is open
+     */
+    public boolean isGateOpen() {
+        return gateOpen;
+    }
+
+    /**
+     * Opens the gate, starting the costly detectors for one burst. Called when a trigger fires,
+     * but can also be called by the app when it knows the user is there, like on a login screen.
+     * The data of earlier bursts is kept until listening starts again.
+     *
+     * @return true if the gate opened, false if not gated, not listening or already open
+     */
+    public boolean openGate() {
+        if (!isGated() || !isListening() || gateOpen) return false;
+        gateOpen = true;
+        for (AbstractDetector detector : detectors) {
+            if (!detector.isCostly() || (detector instanceof ImageDetector && deniedCamera.get()))
+                continue;
+            executorService.submit(detector);
+        }
+        handler.postDelayed(closeGate, burstMillis);
+        return true;
+    }
+
+    private void closeGate() {
+        if (!gateOpen) return;
+        gateOpen = false;
+        for (AbstractDetector detector : detectors) {
+            if (detector.isCostly()) detector.terminate();
+        }
+    }
+
+    private void checkMemory() {
+        enforceMemoryBudget();
+        if (isListening()) handler.postDelayed(memoryCheck, memoryCheckInterval);
+    }
+
+    /**
+     * Sets how much memory the data of all detectors may use together. While listening it is
+     * checked every second, trimming the oldest data of the dataSets with the lowest
+     * MemoryPriority first. Within a priority the largest dataSets are trimmed down towards the
+     * same size, so one dataSet filling up does not empty the others.
+     *
+     * @param bytes estimated bytes all dataSets may use, 0 to remove the budget
+     */
+    public void setMemoryBudget(long bytes) {
+        if (bytes < 0) throw new IllegalArgumentException("Memory budget cannot be negative");
+        memoryBudget = bytes;
+        handler.removeCallbacks(memoryCheck);
+        if (bytes > 0 && isListening()) handler.postDelayed(memoryCheck, memoryCheckInterval);
+    }
+
+    /**
+     * The memory all detectors data may use together
+     *
+     * @return the budget in bytes, 0 if there is none
+     */
+    public long memoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Estimated memory presently used by the data of all detectors
+     *
+     * @return estimated bytes used
+     */
+    public long memoryUsage() {
+        long bytes = 0;
+        for (AbstractDetector detector : detectors) {
+            bytes += detector.bytesUsed();
+        }
+        return bytes;
+    }
+
+    /**
+     * Trims the dataSets of all detectors until they fit within the memory budget, lowest
+     * MemoryPriority first. Called regularly while listening, but can be called any time.
+     *
+     * @return estimated bytes freed, 0 if within budget or there is no budget
+     */
+    public long enforceMemoryBudget() {
+        long budget = memoryBudget;
+        if (budget <= 0) return 0;
+        List<MemoryUse> uses = new ArrayList<>();
+        long used = 0;
+        for (AbstractDetector detector : detectors) {
+            for (String dataSet : detector.jsonKeys()) {
+                MemoryUse use = new MemoryUse(detector, dataSet);
+                uses.add(use);
+                used += use.bytes;
+            }
+        }
+        if (used <= budget) return 0;
+        Collections.sort(uses, (first, second) -> first.priority != second.priority ?
+                Integer.compare(first.priority, second.priority) : Long.compare(second.bytes, first.bytes));
+        long freed = 0;
+        int start = 0;
+        while (start < uses.size() && used - freed > budget) {
+            int end = start;
+            while (end < uses.size() && uses.get(end).priority == uses.get(start).priority) end++;
+            freed += trimLargest(uses.subList(start, end), used - freed - budget);
+            start = end;
+        }
+        Log.i(tag, "AP: Memory budget exceeded, freed " + freed + " of " + used + " bytes");
+        return freed;
+    }
+
+    /**
+     * Trims the largest dataSets of a priority down to a common size, freeing a given amount
+     *
+     * @param uses   the dataSets of one priority, largest first
+     * @param excess bytes to free
+     * @return estimated bytes freed, can be less than asked if dataSets cannot be trimmed
+     */
+    private static long trimLargest(List<MemoryUse> uses, long excess) {
+        long ceiling = 0;
+        long largest = 0; // Bytes of the dataSets trimmed so far
+        for (int count = 1; count <= uses.size(); count++) {
+            largest += uses.get(count - 1).bytes;
+            long candidate = (largest - excess) / count;
+            if (count == uses.size() || candidate >= uses.get(count).bytes) {
+                ceiling = Math.max(0, candidate);
+                break;
+            }
+        }
+        long freed = 0;
+        for (MemoryUse use : uses) {
+            if (use.bytes <= ceiling) break;
+            freed += use.detector.trimDataSet(use.dataSet, ceiling);
+        }
+        return freed;
+    }
+
+    private static class MemoryUse {
+        private final AbstractDetector detector;
+        private final String dataSet;
+        private final long bytes;
+        private final int priority;
+
+        private MemoryUse(AbstractDetector detector, String dataSet) {
+            this.detector = detector;
+            this.dataSet = dataSet;
+            bytes = detector.bytesUsed(dataSet);
+            priority = detector.memoryPriority(dataSet);
+        }
+    }
+
     /**
      * Sets the status according to CoreStatus constants
      *
@@ -240,7 +490,7 @@ public abstract class PossumCore implements IDetectorChange {
     public void allowCamera() {
         if (!deniedCamera.get()) return;
         deniedCamera.set(false);
-        if (isListening()) {
+        if (isListening() && (!isGated() || gateOpen)) {
             for (AbstractDetector detector : detectors) {
                 if (detector instanceof ImageDetector) {
                     // Submit if already denied
@@ -324,6 +574,11 @@ public abstract class PossumCore implements IDetectorChange {
         if (status.get() != CoreStatus.Idle) {
             for (AbstractDetector detector : detectors)
                 detector.terminate();
+            stopSensorThread();
+            gate.stop();
+            handler.removeCallbacks(closeGate);
+            gateOpen = false;
+            handler.removeCallbacks(memoryCheck);
             status.set(CoreStatus.Idle);
         }
     }
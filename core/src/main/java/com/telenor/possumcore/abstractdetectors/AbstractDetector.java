@@ -7,17 +7,36 @@ import android.support.v4.content.ContextCompat;
 import android.util.Log;
 
 import com.google.gson.JsonArray;
-import com.telenor.possumcore.LimitedConcurrentQueue;
+import com.telenor.possumcore.clock.DeviceClock;
+import com.telenor.possumcore.constants.MemoryPriority;
+import com.telenor.possumcore.interfaces.IClock;
+import com.telenor.possumcore.interfaces.IDataSink;
 import com.telenor.possumcore.interfaces.IDetectorChange;
+import com.telenor.possumcore.interfaces.IDropCounter;
+import com.telenor.possumcore.interfaces.IMemoryBound;
+import com.telenor.possumcore.interfaces.IRangeQuery;
+import com.telenor.possumcore.interfaces.ISealable;
+import com.telenor.possumcore.storage.CompressedSampleStore;
+import com.telenor.possumcore.storage.DataSchema;
+import com.telenor.possumcore.storage.JsonDataQueue;
+import com.telenor.possumcore.storage.LockFreeQueue;
+import com.telenor.possumcore.storage.RetentionPolicy;
+import com.telenor.possumcore.storage.RunningStatistics;
+import com.telenor.possumcore.storage.Sample;
+import com.telenor.possumcore.storage.SampleList;
+import com.telenor.possumcore.storage.SampleRingBuffer;
+import com.telenor.possumcore.storage.SpscSampleQueue;
+import com.telenor.possumcore.storage.StatisticsSnapshot;
 
 import net.danlew.android.joda.JodaTimeAndroid;
 
-import org.joda.time.DateTime;
-
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -29,10 +48,13 @@ public abstract class AbstractDetector implements Runnable {
     private Context context;
     private String uniqueUserId;
     private AtomicBoolean isRunning = new AtomicBoolean(false);
-    protected final Map<String, LimitedConcurrentQueue<JsonArray>> dataStored = new HashMap<>();
+    protected final Map<String, List<JsonArray>> dataStored = new ConcurrentHashMap<>();
+    private final Map<String, RunningStatistics> statistics = new ConcurrentHashMap<>();
     protected static final String tag = AbstractDetector.class.getName();
     protected static final String defaultSet = "default";
     private IDetectorChange changeListener;
+    private RetentionPolicy compressedPolicy; // Set when typed dataSets are stored compressed
+    private IClock clock;
 
     /**
      * Constructor for all detectors. Initializes a basic detector
@@ -43,18 +65,83 @@ public abstract class AbstractDetector implements Runnable {
         if (context == null) throw new IllegalArgumentException("Missing context");
         changeListener = listener;
         JodaTimeAndroid.init(context);
+        clock = DeviceClock.instance(context);
         createDataSet(defaultSet);
         this.context = context.getApplicationContext();
     }
 
     /**
-     * Handles what type of lists are created for the dataSets
+     * Handles what type of lists are created for the dataSets. Can be overridden by detectors
+     * wanting a more specialized storage for some of their dataSets
      *
+     * @param dataSet name of the dataSet the list is created for
      * @return a list of JsonArrays. Which type of list is up to the implementation.
-     * Default is an ArrayList. If necessary, use concurrent lists.
+     * Default is a SampleRingBuffer for dataSets with a schema, else a JsonDataQueue, both
+     * keeping data by the retentionPolicy, or their lock free counterparts if the dataSet is lock
+     * free. DataSets with a schema use a CompressedSampleStore if storeCompressed is used.
+     * If necessary, use concurrent lists.
+     */
+    protected List<JsonArray> createInternalList(@NonNull String dataSet) {
+        DataSchema schema = dataSchema(dataSet);
+        if (schema != null) {
+            if (compressedPolicy != null) return new CompressedSampleStore(compressedPolicy, schema);
+            if (isLockFree(dataSet)) return new SpscSampleQueue(queueLimit(dataSet), schema);
+            return new SampleRingBuffer(retentionPolicy(dataSet), schema);
+        }
+        if (isLockFree(dataSet)) return new LockFreeQueue<>(queueLimit(dataSet));
+        return new JsonDataQueue(retentionPolicy(dataSet));
+    }
+
+    /**
+     * Decides how much data a dataSet keeps, by entries, time span and/or memory. Override to
+     * keep data by time or memory instead, default keeps the queueLimit number of entries.
+     * Lock free dataSets cannot remove old data and are always limited by the queueLimit.
+     *
+     * @param dataSet name of the dataSet
+     * @return the retention policy of the dataSet
+     */
+    protected RetentionPolicy retentionPolicy(@NonNull String dataSet) {
+        return RetentionPolicy.entries(queueLimit(dataSet));
+    }
+
+    /**
+     * Whether a dataSet hands its data to the reader without locking. Producers of a lock free
+     * dataSet never wait for a reader, but when it is full new data is dropped (see dropped)
+     * instead of replacing the oldest. A lock free dataSet with a schema must only be streamed
+     * to from one thread at a time. Override to enable, default is false for all dataSets.
+     *
+     * @param dataSet name of the dataSet
+     * @return true if the dataSet should be lock free, false if not
+     */
+    protected boolean isLockFree(@NonNull String dataSet) {
+        return false;
+    }
+
+    /**
+     * Makes all dataSets with a schema store their data compressed, keeping it by the given
+     * policy instead of their own retentionPolicy. Meant for long sessions where all data is
+     * wanted, like data gathering. The dataSets are recreated, so data stored so far is lost.
+     *
+     * @param policy the retention policy for the compressed dataSets
+     */
+    public void storeCompressed(@NonNull RetentionPolicy policy) {
+        compressedPolicy = policy;
+        for (String dataSet : dataStored.keySet()) {
+            if (dataSchema(dataSet) != null) createDataSet(dataSet);
+        }
+    }
+
+    /**
+     * Declares the columns of a typed dataSet. A dataSet with a schema keeps its data in
+     * primitive form until it is exported and is written to with streamSample, while a dataSet
+     * without stores the jsonArrays given to streamData. Override to declare schemas, default is
+     * no schema for any dataSet.
+     *
+     * @param dataSet name of the dataSet
+     * @return the schema of the dataSet or null if it stores jsonArrays
      */
-    private LimitedConcurrentQueue<JsonArray> createInternalList(String dataSet) {
-        return new LimitedConcurrentQueue<>(queueLimit(dataSet));
+    protected DataSchema dataSchema(@NonNull String dataSet) {
+        return null;
     }
 
     /**
@@ -64,7 +151,15 @@ public abstract class AbstractDetector implements Runnable {
      * @param dataSet name of the dataSet, "default" is taken for the standard set
      */
     protected void createDataSet(@NonNull String dataSet) {
-        dataStored.put(dataSet, createInternalList(dataSet));
+        List<JsonArray> list = createInternalList(dataSet);
+        if (list instanceof SampleList) {
+            // Statistics of a recreated dataSet, like when stored compressed, are kept
+            DataSchema schema = ((SampleList) list).schema();
+            RunningStatistics running = statistics.get(dataSet);
+            if (running == null || running.schema() != schema)
+                statistics.put(dataSet, new RunningStatistics(schema));
+        } else statistics.remove(dataSet);
+        dataStored.put(dataSet, list);
     }
 
     /**
@@ -83,7 +178,36 @@ public abstract class AbstractDetector implements Runnable {
      * @return long timestamp in millis
      */
     public long now() {
-        return DateTime.now().getMillis();
+        return clock.now();
+    }
+
+    /**
+     * Replaces the clock the detector takes its timestamps from, default is the phones clock
+     *
+     * @param clock the clock to use
+     */
+    public void setClock(@NonNull IClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * The clock the detector takes its timestamps from
+     *
+     * @return the clock
+     */
+    public IClock clock() {
+        return clock;
+    }
+
+    /**
+     * Whether the detector is costly to run, like using the camera, the microphone or scanning
+     * radios. When PossumCore gates detectors, costly detectors only run in short bursts after a
+     * trigger while the others run all the time. Default is not costly.
+     *
+     * @return true if the detector should only run when triggered
+     */
+    public boolean isCostly() {
+        return false;
     }
 
     /**
@@ -149,12 +273,26 @@ public abstract class AbstractDetector implements Runnable {
         }
     }
 
+    /**
+     * Starts sampling. Data gathered earlier is kept, so a detector run in bursts keeps the data
+     * of all of them until it is cleared.
+     */
     @Override
     public void run() {
         isRunning.set(true);
-        for (LimitedConcurrentQueue<JsonArray> data : dataStored.values()) {
+    }
+
+    /**
+     * Empties all dataSets and resets their statistics, keeping the dataSets themselves. Called
+     * by PossumCore each time listening starts.
+     */
+    public void clearData() {
+        for (List<JsonArray> data : dataStored.values()) {
             data.clear();
         }
+        for (RunningStatistics running : statistics.values()) {
+            running.reset();
+        }
     }
 
     /**
@@ -163,7 +301,7 @@ public abstract class AbstractDetector implements Runnable {
      * @param dataSet the name of the dataSet
      * @return a queue containing the data (in jsonArrays) or null if dataSet is not found
      */
-    protected LimitedConcurrentQueue<JsonArray> dataSet(@NonNull String dataSet) {
+    protected List<JsonArray> dataSet(@NonNull String dataSet) {
         return dataStored.get(dataSet);
     }
 
@@ -214,7 +352,7 @@ public abstract class AbstractDetector implements Runnable {
     }
 
     protected void streamData(JsonArray data, String dataSet) {
-        LimitedConcurrentQueue<JsonArray> set = dataSet(dataSet);
+        List<JsonArray> set = dataSet(dataSet);
         if (set == null) {
             Log.e(tag, "DataSet is not found, data is not stored (" + dataSet + ")");
             return;
@@ -223,6 +361,206 @@ public abstract class AbstractDetector implements Runnable {
 //        Log.d(tag, "AP:" + data.toString());
     }
 
+    /**
+     * Stores a sample of float values in the default dataSet without allocating anything. The
+     * dataSet must have a schema.
+     *
+     * @param timestamp the timestamp of the sample
+     * @param values    the values of the sample, one pr column in the schema
+     */
+    protected void streamSample(long timestamp, float... values) {
+        streamSample(defaultSet, timestamp, values);
+    }
+
+    protected void streamSample(@NonNull String dataSet, long timestamp, float... values) {
+        SampleList set = sampleSet(dataSet);
+        if (set == null) return;
+        RunningStatistics running = statistics.get(dataSet);
+        if (set instanceof SpscSampleQueue) { // One producer, nothing to lock
+            set.add(timestamp, values);
+            running.add(timestamp, values);
+        } else synchronized (set) { // The lock the set takes anyway, keeping one writer at a time
+            set.add(timestamp, values);
+            running.add(timestamp, values);
+        }
+    }
+
+    /**
+     * Stores a batch of float samples in a typed dataSet in one go, taking the lock of the
+     * dataSet only once
+     *
+     * @param dataSet    name of the dataSet
+     * @param timestamps the timestamps of the samples
+     * @param values     the values of the samples, one sample after the other
+     * @param count      number of samples to store
+     */
+    protected void streamSamples(@NonNull String dataSet, @NonNull long[] timestamps, @NonNull float[] values, int count) {
+        SampleList set = sampleSet(dataSet);
+        if (set == null) return;
+        RunningStatistics running = statistics.get(dataSet);
+        if (set instanceof SpscSampleQueue) { // One producer, nothing to lock
+            set.addAll(timestamps, values, count);
+            running.addAll(timestamps, values, count);
+        } else synchronized (set) { // The lock the set takes anyway, keeping one writer at a time
+            set.addAll(timestamps, values, count);
+            running.addAll(timestamps, values, count);
+        }
+    }
+
+    /**
+     * Stores a sample of double values in a typed dataSet without allocating anything
+     *
+     * @param dataSet   name of the dataSet
+     * @param timestamp the timestamp of the sample
+     * @param values    the values of the sample, one pr column in the schema
+     */
+    protected void streamSample(@NonNull String dataSet, long timestamp, double[] values) {
+        SampleList set = sampleSet(dataSet);
+        if (set == null) return;
+        RunningStatistics running = statistics.get(dataSet);
+        if (set instanceof SpscSampleQueue) { // One producer, nothing to lock
+            set.add(timestamp, values);
+            running.add(timestamp, values);
+        } else synchronized (set) { // The lock the set takes anyway, keeping one writer at a time
+            set.add(timestamp, values);
+            running.add(timestamp, values);
+        }
+    }
+
+    /**
+     * Stores a sample with mixed column types in the default dataSet. The values are copied, so
+     * the sample can be reused right after.
+     *
+     * @param sample the sample, made for the schema of the dataSet
+     */
+    protected void streamSample(@NonNull Sample sample) {
+        streamSample(defaultSet, sample);
+    }
+
+    protected void streamSample(@NonNull String dataSet, @NonNull Sample sample) {
+        SampleList set = sampleSet(dataSet);
+        if (set == null) return;
+        RunningStatistics running = statistics.get(dataSet);
+        if (set instanceof SpscSampleQueue) { // One producer, nothing to lock
+            set.add(sample);
+            running.add(sample);
+        } else synchronized (set) { // The lock the set takes anyway, keeping one writer at a time
+            set.add(sample);
+            running.add(sample);
+        }
+    }
+
+    private SampleList sampleSet(@NonNull String dataSet) {
+        List<JsonArray> set = dataSet(dataSet);
+        if (set instanceof SampleList) return (SampleList) set;
+        Log.e(tag, "Typed dataSet is not found, sample is not stored (" + dataSet + ")");
+        return null;
+    }
+
+    /**
+     * Mean, variance, min and max of each column of a typed dataSet and the rate of its samples,
+     * over all samples streamed since the data was last cleared. Unlike the data itself,
+     * retrieving the statistics does not clear anything, and costs the same however much data
+     * there is. Only typed dataSets, those with a schema, are tracked. DataSets of JsonArrays, like
+     * those of the image and hardware detectors, have no statistics.
+     *
+     * @param dataSet name of the dataSet
+     * @return a snapshot of the statistics, null if the dataSet is not found or has no schema
+     */
+    public StatisticsSnapshot statistics(@NonNull String dataSet) {
+        RunningStatistics running = statistics.get(dataSet);
+        return running != null ? running.snapshot() : null;
+    }
+
+    /**
+     * Number of entries a dataSet has lost because it was full, since it was last retrieved
+     *
+     * @param dataSet name of the dataSet
+     * @return number of dropped entries, 0 if the dataSet is not found or does not count
+     */
+    public long dropped(@NonNull String dataSet) {
+        List<JsonArray> set = dataSet(dataSet);
+        return set instanceof IDropCounter ? ((IDropCounter) set).dropped() : 0;
+    }
+
+    /**
+     * Estimated memory used by all dataSets of the detector
+     *
+     * @return estimated bytes used
+     */
+    public long bytesUsed() {
+        long bytes = 0;
+        for (String dataSet : dataStored.keySet()) {
+            bytes += bytesUsed(dataSet);
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimated memory used by a dataSet
+     *
+     * @param dataSet name of the dataSet
+     * @return estimated bytes used, 0 if the dataSet is not found
+     */
+    public long bytesUsed(@NonNull String dataSet) {
+        List<JsonArray> set = dataSet(dataSet);
+        if (set == null) return 0;
+        if (set instanceof IMemoryBound) return ((IMemoryBound) set).bytesUsed();
+        long bytes = 0;
+        synchronized (set) {
+            for (JsonArray entry : set) {
+                bytes += JsonDataQueue.estimateBytes(entry);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Removes the oldest entries of a dataSet until it uses no more than a given amount of
+     * memory. Removed entries are counted as dropped.
+     *
+     * @param dataSet name of the dataSet
+     * @param bytes   estimated bytes the dataSet may keep
+     * @return estimated bytes freed, 0 if the dataSet is not found or cannot be trimmed
+     */
+    public long trimDataSet(@NonNull String dataSet, long bytes) {
+        List<JsonArray> set = dataSet(dataSet);
+        return set instanceof IMemoryBound ? ((IMemoryBound) set).trimTo(Math.max(0, bytes)) : 0;
+    }
+
+    /**
+     * How important a dataSet is to keep when the memory budget of the core is exceeded.
+     * Override to have some dataSets trimmed before others.
+     *
+     * @param dataSet name of the dataSet
+     * @return a MemoryPriority constant
+     */
+    public int memoryPriority(@NonNull String dataSet) {
+        return MemoryPriority.Normal;
+    }
+
+    /**
+     * Retrieves the entries of a dataSet within a time window, without removing them
+     *
+     * @param dataSet name of the dataSet
+     * @param from    first timestamp included
+     * @param to      first timestamp not included
+     * @return the entries in the window, oldest first, empty if the dataSet is not found
+     */
+    public List<JsonArray> dataRange(@NonNull String dataSet, long from, long to) {
+        List<JsonArray> set = dataSet(dataSet);
+        if (set == null) return Collections.emptyList();
+        if (set instanceof IRangeQuery) return ((IRangeQuery) set).range(from, to);
+        List<JsonArray> data = new ArrayList<>();
+        synchronized (set) {
+            for (JsonArray entry : set) {
+                long timestamp = JsonDataQueue.timestampOf(entry, from - 1);
+                if (timestamp >= from && timestamp < to) data.add(entry);
+            }
+        }
+        return data;
+    }
+
     /**
      * Handles what happens when you restart the library after a pause. Use this to restart
      * processes like camera or microphone.
@@ -246,7 +584,7 @@ public abstract class AbstractDetector implements Runnable {
      *
      * @return a map with dataSet names containing jsonArrays with all the data
      */
-    public Map<String, LimitedConcurrentQueue<JsonArray>> dataStored() {
+    public Map<String, List<JsonArray>> dataStored() {
         return dataStored;
     }
 
@@ -275,22 +613,73 @@ public abstract class AbstractDetector implements Runnable {
     /**
      * Gives the detectors stored data as a restful json object
      * Also clears data, so be careful. Make sure data is sent and not lost.
-     * Locks system while it is retrieved so no concurrency is retrieved
+     * The dataSet is swapped for an empty one before it is serialized, so producers are never
+     * held up while it is retrieved
      *
      * @return a jsonArray for all the data
      */
-    public synchronized JsonArray jsonData(String dataSet) {
+    public JsonArray jsonData(String dataSet) {
         JsonArray outputArr = new JsonArray();
-        synchronized (dataStored) {
-            LimitedConcurrentQueue<JsonArray> data = dataStored.get(dataSet);
-            for (JsonArray arr : data) {
-                outputArr.add(arr);
-            }
-            dataStored.put(dataSet, new LimitedConcurrentQueue<>(queueLimit(dataSet))); // Clearing the dataSet
+        for (JsonArray arr : snapshot(dataSet)) {
+            outputArr.add(arr);
         }
         return outputArr;
     }
 
+    /**
+     * Takes out all data stored in a dataSet, replacing it with an empty one in one step. The
+     * returned list is sealed, so data streamed to it after the swap is ignored and it can be
+     * read without locks or copying.
+     *
+     * @param dataSet the name of the dataSet
+     * @return an unmodifiable list of the data, empty if the dataSet is not found
+     */
+    public List<JsonArray> snapshot(@NonNull String dataSet) {
+        return Collections.unmodifiableList(takeOut(dataSet));
+    }
+
+    /**
+     * Takes out all data stored in a dataSet like snapshot, streaming it into a sink straight
+     * from storage. Typed dataSets hand over their values without serializing them. Producers
+     * are never held up, as they add to the new dataSet while this is read.
+     *
+     * @param dataSet the name of the dataSet
+     * @param sink    the sink receiving the data, oldest first
+     * @return number of entries streamed, 0 if the dataSet is not found
+     */
+    public int drainData(@NonNull String dataSet, @NonNull IDataSink sink) {
+        List<JsonArray> data = takeOut(dataSet);
+        if (data instanceof SampleList) return ((SampleList) data).readAll(sink);
+        for (JsonArray entry : data) {
+            sink.entry(entry);
+        }
+        return data.size();
+    }
+
+    private List<JsonArray> takeOut(@NonNull String dataSet) {
+        if (!dataStored.containsKey(dataSet)) return Collections.emptyList();
+        List<JsonArray> data = dataStored.replace(dataSet, createInternalList(dataSet));
+        if (data instanceof ISealable) {
+            ((ISealable) data).seal();
+        } else {
+            synchronized (data) {
+                data = new ArrayList<>(data); // Unknown list, fall back to copying it
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Number of entries presently stored in a dataSet
+     *
+     * @param dataSet the name of the dataSet
+     * @return the number of entries, 0 if the dataSet is not found
+     */
+    public int dataSize(@NonNull String dataSet) {
+        List<JsonArray> set = dataSet(dataSet);
+        return set == null ? 0 : set.size();
+    }
+
     /**
      * Returns the keys of the data stored
      * @return a set of the keys
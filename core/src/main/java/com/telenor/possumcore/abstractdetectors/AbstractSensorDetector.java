@@ -6,10 +6,15 @@ import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.Build;
-import android.os.SystemClock;
+import android.os.Handler;
 import android.support.annotation.NonNull;
 
 import com.telenor.possumcore.interfaces.IDetectorChange;
+import com.telenor.possumcore.interfaces.ISampleFilter;
+import com.telenor.possumcore.interfaces.ISensorDelivery;
+import com.telenor.possumcore.motion.SamplingRateController;
+import com.telenor.possumcore.motion.SensorResampler;
+import com.telenor.possumcore.storage.DataSchema;
 
 /***
  * AbstractSensorDetector class that handles all detecting of sensor changes from the android
@@ -17,7 +22,7 @@ import com.telenor.possumcore.interfaces.IDetectorChange;
  * in all usages of this class. The important thing it will need to do is to is handle the
  * registering/unRegistering from the sensor manager.
  */
-public abstract class AbstractSensorDetector extends AbstractDetector implements SensorEventListener {
+public abstract class AbstractSensorDetector extends AbstractDetector implements SensorEventListener, ISensorDelivery {
     private SensorManager sensorManager;
     private Sensor sensor;
     private int presentAccuracy = SensorManager.SENSOR_STATUS_ACCURACY_HIGH;
@@ -25,6 +30,28 @@ public abstract class AbstractSensorDetector extends AbstractDetector implements
     private static final int MIN_INTERVAL_MICRO = MIN_INTERVAL_MILLI * 1000;
     private static final long MIN_INTERVAL_NANO = MIN_INTERVAL_MICRO * 1000;
     private long lastRecord;
+    private static final DataSchema sensorSchema = DataSchema.floats(3);
+    public static final String alignedSet = "aligned";
+    private static final int MAX_BATCH = 64;
+    private static final long BURST_END_NANO = 100 * 1000000L;
+    private int maxReportLatencyMicro;
+    private Handler sensorHandler;
+    private SamplingRateController rateController;
+    private int registeredPeriodMicro;
+    private boolean listening; // Guarded by listenerLock
+    private final Object listenerLock = new Object();
+    private SensorResampler resampler;
+    private int resamplerSource;
+    private int alignedPeriodMicro; // 0 when not aligned
+    private DataSchema alignedSchema;
+    private ISampleFilter filter;
+    private float[] filtered; // The values of the present event after filtering
+    private volatile boolean batching;
+    private final Object batchLock = new Object();
+    private long[] batchTimestamps;
+    private float[] batchValues;
+    private int batchColumns;
+    private int batched;
 
     /**
      * Constructor for detectors using the built-in android sensorManager. Initializes a basic detector
@@ -40,24 +67,279 @@ public abstract class AbstractSensorDetector extends AbstractDetector implements
         sensor = sensorManager.getDefaultSensor(sensorType);
     }
 
+    /**
+     * The default dataSet of a sensor detector stores the timestamp and three axis values of each
+     * sample as floats. Override if the sensor delivers more or less values.
+     *
+     * @param dataSet name of the dataSet
+     * @return the schema for the default set, no schema for other sets
+     */
+    @Override
+    protected DataSchema dataSchema(@NonNull String dataSet) {
+        if (alignedSet.equals(dataSet) && alignedSchema != null) return alignedSchema;
+        return defaultSet.equals(dataSet) ? sensorSchema : null;
+    }
+
+    /**
+     * Aligns the samples of this detector with those of another sensor detector into one stream
+     * with a uniform rate, stored in the "aligned" dataSet of this detector. Each aligned sample
+     * has the values of this sensor followed by the values of the other, linearly interpolated
+     * to the same timestamp. Both sensors are registered at least as fast as the period, whatever
+     * their motion level, and every event delivered is aligned, also the ones the rate controller
+     * keeps out of the default set.
+     *
+     * @param other            the sensor detector to align with
+     * @param periodMillis     milliseconds between aligned samples
+     * @param maxLatencyMillis how long to wait for a lagging sensor before skipping ahead
+     */
+    public void alignWith(@NonNull AbstractSensorDetector other, int periodMillis, int maxLatencyMillis) {
+        resampler = new SensorResampler(periodMillis, maxLatencyMillis,
+                (timestamp, values) -> streamSample(alignedSet, clock().toEpochMillis(timestamp), values),
+                dataSchema(defaultSet).columns(), other.dataSchema(defaultSet).columns());
+        resamplerSource = 0;
+        other.resampler = resampler;
+        other.resamplerSource = 1;
+        alignedPeriodMicro = periodMillis * 1000;
+        other.alignedPeriodMicro = alignedPeriodMicro;
+        alignedSchema = DataSchema.floats(resampler.columns());
+        createDataSet(alignedSet);
+    }
+
     @Override
     public void onResume(boolean continueRunning) {
         super.onResume(continueRunning);
-        sensorManager.registerListener(this, sensor, MIN_INTERVAL_MICRO);
+        registerListener();
     }
 
     @Override
     public void onPause() {
         super.onPause();
-        sensorManager.unregisterListener(this, sensor);
+        unregisterListener();
+        flushBatch();
+    }
+
+    /**
+     * Lets the sensor keep events in its hardware fifo for up to the given time before waking up
+     * the application processor, delivering them in bursts. Saves power on long gathers where the
+     * data is not needed right away. Takes effect the next time the sensor is registered, and is
+     * ignored before KitKat or when the sensor has no fifo.
+     *
+     * @param millis maximum delay before an event is delivered, 0 delivers each event at once
+     */
+    @Override
+    public void setMaxReportLatency(int millis) {
+        if (millis < 0) throw new IllegalArgumentException("Latency cannot be negative");
+        maxReportLatencyMicro = millis * 1000;
+    }
+
+    /**
+     * Whether the sensor is registered to deliver events in bursts from its fifo
+     *
+     * @return true if events are batched
+     */
+    public boolean isBatching() {
+        return batching;
+    }
+
+    /**
+     * Sets the handler whose thread sensor events are delivered on. Takes effect the next time
+     * the sensor is registered. PossumCore gives all sensor detectors a shared sensor thread while
+     * listening.
+     *
+     * @param handler the handler to deliver events with, null for the main thread
+     */
+    @Override
+    public void setSensorHandler(Handler handler) {
+        sensorHandler = handler;
+    }
+
+    /**
+     * The period the sensor should deliver at, the interval of the present motion level or the
+     * fixed minimum with a filter or without a rate controller, and no slower than the period of
+     * the aligned set
+     *
+     * @return the sampling period in microseconds
+     */
+    private int samplingPeriodMicro() {
+        int period = rateController != null && filter == null ? rateController.intervalMillis() * 1000 : MIN_INTERVAL_MICRO;
+        return alignedPeriodMicro > 0 ? Math.min(period, alignedPeriodMicro) : period;
+    }
+
+    private void registerListener() {
+        synchronized (listenerLock) {
+            registeredPeriodMicro = samplingPeriodMicro();
+            batching = maxReportLatencyMicro > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && sensor.getFifoMaxEventCount() > 0;
+            if (batching) {
+                sensorManager.registerListener(this, sensor, registeredPeriodMicro, maxReportLatencyMicro, sensorHandler);
+            } else sensorManager.registerListener(this, sensor, registeredPeriodMicro, sensorHandler);
+            listening = true;
+        }
+    }
+
+    private void unregisterListener() {
+        synchronized (listenerLock) {
+            sensorManager.unregisterListener(this, sensor);
+            listening = false;
+        }
+    }
+
+    /**
+     * Registers the sensor again at the present sampling period, unless it has been unregistered
+     * since. Events still queued after terminate or onPause must not start the sensor again.
+     *
+     * @return true if registered again
+     */
+    private boolean reregisterListener() {
+        synchronized (listenerLock) {
+            if (!listening) return false;
+            sensorManager.unregisterListener(this, sensor);
+            registerListener();
+            return true;
+        }
     }
 
     /**
-     * Checks whether timestamp has passed a minimum of milliseconds.
+     * Handles an event delivered by the sensor. Every event is aligned with the other sensor, if
+     * any, and given to onSample, and those not invalid are stored. Call it from onSensorChanged.
+     *
+     * @param event the sensor event
+     */
+    protected void handleEvent(@NonNull SensorEvent event) {
+        SensorResampler aligner = resampler;
+        if (aligner != null) aligner.add(resamplerSource, event.timestamp, event.values);
+        onSample(timestamp(event), event.values);
+        if (isInvalid(event)) return;
+        streamEvent(event);
+    }
+
+    /**
+     * Stores the values of an event in the default dataSet. When batching, the events of a burst
+     * are gathered and stored together once the newest event of the burst arrives.
+     *
+     * @param event the sensor event to store
+     */
+    protected void streamEvent(@NonNull SensorEvent event) {
+        long timestamp = timestamp(event);
+        float[] values = event.values;
+        ISampleFilter stages = filter;
+        if (stages != null) {
+            float[] output = filtered;
+            System.arraycopy(values, 0, output, 0, Math.min(values.length, output.length));
+            if (!stages.filter(timestamp, output)) return;
+            values = output;
+        }
+        if (!batching) {
+            streamSample(timestamp, values);
+            return;
+        }
+        synchronized (batchLock) {
+            if (batchTimestamps == null) {
+                batchColumns = dataSchema(defaultSet).columns();
+                batchTimestamps = new long[MAX_BATCH];
+                batchValues = new float[MAX_BATCH * batchColumns];
+            }
+            batchTimestamps[batched] = timestamp;
+            System.arraycopy(values, 0, batchValues, batched * batchColumns, batchColumns);
+            batched++;
+            if (batched == MAX_BATCH || clock().elapsedNanos() - event.timestamp < BURST_END_NANO) {
+                flushBatch();
+            }
+        }
+    }
+
+    /**
+     * Called with every event the sensor delivers, at the registered sampling period, also those
+     * the rate controller keeps out of the default set. Override to process the samples as they
+     * come. The values array belongs to the event, copy what is kept.
+     *
+     * @param timestamp the timestamp of the sample
+     * @param values    the values of the sample
+     */
+    protected void onSample(long timestamp, @NonNull float[] values) {
+    }
+
+    /**
+     * Called when the sensor is registered at a new sampling period because the motion changed
+     * level. Override to start over processing that assumes a fixed rate.
+     *
+     * @param periodMicro the new sampling period in microseconds
+     */
+    protected void onSamplingPeriodChanged(int periodMicro) {
+    }
+
+    /**
+     * Stores the events gathered from the present burst, if any
+     */
+    protected void flushBatch() {
+        synchronized (batchLock) {
+            if (batched == 0) return;
+            streamSamples(defaultSet, batchTimestamps, batchValues, batched);
+            batched = 0;
+        }
+    }
+
+    /**
+     * Filters the samples before they are stored in the default dataSet, like removing gravity or
+     * reducing the rate. Samples given to onSample and aligned with other sensors stay raw. The
+     * filter sees every event delivered at a fixed rate, so it should reduce the rate itself, like
+     * with a Decimator. While a filter is set the rate controller is bypassed: the sensor is
+     * registered at the fixed minimum interval, or the aligned period when aligned, and no event
+     * is throttled before the filter. Set it before the detector runs.
+     *
+     * @param filter the filter, null to store the raw samples
+     */
+    public void setFilter(ISampleFilter filter) {
+        filtered = filter != null ? new float[dataSchema(defaultSet).columns()] : null;
+        this.filter = filter;
+    }
+
+    /**
+     * The filter samples pass before they are stored
+     *
+     * @return the filter or null if raw samples are stored
+     */
+    public ISampleFilter filter() {
+        return filter;
+    }
+
+    /**
+     * Lets the sampling rate follow how much the sensor moves instead of the fixed minimum
+     * interval. Not used while a filter is set. Takes effect the next time the sensor is
+     * registered.
+     *
+     * @param controller the controller deciding the rate, null for the fixed interval
+     */
+    public void setRateController(SamplingRateController controller) {
+        rateController = controller;
+    }
+
+    /**
+     * The controller deciding the sampling rate, for reading its level and counters
+     *
+     * @return the controller or null if the sensor uses the fixed interval
+     */
+    public SamplingRateController rateController() {
+        return rateController;
+    }
+
+    /**
+     * Checks whether timestamp has passed a minimum of milliseconds, or the interval of the
+     * present motion level when there is a rate controller. With a filter all events are valid,
+     * leaving the filter to reduce the rate, and the rate controller is not used.
      *
      * @return true if it has passed the minimum, false if not
      */
     protected boolean isInvalid(SensorEvent event) {
+        if (filter != null) return false; // The filter reduces the rate
+        SamplingRateController controller = rateController;
+        if (controller != null) {
+            boolean accepted = controller.accept(event.timestamp, event.values);
+            if (samplingPeriodMicro() != registeredPeriodMicro && reregisterListener()) {
+                // The motion changed level, the sensor now delivers at the new rate
+                onSamplingPeriodChanged(registeredPeriodMicro);
+            }
+            return !accepted;
+        }
         if (lastRecord == 0) {
             lastRecord = event.timestamp;
             return false;
@@ -73,7 +355,10 @@ public abstract class AbstractSensorDetector extends AbstractDetector implements
     @Override
     public void run() {
         super.run();
-        sensorManager.registerListener(this, sensor, MIN_INTERVAL_MICRO);
+        if (rateController != null) rateController.reset();
+        if (filter != null) filter.reset();
+        if (resampler != null && resamplerSource == 0) resampler.reset();
+        registerListener();
     }
 
     /**
@@ -92,7 +377,8 @@ public abstract class AbstractSensorDetector extends AbstractDetector implements
      */
     @Override
     public void terminate() {
-        sensorManager.unregisterListener(this, sensor);
+        unregisterListener();
+        flushBatch();
     }
 
     /**
@@ -108,15 +394,13 @@ public abstract class AbstractSensorDetector extends AbstractDetector implements
     }
 
     /**
-     * Returns an estimated current time
+     * Returns the epoch time of a sensor event
      *
      * @param event the sensorevent you want to get timestamp from
      * @return the timestamp in epoch timestamp format
      */
     protected long timestamp(SensorEvent event) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-            return super.now() + ((event.timestamp - SystemClock.elapsedRealtimeNanos()) / 1000000L);
-        } else return super.now() + ((event.timestamp - SystemClock.elapsedRealtime()*1000) /1000000L);
+        return clock().toEpochMillis(event.timestamp);
     }
 
     @Override
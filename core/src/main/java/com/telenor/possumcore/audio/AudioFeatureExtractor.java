@@ -0,0 +1,211 @@
+package com.telenor.possumcore.audio;
+
+import android.support.annotation.NonNull;
+
+import com.telenor.possumcore.interfaces.IFeatureReceiver;
+import com.telenor.possumcore.interfaces.IFrameReceiver;
+
+/**
+ * Computes the ambient sound features of 16 bit audio, one window at a time as the frames of an
+ * {@link AudioFramer}. All buffers are made once, so extracting features allocates nothing and
+ * does not make the garbage collector pause recording. Not thread safe, each recording thread
+ * should use its own.
+ * <p>
+ * Each feature vector holds 13 MFCCs, the zero crossing rate, short-time energy, spectral
+ * centroid, spectral flatness and spectral peak, followed by 10 LPC coefficients.
+ */
+public class AudioFeatureExtractor implements IFrameReceiver {
+    public static final int windowSize = 2048; // 128 ms @ 16000 hz sample rate, a power of 2 for FFT
+    private static final int lpcDimensions = 10;
+    private static final int numCepstra = 13;
+    private static final int numMelFilters = 23; // SPHINX-III uses 40
+    private static final double lowerFilterFreq = 133.3334;
+    private static final double upperFilterFreq = 8000; // Nyquist frequency of the 16k feature rate
+    private static final int mfccFftSize = 512;
+    public static final int features = numCepstra + lpcDimensions + 5;
+    private static final FastFourierTransform transform = new FastFourierTransform(windowSize);
+    private final MfccExtractor mfcc;
+    private final IFeatureReceiver receiver;
+    private final double[] window = new double[windowSize];
+    private final double[] windowAbs = new double[windowSize];
+    private final double[] fftReal = new double[transform.bins()];
+    private final double[] fftImag = new double[transform.bins()];
+    private final double[] spectrum = new double[windowSize];
+    private final double[] energies;
+    private final double[] cepstra = new double[numCepstra];
+    private final double[] autocorrelation = new double[lpcDimensions + 1];
+    private final double[] warped = new double[windowSize];
+    private final double[] reflection = new double[lpcDimensions];
+    private final double[] predictor = new double[lpcDimensions];
+    private final double[] previousPredictor = new double[lpcDimensions];
+    private final double[] output = new double[features];
+
+    /**
+     * Constructor for the extractor
+     *
+     * @param sampleRate rate of the audio in Hz
+     * @param receiver   receives the features of each window
+     */
+    public AudioFeatureExtractor(int sampleRate, @NonNull IFeatureReceiver receiver) {
+        mfcc = new MfccExtractor(mfccFftSize, sampleRate, lowerFilterFreq, upperFilterFreq, numMelFilters, numCepstra);
+        energies = new double[mfcc.filters()];
+        this.receiver = receiver;
+    }
+
+    /**
+     * Computes the features of a window and sends them to the receiver
+     *
+     * @param timestamp the timestamp of the window
+     * @param frame     audio in the PCM 16 bit format, of the window size
+     */
+    @Override
+    public void frameReady(long timestamp, @NonNull short[] frame) {
+        if (frame.length != windowSize)
+            throw new IllegalArgumentException("Frame must be of the window size " + windowSize);
+        for (int i = 0; i < windowSize; i++) {
+            window[i] = (double) frame[i];
+            windowAbs[i] = Math.abs((double) frame[i]);
+        }
+        extractWindow();
+        receiver.featuresReady(timestamp, output);
+    }
+
+    private void extractWindow() {
+        mfcc.extract(windowAbs, energies, cepstra);
+        System.arraycopy(cepstra, 0, output, 0, numCepstra);
+        output[numCepstra] = zeroCrossingRate();
+        output[numCepstra + 1] = shortTimeEnergy();
+        transform.magnitudes(window, fftReal, fftImag, spectrum);
+        output[numCepstra + 2] = spectralCentroid();
+        output[numCepstra + 3] = spectralFlatness();
+        output[numCepstra + 4] = spectralPeak();
+        linearPrediction();
+        System.arraycopy(reflection, 0, output, numCepstra + 5, lpcDimensions);
+    }
+
+    /**
+     * Short-time Energy of the window
+     */
+    private double shortTimeEnergy() {
+        double ste = 0.0;
+        for (double sample : window) {
+            ste += sample * sample;
+        }
+        return ste / window.length;
+    }
+
+    /**
+     * Zero Crossing Rate of the window
+     */
+    private double zeroCrossingRate() {
+        double zcr = 0.0;
+        for (int i = 1; i < window.length; i++) {
+            zcr += Math.abs(Math.signum(window[i]) - Math.signum(window[i - 1]));
+        }
+        return zcr / window.length;
+    }
+
+    /**
+     * Spectral peak, i.e. the bin with the largest amplitude
+     */
+    private double spectralPeak() {
+        double max = 0.0;
+        int peak = 0;
+        for (int i = 0; i < spectrum.length; i++) {
+            if (spectrum[i] > max) {
+                peak = i;
+                max = spectrum[i];
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Spectral flatness of the window
+     */
+    private double spectralFlatness() {
+        double sum = 0.0;
+        double sumln = 0.0;
+        double denom = 1.0 / spectrum.length;
+        for (double bin : spectrum) {
+            sum += bin;
+            sumln += Math.log(bin);
+        }
+        return Math.exp(denom * sumln) / denom / sum;
+    }
+
+    /**
+     * Spectral Centroid of the window
+     */
+    private double spectralCentroid() {
+        double num = 0.0;
+        double den = 0.0;
+        for (int i = 0; i < spectrum.length; i++) {
+            num += i * spectrum[i];
+            den += spectrum[i];
+        }
+        return num / den;
+    }
+
+    /**
+     * Linear Prediction Cepstral coefficients of the window into the reflection buffer, from the
+     * autocorrelation by the Levinson recursion
+     */
+    private void linearPrediction() {
+        final double lambda = 0.0;
+        double[] R = autocorrelation;
+        double[] K = reflection;
+        double[] A = predictor;
+        double[] Am1 = previousPredictor;
+        double[] dl = warped;
+        double r1, r2, r1t;
+        // find the order-P autocorrelation array, R, for the sequence x of length L and warping of lambda
+        R[0] = 0;
+        r1 = 0;
+        r2 = 0;
+        for (int k = 0; k < window.length; k++) {
+            R[0] += window[k] * window[k];
+            dl[k] = r1 - lambda * (window[k] - r2);
+            r1 = window[k];
+            r2 = dl[k];
+        }
+        for (int i = 1; i < R.length; i++) {
+            R[i] = 0;
+            r1 = 0;
+            r2 = 0;
+            for (int k = 0; k < window.length; k++) {
+                R[i] += dl[k] * window[k];
+                r1t = dl[k];
+                dl[k] = r1 - lambda * (r1t - r2);
+                r1 = r1t;
+                r2 = dl[k];
+            }
+        }
+        for (int i = 0; i < lpcDimensions; i++) {
+            K[i] = 0;
+        }
+        if (R[0] == 0.0) return;
+        double km, Em1, Em;
+        int k, m;
+        for (k = 0; k < lpcDimensions; k++) {
+            A[k] = 0;
+            Am1[k] = 0;
+        }
+        A[0] = 1;
+        Am1[0] = 1;
+        Em1 = R[0];
+        for (m = 1; m < lpcDimensions; m++) {
+            double err = 0.0;
+            for (k = 1; k <= m - 1; k++)
+                err += Am1[k] * R[m - k];
+            km = (R[m] - err) / Em1;
+            K[m - 1] = -km;
+            A[m] = km;
+            for (k = 1; k <= m - 1; k++)
+                A[k] = Am1[k] - km * Am1[m - k];
+            Em = (1 - km * km) * Em1;
+            System.arraycopy(A, 0, Am1, 0, lpcDimensions);
+            Em1 = Em;
+        }
+    }
+}
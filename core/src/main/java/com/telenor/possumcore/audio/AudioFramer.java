@@ -0,0 +1,86 @@
+package com.telenor.possumcore.audio;
+
+import android.support.annotation.NonNull;
+
+import com.telenor.possumcore.interfaces.IFrameReceiver;
+
+/**
+ * Cuts a stream of audio into overlapping frames. Samples left over after one read are kept
+ * for the next, so no audio is lost between reads, and each frame is stamped with the time of
+ * its first sample, counted from the start of the stream. Not thread safe.
+ */
+public class AudioFramer {
+    private final short[] frame;
+    private final int hop;
+    private final int sampleRate;
+    private final IFrameReceiver receiver;
+    private int filled;
+    private long frameStart;
+    private long startTime;
+
+    /**
+     * Constructor for the framer
+     *
+     * @param frameSize  number of samples in a frame
+     * @param hop        number of samples between the start of two frames, half the frame size
+     *                   gives 50% overlap
+     * @param sampleRate rate of the audio in Hz
+     * @param receiver   receives the frames
+     */
+    public AudioFramer(int frameSize, int hop, int sampleRate, @NonNull IFrameReceiver receiver) {
+        if (frameSize < 1) throw new IllegalArgumentException("Minimum frame size is 1");
+        if (hop < 1 || hop > frameSize)
+            throw new IllegalArgumentException("Hop must be between 1 and the frame size");
+        if (sampleRate < 1) throw new IllegalArgumentException("Sample rate must be positive");
+        frame = new short[frameSize];
+        this.hop = hop;
+        this.sampleRate = sampleRate;
+        this.receiver = receiver;
+    }
+
+    /**
+     * Starts a new stream, dropping samples left over from the last one
+     *
+     * @param timestamp the time of the first sample in the stream
+     */
+    public void start(long timestamp) {
+        startTime = timestamp;
+        frameStart = 0;
+        filled = 0;
+    }
+
+    /**
+     * Adds samples to the stream, sending every frame they complete
+     *
+     * @param samples audio in the PCM 16 bit format
+     * @param size    number of samples to add, nothing is done if not positive
+     * @return number of frames sent
+     */
+    public int push(@NonNull short[] samples, int size) {
+        int frames = 0;
+        int position = 0;
+        while (position < size) {
+            int copy = Math.min(frame.length - filled, size - position);
+            System.arraycopy(samples, position, frame, filled, copy);
+            filled += copy;
+            position += copy;
+            if (filled == frame.length) {
+                receiver.frameReady(startTime + frameStart * 1000 / sampleRate, frame);
+                frames++;
+                System.arraycopy(frame, hop, frame, 0, frame.length - hop);
+                filled -= hop;
+                frameStart += hop;
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Number of samples waiting for the next frame
+     *
+     * @return number of samples kept from earlier pushes
+     */
+    public int pending() {
+        return filled;
+    }
+}
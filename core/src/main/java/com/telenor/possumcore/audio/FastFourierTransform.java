@@ -0,0 +1,149 @@
+package com.telenor.possumcore.audio;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Fast Fourier transform of real signals of one size. The twiddle factors and bit reversal order
+ * are computed once when it is made, and the transform works in buffers owned by the caller, so
+ * one instance can be shared by any number of threads. A real signal of n points is transformed
+ * as a complex signal of n/2 points, about half the work of a complex transform of n points.
+ */
+public class FastFourierTransform {
+    private final int size;
+    private final int half;
+    private final int[] reversed; // Bit reversed order of the half size transform
+    private final double[] cos; // Twiddles of the half size transform
+    private final double[] sin;
+    private final double[] splitCos; // Twiddles separating the real spectrum from the half size one
+    private final double[] splitSin;
+
+    /**
+     * Constructor for a transform of a given size
+     *
+     * @param size number of points in the signal, a power of 2 and at least 2
+     */
+    public FastFourierTransform(int size) {
+        if (size < 2 || (size & (size - 1)) != 0)
+            throw new IllegalArgumentException("Size must be a power of 2 and at least 2");
+        this.size = size;
+        half = size / 2;
+        reversed = new int[half];
+        int bits = Integer.numberOfTrailingZeros(half);
+        for (int i = 0; i < half; i++) {
+            reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+        cos = new double[Math.max(1, half / 2)];
+        sin = new double[cos.length];
+        for (int i = 0; i < cos.length; i++) {
+            cos[i] = Math.cos(2 * Math.PI * i / half);
+            sin[i] = -Math.sin(2 * Math.PI * i / half);
+        }
+        splitCos = new double[half / 2 + 1];
+        splitSin = new double[splitCos.length];
+        for (int i = 0; i < splitCos.length; i++) {
+            splitCos[i] = Math.cos(2 * Math.PI * i / size);
+            splitSin[i] = -Math.sin(2 * Math.PI * i / size);
+        }
+    }
+
+    /**
+     * Number of points in the signal
+     *
+     * @return the size of the transform
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of frequency bins of a real signal, from 0 to half the sample rate
+     *
+     * @return size / 2 + 1
+     */
+    public int bins() {
+        return half + 1;
+    }
+
+    /**
+     * Transforms a real signal. The remaining bins of the spectrum mirror these, bin k of the
+     * full spectrum is the complex conjugate of bin size - k.
+     *
+     * @param signal the signal, size points from the start are used and left unchanged
+     * @param real   receives the real part of the bins, at least bins() long
+     * @param imag   receives the imaginary part of the bins, at least bins() long
+     */
+    public void realForward(@NonNull double[] signal, @NonNull double[] real, @NonNull double[] imag) {
+        if (real.length < half + 1 || imag.length < half + 1)
+            throw new IllegalArgumentException("Output must hold " + (half + 1) + " bins");
+        // Even points as real and odd points as imaginary parts, in bit reversed order
+        for (int i = 0; i < half; i++) {
+            int j = reversed[i];
+            real[i] = signal[2 * j];
+            imag[i] = signal[2 * j + 1];
+        }
+        transform(real, imag);
+        // Separate the spectra of the even and odd points and combine them to the real spectrum
+        double first = real[0];
+        real[0] = first + imag[0];
+        real[half] = first - imag[0];
+        imag[0] = 0;
+        imag[half] = 0;
+        for (int k = 1; k <= half / 2; k++) {
+            int mirror = half - k;
+            double evenReal = (real[k] + real[mirror]) / 2;
+            double evenImag = (imag[k] - imag[mirror]) / 2;
+            double oddReal = (imag[k] + imag[mirror]) / 2;
+            double oddImag = (real[mirror] - real[k]) / 2;
+            double twiddledReal = splitCos[k] * oddReal - splitSin[k] * oddImag;
+            double twiddledImag = splitCos[k] * oddImag + splitSin[k] * oddReal;
+            real[k] = evenReal + twiddledReal;
+            imag[k] = evenImag + twiddledImag;
+            if (mirror != k) {
+                real[mirror] = evenReal - twiddledReal;
+                imag[mirror] = twiddledImag - evenImag;
+            }
+        }
+    }
+
+    /**
+     * Magnitude of each bin of the full spectrum of a real signal, including the mirrored bins
+     *
+     * @param signal     the signal, size points from the start are used and left unchanged
+     * @param real       work buffer, at least bins() long
+     * @param imag       work buffer, at least bins() long
+     * @param magnitudes receives the magnitudes, at least size long
+     */
+    public void magnitudes(@NonNull double[] signal, @NonNull double[] real, @NonNull double[] imag, @NonNull double[] magnitudes) {
+        realForward(signal, real, imag);
+        for (int k = 0; k <= half; k++) {
+            magnitudes[k] = Math.sqrt(real[k] * real[k] + imag[k] * imag[k]);
+        }
+        for (int k = half + 1; k < size; k++) {
+            magnitudes[k] = magnitudes[size - k];
+        }
+    }
+
+    /**
+     * Iterative radix 2 transform of the half size complex signal, already in bit reversed order
+     */
+    private void transform(double[] real, double[] imag) {
+        for (int length = 2; length <= half; length <<= 1) {
+            int span = length >> 1;
+            int step = half / length;
+            for (int start = 0; start < half; start += length) {
+                for (int j = 0; j < span; j++) {
+                    int top = start + j;
+                    int bottom = top + span;
+                    double wr = cos[j * step];
+                    double wi = sin[j * step];
+                    double tempReal = real[bottom] * wr - imag[bottom] * wi;
+                    double tempImag = real[bottom] * wi + imag[bottom] * wr;
+                    real[bottom] = real[top] - tempReal;
+                    imag[bottom] = imag[top] - tempImag;
+                    real[top] += tempReal;
+                    imag[top] += tempImag;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.telenor.possumcore.audio;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Mel frequency cepstral coefficients of a window. The filter bins, their weights and the DCT-II
+ * matrix are computed once for a sample rate and FFT size, so each window only costs summing the
+ * filters and one small matrix product. Keeps no mutable state and can be shared between threads.
+ */
+public class MfccExtractor {
+    private static final double floor = -50; // Lowest log energy of a filter
+    private final double sampleRate;
+    private final int bins;
+    private final int[] starts; // First bin of each filter
+    private final double[][] weights; // Weight of each bin of each filter, from its first bin
+    private final double[][] dct; // DCT-II matrix, one row pr coefficient
+
+    /**
+     * Constructor for the extractor
+     *
+     * @param fftSize        size of the FFT the bins are from
+     * @param sampleRate     sample rate of the signal in Hz, deciding the frequency of each bin
+     * @param lowerFrequency lower edge of the lowest filter in Hz
+     * @param upperFrequency upper edge of the highest filter in Hz, usually half the sample rate
+     * @param filters        number of mel filters
+     * @param cepstra        number of coefficients, at most the number of filters
+     */
+    public MfccExtractor(int fftSize, double sampleRate, double lowerFrequency, double upperFrequency, int filters, int cepstra) {
+        if (fftSize < 2) throw new IllegalArgumentException("Minimum FFT size is 2");
+        if (filters < 1) throw new IllegalArgumentException("Minimum filters is 1");
+        if (cepstra < 1 || cepstra > filters) throw new IllegalArgumentException("Cepstra must be between 1 and the number of filters");
+        if (lowerFrequency < 0 || upperFrequency <= lowerFrequency) throw new IllegalArgumentException("Invalid frequency range");
+        this.sampleRate = sampleRate;
+        bins = fftSize / 2 + 1;
+        int[] cbin = binIndices(fftSize, sampleRate, lowerFrequency, upperFrequency, filters);
+        starts = new int[filters];
+        weights = new double[filters][];
+        for (int k = 1; k <= filters; k++) {
+            int first = cbin[k - 1];
+            int center = cbin[k];
+            int last = cbin[k + 1];
+            starts[k - 1] = first;
+            double[] filter = new double[Math.max(0, last - first + 1)];
+            // The weights keep the integer arithmetic the features have always been made with
+            for (int i = first; i <= center; i++) {
+                filter[i - first] = (i - first + 1) / (center - first + 1);
+            }
+            for (int i = center + 1; i <= last; i++) {
+                filter[i - first] = 1 - ((i - center) / (last - center + 1));
+            }
+            weights[k - 1] = filter;
+        }
+        dct = new double[cepstra][filters];
+        for (int i = 0; i < cepstra; i++) {
+            for (int j = 1; j <= filters; j++) {
+                dct[i][j - 1] = Math.cos(Math.PI * i / filters * (j - 0.5));
+            }
+        }
+    }
+
+    /**
+     * Sample rate the bins are placed by
+     *
+     * @return sample rate in Hz
+     */
+    public double sampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Number of mel filters
+     *
+     * @return number of filters
+     */
+    public int filters() {
+        return weights.length;
+    }
+
+    /**
+     * Number of coefficients made
+     *
+     * @return number of coefficients
+     */
+    public int cepstra() {
+        return dct.length;
+    }
+
+    /**
+     * Computes the coefficients of one window
+     *
+     * @param bins     the values the filters are applied to, at least fftSize / 2 + 1 long
+     * @param energies work buffer receiving the log energy of each filter, at least filters() long
+     * @param cepstra  receives the coefficients, at least cepstra() long
+     */
+    public void extract(@NonNull double[] bins, @NonNull double[] energies, @NonNull double[] cepstra) {
+        if (bins.length < this.bins) throw new IllegalArgumentException("Minimum bins is " + this.bins);
+        for (int k = 0; k < weights.length; k++) {
+            double[] filter = weights[k];
+            int start = starts[k];
+            double energy = 0;
+            for (int i = 0; i < filter.length; i++) {
+                energy += filter[i] * bins[start + i];
+            }
+            energy = Math.log(energy);
+            energies[k] = energy < floor ? floor : energy;
+        }
+        for (int i = 0; i < dct.length; i++) {
+            double[] row = dct[i];
+            double sum = 0;
+            for (int j = 0; j < row.length; j++) {
+                sum += energies[j] * row[j];
+            }
+            cepstra[i] = sum;
+        }
+    }
+
+    /**
+     * The FFT bin at the edges and center of each filter, evenly spread on the mel scale
+     */
+    private static int[] binIndices(int fftSize, double sampleRate, double lowerFrequency, double upperFrequency, int filters) {
+        int[] cbin = new int[filters + 2];
+        cbin[0] = (int) Math.round(lowerFrequency / sampleRate * fftSize);
+        cbin[cbin.length - 1] = fftSize / 2;
+        double lowerMel = freqToMel(lowerFrequency);
+        double upperMel = freqToMel(upperFrequency);
+        for (int i = 1; i <= filters; i++) {
+            double center = inverseMel(lowerMel + ((upperMel - lowerMel) / (filters + 1)) * i);
+            cbin[i] = (int) Math.round(center / sampleRate * fftSize);
+        }
+        return cbin;
+    }
+
+    private static double freqToMel(double freq) {
+        return 2595 * (Math.log(1 + freq / 700) / Math.log(10));
+    }
+
+    private static double inverseMel(double mel) {
+        return 700 * (Math.pow(10, mel / 2595) - 1);
+    }
+}
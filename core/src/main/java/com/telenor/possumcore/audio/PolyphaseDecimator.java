@@ -0,0 +1,120 @@
+package com.telenor.possumcore.audio;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Lowers the rate of 16 bit audio by an integer factor. A windowed sinc low pass removes what
+ * the lower rate cannot hold before samples are dropped, so high sounds are not folded down
+ * into false low ones. Only the kept samples are computed, the polyphase form of filtering and
+ * then dropping, so the cost is that of filtering at the lower rate. History is kept between
+ * calls, so audio can be given in reads of any size. Not thread safe.
+ */
+public class PolyphaseDecimator {
+    private static final double cutoff = 0.9; // Of the lower rates nyquist frequency, leaving room for the slope
+    private final int factor;
+    private final double[] coefficients;
+    private final double[] history; // Twice the taps, so the newest taps are always in one piece
+    private int position;
+    private int count;
+    private boolean started;
+
+    /**
+     * Constructor for the decimator
+     *
+     * @param factor       keeps one of this many samples
+     * @param tapsPerPhase length of the filter for each kept sample, longer gives a steeper slope
+     */
+    public PolyphaseDecimator(int factor, int tapsPerPhase) {
+        if (factor < 1) throw new IllegalArgumentException("Minimum factor is 1");
+        if (tapsPerPhase < 1) throw new IllegalArgumentException("Minimum taps pr phase is 1");
+        this.factor = factor;
+        int taps = factor == 1 ? 1 : factor * tapsPerPhase;
+        coefficients = new double[taps];
+        history = new double[2 * taps];
+        if (factor == 1) {
+            coefficients[0] = 1;
+        } else {
+            // Blackman windowed sinc relative to an input rate of 1, scaled to a gain of 1
+            double frequency = cutoff * 0.5 / factor;
+            double middle = (taps - 1) / 2.0;
+            double sum = 0;
+            for (int i = 0; i < taps; i++) {
+                double t = i - middle;
+                double sinc = t == 0 ? 2 * frequency : Math.sin(2 * Math.PI * frequency * t) / (Math.PI * t);
+                double window = 0.42 - 0.5 * Math.cos(2 * Math.PI * i / (taps - 1)) + 0.08 * Math.cos(4 * Math.PI * i / (taps - 1));
+                coefficients[i] = sinc * window;
+                sum += coefficients[i];
+            }
+            for (int i = 0; i < taps; i++) {
+                coefficients[i] /= sum;
+            }
+        }
+        reset();
+    }
+
+    /**
+     * The rate reduction
+     *
+     * @return one of this many samples is kept
+     */
+    public int factor() {
+        return factor;
+    }
+
+    /**
+     * Number of samples at most made from a read of audio
+     *
+     * @param inputSize number of samples read
+     * @return size the output needs to be
+     */
+    public int outputSize(int inputSize) {
+        return inputSize / factor + 1;
+    }
+
+    /**
+     * Starts a new stream, forgetting the history of the last one
+     */
+    public void reset() {
+        position = 0;
+        count = factor - 1; // Keep the first sample
+        started = false;
+    }
+
+    /**
+     * Filters and decimates audio, continuing from the last call
+     *
+     * @param input  audio in the PCM 16 bit format
+     * @param size   number of samples in the input, nothing is done if not positive
+     * @param output the kept samples, at least outputSize(size) long
+     * @return number of samples put in the output
+     */
+    public int decimate(@NonNull short[] input, int size, @NonNull short[] output) {
+        if (size <= 0) return 0;
+        if (output.length < outputSize(size))
+            throw new IllegalArgumentException("Output must hold " + outputSize(size) + " samples");
+        int taps = coefficients.length;
+        if (!started) {
+            // Start settled on the first sample instead of ringing up from silence
+            for (int i = 0; i < history.length; i++) {
+                history[i] = input[0];
+            }
+            started = true;
+        }
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            history[position] = input[i];
+            history[position + taps] = input[i];
+            position = (position + 1) % taps;
+            if (++count < factor) continue;
+            count = 0;
+            // The oldest of the newest taps is at position, the newest at position + taps - 1
+            double sum = 0;
+            for (int k = 0; k < taps; k++) {
+                sum += coefficients[k] * history[position + taps - 1 - k];
+            }
+            long rounded = Math.round(sum);
+            output[kept++] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, rounded));
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,81 @@
+package com.telenor.possumcore.clock;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import com.telenor.possumcore.interfaces.IClock;
+
+/**
+ * The clock of the phone. The difference between epoch time and time since boot is found once and
+ * found again only when the time is changed, so converting sensor timestamps is pure arithmetic
+ * instead of reading both clocks for every event.
+ */
+public class DeviceClock implements IClock {
+    private static DeviceClock instance;
+    private volatile long offsetNanos; // Epoch nanos at boot
+    private final BroadcastReceiver timeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            refresh();
+        }
+    };
+
+    /**
+     * Constructor for a clock not told about time changes, call refresh when the time changes
+     */
+    public DeviceClock() {
+        refresh();
+    }
+
+    /**
+     * The clock shared by all detectors, kept up to date on time changes
+     *
+     * @param context a valid android context
+     * @return the shared clock
+     */
+    public static synchronized DeviceClock instance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new DeviceClock();
+            Context appContext = context.getApplicationContext();
+            (appContext != null ? appContext : context).registerReceiver(instance.timeReceiver, new IntentFilter(Intent.ACTION_TIME_CHANGED));
+        }
+        return instance;
+    }
+
+    /**
+     * Forgets the shared clock, so the next call to instance makes a new one registered with the
+     * context given then. For tests, where each test has its own application.
+     */
+    static synchronized void reset() {
+        instance = null;
+    }
+
+    /**
+     * Finds the difference between epoch time and time since boot again
+     */
+    public void refresh() {
+        offsetNanos = System.currentTimeMillis() * 1000000L - elapsedNanos();
+    }
+
+    @Override
+    public long now() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public long elapsedNanos() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return SystemClock.elapsedRealtimeNanos();
+        } else return SystemClock.elapsedRealtime() * 1000000L;
+    }
+
+    @Override
+    public long toEpochMillis(long elapsedNanos) {
+        return (offsetNanos + elapsedNanos) / 1000000L;
+    }
+}
@@ -0,0 +1,57 @@
+package com.telenor.possumcore.clock;
+
+import com.telenor.possumcore.interfaces.IClock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A clock that only moves when told to, for running detectors on a known time. Boot is at the
+ * epoch timestamp the clock is made with.
+ */
+public class VirtualClock implements IClock {
+    private final long bootMillis;
+    private final AtomicLong elapsedNanos = new AtomicLong();
+
+    /**
+     * Constructor for the virtual clock
+     *
+     * @param bootMillis epoch timestamp of boot, when elapsed time is 0
+     */
+    public VirtualClock(long bootMillis) {
+        this.bootMillis = bootMillis;
+    }
+
+    /**
+     * Moves the clock forward
+     *
+     * @param nanos nanos to move
+     */
+    public void advanceNanos(long nanos) {
+        if (nanos < 0) throw new IllegalArgumentException("Clock cannot move backwards");
+        elapsedNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Moves the clock forward
+     *
+     * @param millis millis to move
+     */
+    public void advance(long millis) {
+        advanceNanos(millis * 1000000L);
+    }
+
+    @Override
+    public long now() {
+        return toEpochMillis(elapsedNanos.get());
+    }
+
+    @Override
+    public long elapsedNanos() {
+        return elapsedNanos.get();
+    }
+
+    @Override
+    public long toEpochMillis(long elapsedNanos) {
+        return bootMillis + elapsedNanos / 1000000L;
+    }
+}
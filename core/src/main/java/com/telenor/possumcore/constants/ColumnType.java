@@ -0,0 +1,13 @@
+package com.telenor.possumcore.constants;
+
+/**
+ * Types a column in a typed dataSet can have. Decides how the value is stored and how it is
+ * written when the dataSet is exported to json
+ */
+public class ColumnType {
+    public static final int Float = 0; // Stored as float, exported as Float.toString
+    public static final int Double = 1; // Stored as double, exported as Double.toString
+    public static final int Int = 2; // Stored as int, exported as Integer.toString
+    public static final int Long = 3; // Stored as long, exported as Long.toString
+    public static final int Text = 4; // Stored as a string reference, exported as is
+}
@@ -11,4 +11,5 @@ public class DetectorType {
     public static final int Image = 103;
     public static final int Audio = 104;
     public static final int Hardware = 105;
+    public static final int MultiSensor = 106;
 }
\ No newline at end of file
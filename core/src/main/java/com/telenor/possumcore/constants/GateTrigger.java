@@ -0,0 +1,12 @@
+package com.telenor.possumcore.constants;
+
+/**
+ * Events that can open the gate for costly detectors when PossumCore gates them. They are flags
+ * and can be combined, like SignificantMotion | ScreenOn.
+ */
+public class GateTrigger {
+    public static final int None = 0; // No triggers, costly detectors run all the time
+    public static final int SignificantMotion = 1; // Phone picked up or carried, api 18 and up
+    public static final int ScreenOn = 2; // User turned on the screen
+    public static final int StepDetected = 4; // User took a step, api 19 and up
+}
@@ -0,0 +1,11 @@
+package com.telenor.possumcore.constants;
+
+/**
+ * How important a dataSet is to keep when the memory budget is exceeded. DataSets with lower
+ * priority are trimmed first.
+ */
+public class MemoryPriority {
+    public static final int Low = 0; // Trimmed first, data that is large or easily regathered
+    public static final int Normal = 1; // Default for all dataSets
+    public static final int High = 2; // Trimmed last, small data needed for every upload
+}
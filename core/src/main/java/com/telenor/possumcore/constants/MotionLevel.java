@@ -0,0 +1,11 @@
+package com.telenor.possumcore.constants;
+
+/**
+ * How much a sensor reports the phone is moving, as decided by the SamplingRateController.
+ * Higher levels are sampled more often.
+ */
+public class MotionLevel {
+    public static final int Still = 0; // Lying still, only a trickle of samples is needed
+    public static final int Moving = 1; // Held or handled, the default
+    public static final int Active = 2; // Walking or similar, sampled fast enough for gait
+}
@@ -5,21 +5,33 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.support.annotation.NonNull;
 
-import com.google.gson.JsonArray;
 import com.telenor.possumcore.abstractdetectors.AbstractSensorDetector;
 import com.telenor.possumcore.constants.DetectorType;
 import com.telenor.possumcore.interfaces.IDetectorChange;
+import com.telenor.possumcore.motion.GaitFeatureExtractor;
+import com.telenor.possumcore.motion.SamplingRateController;
+import com.telenor.possumcore.storage.DataSchema;
+import com.telenor.possumcore.storage.RetentionPolicy;
 
 /**
  * Uses accelerometer to determine the movement/gait of the user, as well as detecting motion
  * and how the phone is held
  */
 public class Accelerometer extends AbstractSensorDetector {
+    public static final String gaitSet = "gait";
+    private static final DataSchema gaitSchema = DataSchema.floats(GaitFeatureExtractor.features);
+    // About 2.5 seconds of samples at the 20 ms of walking, a feature vector each half window
+    private final GaitFeatureExtractor gait = new GaitFeatureExtractor(128, 64,
+            (timestamp, values) -> streamSample(gaitSet, timestamp, values));
+
     public Accelerometer(@NonNull Context context) {
         this(context, null);
     }
     public Accelerometer(@NonNull Context context, IDetectorChange listener) {
         super(context, Sensor.TYPE_ACCELEROMETER, listener);
+        // Variances of the magnitude in (m/s^2)^2: lying on a table and walking
+        setRateController(new SamplingRateController(0.01f, 1f));
+        createDataSet(gaitSet);
     }
 
     @Override
@@ -37,14 +49,35 @@ public class Accelerometer extends AbstractSensorDetector {
         return 85; // Default set - 3 seconds with one each 35 milliseconds
     }
 
+    @Override
+    protected RetentionPolicy retentionPolicy(@NonNull String dataSet) {
+        if (gaitSet.equals(dataSet)) return RetentionPolicy.millis(60000); // A minute of features
+        return RetentionPolicy.millis(3000); // Default set - 3 seconds, whatever the sampling rate
+    }
+
+    @Override
+    protected DataSchema dataSchema(@NonNull String dataSet) {
+        return gaitSet.equals(dataSet) ? gaitSchema : super.dataSchema(dataSet);
+    }
+
+    @Override
+    public void run() {
+        gait.reset();
+        super.run();
+    }
+
+    @Override
+    protected void onSample(long timestamp, @NonNull float[] values) {
+        gait.add(timestamp, values);
+    }
+
+    @Override
+    protected void onSamplingPeriodChanged(int periodMicro) {
+        gait.reset(); // The lags are found from one interval for the whole window
+    }
+
     @Override
     public void onSensorChanged(SensorEvent sensorEvent) {
-        if (isInvalid(sensorEvent)) return;
-        JsonArray data = new JsonArray();
-        data.add(""+timestamp(sensorEvent));
-        data.add(""+sensorEvent.values[0]);
-        data.add(""+sensorEvent.values[1]);
-        data.add(""+sensorEvent.values[2]);
-        streamData(data);
+        handleEvent(sensorEvent);
     }
 }
\ No newline at end of file
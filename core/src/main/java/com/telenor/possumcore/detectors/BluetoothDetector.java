@@ -13,10 +13,13 @@ import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.annotation.RequiresApi;
 
-import com.google.gson.JsonArray;
 import com.telenor.possumcore.abstractdetectors.AbstractReceiverDetector;
+import com.telenor.possumcore.constants.ColumnType;
 import com.telenor.possumcore.constants.DetectorType;
 import com.telenor.possumcore.interfaces.IDetectorChange;
+import com.telenor.possumcore.storage.DataSchema;
+import com.telenor.possumcore.storage.Sample;
+import com.telenor.possumcore.storage.SamplePool;
 
 /**
  * Uses bonded bluetooth devices to see if you are close to your environment as well as
@@ -32,6 +35,12 @@ public class BluetoothDetector extends AbstractReceiverDetector {
                                             BluetoothProfile.STATE_CONNECTING,
                                             BluetoothProfile.STATE_DISCONNECTING};
     private ScanCallback bleScanCallback;
+    // Device type, device class, mac, connection state, profile
+    private static final DataSchema deviceSchema = new DataSchema(ColumnType.Int, ColumnType.Int, ColumnType.Text, ColumnType.Int, ColumnType.Int);
+    // Device type, device class, mac, signal strength, transmission power lvl, bond state
+    private static final DataSchema scanSchema = new DataSchema(ColumnType.Int, ColumnType.Int, ColumnType.Text, ColumnType.Int, ColumnType.Int, ColumnType.Int);
+    private final SamplePool devicePool = new SamplePool(deviceSchema, 2);
+    private final SamplePool scanPool = new SamplePool(scanSchema, 2);
 
     public BluetoothDetector(@NonNull Context context) {
         this(context, null);
@@ -55,6 +64,11 @@ public class BluetoothDetector extends AbstractReceiverDetector {
         return 20; // Default set
     }
 
+    @Override
+    protected DataSchema dataSchema(@NonNull String dataSet) {
+        return dataSet.equals(scanDataSet) ? scanSchema : deviceSchema;
+    }
+
     @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
     private void createBleCallback() {
         bleScanCallback = new ScanCallback() {
@@ -66,15 +80,16 @@ public class BluetoothDetector extends AbstractReceiverDetector {
                     txPowerLvl = (short) record.getTxPowerLevel(); // Transmission power level in Db
                 }
                 BluetoothDevice device = result.getDevice();
-                JsonArray data = new JsonArray();
-                data.add("" + now()); // Timestamp
-                data.add("" + device.getType()); // BLE/classic/both
-                data.add(""+device.getBluetoothClass().getDeviceClass()); // Device class
-                data.add(device.getAddress()); // mac
-                data.add("" + result.getRssi()); // signal strength
-                data.add("" + txPowerLvl); // transmission power lvl
-                data.add("" + device.getBondState()); // bond state
-                streamData(data, scanDataSet);
+                Sample scanSample = scanPool.acquire();
+                scanSample.timestamp(now());
+                scanSample.set(0, device.getType()); // BLE/classic/both
+                scanSample.set(1, device.getBluetoothClass().getDeviceClass()); // Device class
+                scanSample.set(2, device.getAddress()); // mac
+                scanSample.set(3, result.getRssi()); // signal strength
+                scanSample.set(4, txPowerLvl); // transmission power lvl
+                scanSample.set(5, device.getBondState()); // bond state
+                streamSample(scanDataSet, scanSample);
+                scanPool.release(scanSample);
             }
         };
     }
@@ -82,20 +97,21 @@ public class BluetoothDetector extends AbstractReceiverDetector {
     private final BluetoothProfile.ServiceListener serviceListener = new BluetoothProfile.ServiceListener() {
         @Override
         public void onServiceConnected(int profile, BluetoothProfile proxy) {
+            Sample deviceSample = devicePool.acquire();
             for (BluetoothDevice device : proxy.getDevicesMatchingConnectionStates(allStates)) {
-                JsonArray data = new JsonArray();
-                data.add("" + now()); // Timestamp
+                deviceSample.timestamp(now());
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
-                    data.add("" + device.getType()); // BLE/classic/both
+                    deviceSample.set(0, device.getType()); // BLE/classic/both
                 } else {
-                    data.add("0"); // Corresponds to BluetoothDevice.DEVICE_TYPE_UNKNOWN
+                    deviceSample.set(0, 0); // Corresponds to BluetoothDevice.DEVICE_TYPE_UNKNOWN
                 }
-                data.add(""+device.getBluetoothClass().getDeviceClass()); // Device class
-                data.add(device.getAddress()); // mac
-                data.add("" + proxy.getConnectionState(device)); // connection state
-                data.add("" + profile); // profile
-                streamData(data);
+                deviceSample.set(1, device.getBluetoothClass().getDeviceClass()); // Device class
+                deviceSample.set(2, device.getAddress()); // mac
+                deviceSample.set(3, proxy.getConnectionState(device)); // connection state
+                deviceSample.set(4, profile); // profile
+                streamSample(deviceSample);
             }
+            devicePool.release(deviceSample);
         }
 
         @Override
@@ -109,6 +125,11 @@ public class BluetoothDetector extends AbstractReceiverDetector {
         detectorStatusChanged();
     }
 
+    @Override
+    public boolean isCostly() {
+        return true; // Uses bluetooth scans
+    }
+
     @Override
     public boolean isEnabled() {
         return super.isEnabled() && bluetoothAdapter != null;
@@ -6,10 +6,11 @@ import android.hardware.SensorEvent;
 import android.os.Build;
 import android.support.annotation.NonNull;
 
-import com.google.gson.JsonArray;
 import com.telenor.possumcore.abstractdetectors.AbstractSensorDetector;
 import com.telenor.possumcore.constants.DetectorType;
 import com.telenor.possumcore.interfaces.IDetectorChange;
+import com.telenor.possumcore.motion.SamplingRateController;
+import com.telenor.possumcore.storage.RetentionPolicy;
 
 /**
  * Detects changes in the gyroscope, in effect how the phone is held/lies
@@ -20,6 +21,8 @@ public class GyroScope extends AbstractSensorDetector {
     }
     public GyroScope(@NonNull Context context, IDetectorChange listener) {
         super(context, Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2?Sensor.TYPE_GYROSCOPE_UNCALIBRATED:Sensor.TYPE_GYROSCOPE, listener);
+        // Variances of the magnitude in (rad/s)^2: lying on a table and walking
+        setRateController(new SamplingRateController(0.0005f, 0.1f));
     }
 
     @Override
@@ -37,14 +40,13 @@ public class GyroScope extends AbstractSensorDetector {
         return 85; // Default set - 3 seconds with one each 50 milliseconds
     }
 
+    @Override
+    protected RetentionPolicy retentionPolicy(@NonNull String dataSet) {
+        return RetentionPolicy.millis(3000); // Default set - 3 seconds, whatever the sampling rate
+    }
+
     @Override
     public void onSensorChanged(SensorEvent sensorEvent) {
-        if (isInvalid(sensorEvent)) return;
-        JsonArray data = new JsonArray();
-        data.add(""+timestamp(sensorEvent));
-        data.add(""+sensorEvent.values[0]);
-        data.add(""+sensorEvent.values[1]);
-        data.add(""+sensorEvent.values[2]);
-        streamData(data);
+        handleEvent(sensorEvent);
     }
 }
\ No newline at end of file
@@ -9,6 +9,7 @@ import com.google.gson.JsonArray;
 import com.telenor.possumcore.PossumCore;
 import com.telenor.possumcore.abstractdetectors.AbstractDetector;
 import com.telenor.possumcore.constants.DetectorType;
+import com.telenor.possumcore.constants.MemoryPriority;
 import com.telenor.possumcore.interfaces.IDetectorChange;
 
 import java.util.ArrayList;
@@ -34,6 +35,11 @@ public class HardwareDetector extends AbstractDetector {
         return 300;
     }
 
+    @Override
+    public int memoryPriority(@NonNull String dataSet) {
+        return MemoryPriority.High; // Tiny and only gathered once pr session
+    }
+
     @Override
     public int detectorType() {
         return DetectorType.Hardware;
@@ -32,6 +32,7 @@ import com.telenor.possumcore.facedetection.FaceTracker;
 import com.telenor.possumcore.facedetection.IFaceFound;
 import com.telenor.possumcore.interfaces.IDetectorChange;
 import com.telenor.possumcore.neuralnetworks.TensorWeights;
+import com.telenor.possumcore.storage.NumberEncoder;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -157,6 +158,11 @@ public class ImageDetector extends AbstractDetector implements IFaceFound {
         }
     }
 
+    @Override
+    public boolean isCostly() {
+        return true; // Uses the camera
+    }
+
     @Override
     public boolean isEnabled() {
         return tensorFlowInterface != null && context().getPackageManager().hasSystemFeature(PackageManager.FEATURE_CAMERA_FRONT);
@@ -264,8 +270,8 @@ public class ImageDetector extends AbstractDetector implements IFaceFound {
         for (Landmark landmark : face.getLandmarks()) {
             JsonArray landmarkSet = new JsonArray();
             landmarkSet.add(""+ landmark.getType());
-            landmarkSet.add(""+landmark.getPosition().x);
-            landmarkSet.add(""+landmark.getPosition().y);
+            landmarkSet.add(NumberEncoder.toString(landmark.getPosition().x));
+            landmarkSet.add(NumberEncoder.toString(landmark.getPosition().y));
             landmarks.add(landmarkSet);
         }
         return landmarks;
@@ -11,10 +11,13 @@ import android.os.Handler;
 import android.os.Looper;
 import android.support.annotation.NonNull;
 
-import com.google.gson.JsonArray;
 import com.telenor.possumcore.abstractdetectors.AbstractReceiverDetector;
+import com.telenor.possumcore.constants.ColumnType;
 import com.telenor.possumcore.constants.DetectorType;
 import com.telenor.possumcore.interfaces.IDetectorChange;
+import com.telenor.possumcore.storage.DataSchema;
+import com.telenor.possumcore.storage.Sample;
+import com.telenor.possumcore.storage.SamplePool;
 
 /**
  * Retrieves locational information based on network or gps to pinpoint your whereabouts in
@@ -25,6 +28,9 @@ public class LocationDetector extends AbstractReceiverDetector implements Locati
     private LocationManager locationManager;
     private Handler locationHandler;
     private static final int minTimePositionInterval = 1000; // Least amount of time between positions
+    // Latitude, longitude, altitude, accuracy, provider
+    private static final DataSchema locationSchema = new DataSchema(ColumnType.Double, ColumnType.Double, ColumnType.Double, ColumnType.Float, ColumnType.Text);
+    private final SamplePool locationPool = new SamplePool(locationSchema, 2);
 //    private static final long maxScanTime = 60*1000;
 
     public LocationDetector(@NonNull Context context) {
@@ -53,6 +59,11 @@ public class LocationDetector extends AbstractReceiverDetector implements Locati
         return 20; // Default set
     }
 
+    @Override
+    protected DataSchema dataSchema(@NonNull String dataSet) {
+        return locationSchema;
+    }
+
     /**
      * Confirms that the device has location capabilities and that at least one provider is
      * available (whether or not it is permitted)
@@ -139,16 +150,16 @@ public class LocationDetector extends AbstractReceiverDetector implements Locati
     @Override
     public void onLocationChanged(Location location) {
         if (location == null) return;
-        JsonArray array = new JsonArray();
-        array.add("" + now());
-//        array.add("" + location.getTime());
         // TODO: Get @alex on backend to fix format so it accepts the positions timestamp as well
-        array.add("" + location.getLatitude());
-        array.add("" + location.getLongitude());
-        array.add("" + location.getAltitude());
-        array.add("" + location.getAccuracy());
-        array.add(location.getProvider());
-        streamData(array);
+        Sample locationSample = locationPool.acquire();
+        locationSample.timestamp(now());
+        locationSample.set(0, location.getLatitude());
+        locationSample.set(1, location.getLongitude());
+        locationSample.set(2, location.getAltitude());
+        locationSample.set(3, location.getAccuracy());
+        locationSample.set(4, location.getProvider());
+        streamSample(locationSample);
+        locationPool.release(locationSample);
     }
 
     @Override
@@ -0,0 +1,210 @@
+package com.telenor.possumcore.detectors;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+
+import com.telenor.possumcore.abstractdetectors.AbstractDetector;
+import com.telenor.possumcore.constants.DetectorType;
+import com.telenor.possumcore.interfaces.IDetectorChange;
+import com.telenor.possumcore.interfaces.ISensorDelivery;
+import com.telenor.possumcore.storage.DataSchema;
+import com.telenor.possumcore.storage.RetentionPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Listens to several sensors with one listener, storing each in its own dataSet named after the
+ * sensor. Events are dispatched by sensor type through a plain array, so each extra sensor only
+ * costs its own registration. Default is the magnetometer, gravity, linear acceleration,
+ * rotation vector and pressure, any of them missing on the device is left out.
+ */
+public class MultiSensorDetector extends AbstractDetector implements SensorEventListener, ISensorDelivery {
+    private static final int[] defaultTypes = {Sensor.TYPE_MAGNETIC_FIELD, Sensor.TYPE_GRAVITY,
+            Sensor.TYPE_LINEAR_ACCELERATION, Sensor.TYPE_ROTATION_VECTOR, Sensor.TYPE_PRESSURE};
+    private static final int MIN_INTERVAL_MILLI = 35;
+    private static final int PRESSURE_INTERVAL_MILLI = 200; // Air pressure changes slowly
+    private SensorManager sensorManager;
+    private Channel[] channels = new Channel[0]; // Indexed by sensor type, null if not listened to
+    private final List<Channel> present = new ArrayList<>();
+    private Handler sensorHandler;
+    private int maxReportLatencyMicro;
+
+    public MultiSensorDetector(@NonNull Context context) {
+        this(context, null);
+    }
+
+    public MultiSensorDetector(@NonNull Context context, IDetectorChange listener) {
+        this(context, listener, defaultTypes);
+    }
+
+    /**
+     * Constructor for listening to a chosen set of sensors
+     *
+     * @param context     a valid android context
+     * @param listener    listener for changes to the detector
+     * @param sensorTypes the sensor types to listen to, found by Sensor.TYPE
+     */
+    public MultiSensorDetector(@NonNull Context context, IDetectorChange listener, int... sensorTypes) {
+        super(context, listener);
+        sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        if (sensorManager == null)
+            return;
+        int maxType = 0;
+        for (int type : sensorTypes) maxType = Math.max(maxType, type);
+        channels = new Channel[maxType + 1];
+        for (int type : sensorTypes) {
+            Sensor sensor = sensorManager.getDefaultSensor(type);
+            if (sensor == null || channels[type] != null) continue;
+            Channel channel = new Channel(sensor, type);
+            channels[type] = channel;
+            present.add(channel);
+            createDataSet(channel.dataSet);
+        }
+    }
+
+    /**
+     * Name of the dataSet a sensor type is stored in
+     *
+     * @param sensorType the sensor type, found by Sensor.TYPE
+     * @return the name of the dataSet
+     */
+    public static String dataSetName(int sensorType) {
+        switch (sensorType) {
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                return "magnetometer";
+            case Sensor.TYPE_GRAVITY:
+                return "gravity";
+            case Sensor.TYPE_LINEAR_ACCELERATION:
+                return "linear_acceleration";
+            case Sensor.TYPE_ROTATION_VECTOR:
+                return "rotation_vector";
+            case Sensor.TYPE_PRESSURE:
+                return "pressure";
+            default:
+                return "sensor_" + sensorType;
+        }
+    }
+
+    @Override
+    protected DataSchema dataSchema(@NonNull String dataSet) {
+        if (present == null) return null; // The default set, created before the sensors are found
+        for (Channel channel : present) {
+            if (channel.dataSet.equals(dataSet)) return channel.schema;
+        }
+        return null;
+    }
+
+    @Override
+    public int detectorType() {
+        return DetectorType.MultiSensor;
+    }
+
+    @Override
+    public String detectorName() {
+        return "multisensor";
+    }
+
+    @Override
+    public int queueLimit(@NonNull String key) {
+        return 85; // 3 seconds with one each 35 milliseconds
+    }
+
+    @Override
+    protected RetentionPolicy retentionPolicy(@NonNull String dataSet) {
+        return RetentionPolicy.millis(3000); // 3 seconds of each sensor, whatever the sampling rate
+    }
+
+    @Override
+    public void setSensorHandler(Handler handler) {
+        sensorHandler = handler;
+    }
+
+    @Override
+    public void setMaxReportLatency(int millis) {
+        if (millis < 0) throw new IllegalArgumentException("Latency cannot be negative");
+        maxReportLatencyMicro = millis * 1000;
+    }
+
+    /**
+     * Registers the listener once for each sensor present, all with the same handler and latency
+     */
+    private void registerListeners() {
+        for (Channel channel : present) {
+            channel.lastRecord = 0;
+            if (maxReportLatencyMicro > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && channel.sensor.getFifoMaxEventCount() > 0) {
+                sensorManager.registerListener(this, channel.sensor, channel.intervalMicro, maxReportLatencyMicro, sensorHandler);
+            } else sensorManager.registerListener(this, channel.sensor, channel.intervalMicro, sensorHandler);
+        }
+    }
+
+    @Override
+    public void run() {
+        super.run();
+        registerListeners();
+    }
+
+    @Override
+    public void onResume(boolean continueRunning) {
+        super.onResume(continueRunning);
+        registerListeners();
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        sensorManager.unregisterListener(this);
+    }
+
+    @Override
+    public void terminate() {
+        if (sensorManager != null) sensorManager.unregisterListener(this);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return !present.isEmpty();
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        int type = event.sensor.getType();
+        Channel channel = type >= 0 && type < channels.length ? channels[type] : null;
+        if (channel == null) return;
+        long intervalNano = channel.intervalMicro * 1000L;
+        // The sensor is registered at the interval, so events on time or a little early are kept
+        if (channel.lastRecord != 0 && event.timestamp - channel.lastRecord < intervalNano - intervalNano / 4)
+            return;
+        channel.lastRecord = event.timestamp;
+        streamSample(channel.dataSet, clock().toEpochMillis(event.timestamp), event.values);
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+    }
+
+    /**
+     * The state of one sensor listened to
+     */
+    private static class Channel {
+        private final Sensor sensor;
+        private final String dataSet;
+        private final DataSchema schema;
+        private final int intervalMicro;
+        private long lastRecord;
+
+        private Channel(Sensor sensor, int type) {
+            this.sensor = sensor;
+            dataSet = dataSetName(type);
+            // Rotation vector keeps x, y and z of the unit quaternion, the fourth follows from them
+            schema = DataSchema.floats(type == Sensor.TYPE_PRESSURE ? 1 : 3);
+            intervalMicro = (type == Sensor.TYPE_PRESSURE ? PRESSURE_INTERVAL_MILLI : MIN_INTERVAL_MILLI) * 1000;
+        }
+    }
+}
@@ -11,10 +11,13 @@ import android.net.wifi.WifiManager;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
-import com.google.gson.JsonArray;
 import com.telenor.possumcore.abstractdetectors.AbstractReceiverDetector;
+import com.telenor.possumcore.constants.ColumnType;
 import com.telenor.possumcore.constants.DetectorType;
 import com.telenor.possumcore.interfaces.IDetectorChange;
+import com.telenor.possumcore.storage.DataSchema;
+import com.telenor.possumcore.storage.Sample;
+import com.telenor.possumcore.storage.SamplePool;
 
 import java.util.List;
 
@@ -31,6 +34,8 @@ public class NetworkDetector extends AbstractReceiverDetector {
     private int wifiState = WifiManager.WIFI_STATE_DISABLED;
     private ConnectivityManager connectivityManager;
     private NetworkInfo.State networkState = NetworkInfo.State.DISCONNECTED;
+    private static final DataSchema scanSchema = new DataSchema(ColumnType.Text, ColumnType.Int); // BSSID, level
+    private final SamplePool scanPool = new SamplePool(scanSchema, 2); // Stored from both run and the receiver
 
     public NetworkDetector(@NonNull Context context) {
         this(context, null);
@@ -61,6 +66,11 @@ public class NetworkDetector extends AbstractReceiverDetector {
         return "network";
     }
 
+    @Override
+    public boolean isCostly() {
+        return true; // Uses wifi scans
+    }
+
     @Override
     public boolean isEnabled() {
         return super.isEnabled() && wifiManager != null;
@@ -71,6 +81,11 @@ public class NetworkDetector extends AbstractReceiverDetector {
         return 50; // Default set
     }
 
+    @Override
+    protected DataSchema dataSchema(@NonNull String dataSet) {
+        return scanSchema;
+    }
+
     @Override
     public boolean isAvailable() {
         return super.isAvailable() && wifiManager != null && wifiManager.isWifiEnabled(); //  && wifiState == WifiManager.WIFI_STATE_ENABLED
@@ -98,16 +113,15 @@ public class NetworkDetector extends AbstractReceiverDetector {
     }
 
     private void storeResults(List<ScanResult> results) {
+        Sample scanSample = scanPool.acquire();
         for (ScanResult scanResult : results) {
-            JsonArray data = new JsonArray();
-            data.add(""+now());
-            data.add(scanResult.BSSID);
-            data.add(""+scanResult.level);
+            scanSample.timestamp(now());
+            scanSample.set(0, scanResult.BSSID);
+            scanSample.set(1, scanResult.level);
             // TODO: Reimplement isConnectedToNetwork
-//            data.add(""+isConnectedToNetwork(scanResult.BSSID));
-            streamData(data);
+            streamSample(scanSample);
         }
-
+        scanPool.release(scanSample);
     }
 
     @Override
@@ -0,0 +1,109 @@
+package com.telenor.possumcore.filters;
+
+import com.telenor.possumcore.interfaces.ISampleFilter;
+
+/**
+ * Second order low or high pass filter of each column, with a Butterworth response by default.
+ * It starts settled on the first sample, so a constant offset like gravity does not ring.
+ */
+public class BiquadFilter implements ISampleFilter {
+    public static final double butterworthQ = 1 / Math.sqrt(2);
+    private final int columns;
+    private final double b0;
+    private final double b1;
+    private final double b2;
+    private final double a1;
+    private final double a2;
+    private final double[] z1;
+    private final double[] z2;
+    private boolean primed;
+
+    private BiquadFilter(int columns, double b0, double b1, double b2, double a0, double a1, double a2) {
+        if (columns < 1) throw new IllegalArgumentException("Minimum columns is 1");
+        this.columns = columns;
+        this.b0 = b0 / a0;
+        this.b1 = b1 / a0;
+        this.b2 = b2 / a0;
+        this.a1 = a1 / a0;
+        this.a2 = a2 / a0;
+        z1 = new double[columns];
+        z2 = new double[columns];
+    }
+
+    /**
+     * Low pass filter letting through what changes slower than the cutoff
+     *
+     * @param columns      number of values filtered in each sample
+     * @param cutoffHz     the cutoff frequency
+     * @param sampleRateHz the rate of the samples
+     * @param q            the quality factor, butterworthQ for a flat response
+     * @return the filter
+     */
+    public static BiquadFilter lowPass(int columns, double cutoffHz, double sampleRateHz, double q) {
+        double w0 = angle(cutoffHz, sampleRateHz, q);
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * q);
+        return new BiquadFilter(columns, (1 - cos) / 2, 1 - cos, (1 - cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    /**
+     * Butterworth low pass filter letting through what changes slower than the cutoff
+     *
+     * @param columns      number of values filtered in each sample
+     * @param cutoffHz     the cutoff frequency
+     * @param sampleRateHz the rate of the samples
+     * @return the filter
+     */
+    public static BiquadFilter lowPass(int columns, double cutoffHz, double sampleRateHz) {
+        return lowPass(columns, cutoffHz, sampleRateHz, butterworthQ);
+    }
+
+    /**
+     * Butterworth high pass filter letting through what changes faster than the cutoff
+     *
+     * @param columns      number of values filtered in each sample
+     * @param cutoffHz     the cutoff frequency
+     * @param sampleRateHz the rate of the samples
+     * @return the filter
+     */
+    public static BiquadFilter highPass(int columns, double cutoffHz, double sampleRateHz) {
+        double w0 = angle(cutoffHz, sampleRateHz, butterworthQ);
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * butterworthQ);
+        return new BiquadFilter(columns, (1 + cos) / 2, -(1 + cos), (1 + cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    private static double angle(double cutoffHz, double sampleRateHz, double q) {
+        if (cutoffHz <= 0 || cutoffHz >= sampleRateHz / 2)
+            throw new IllegalArgumentException("Cutoff must be between 0 and half the sample rate");
+        if (q <= 0) throw new IllegalArgumentException("Quality factor must be positive");
+        return 2 * Math.PI * cutoffHz / sampleRateHz;
+    }
+
+    @Override
+    public boolean filter(long timestamp, float[] values) {
+        if (!primed) {
+            // Settle the state as if the first sample had always been there
+            double gain = (b0 + b1 + b2) / (1 + a1 + a2);
+            for (int i = 0; i < columns; i++) {
+                double out = gain * values[i];
+                z2[i] = b2 * values[i] - a2 * out;
+                z1[i] = out - b0 * values[i];
+            }
+            primed = true;
+        }
+        for (int i = 0; i < columns; i++) {
+            double in = values[i];
+            double out = b0 * in + z1[i];
+            z1[i] = b1 * in - a1 * out + z2[i];
+            z2[i] = b2 * in - a2 * out;
+            values[i] = (float) out;
+        }
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        primed = false;
+    }
+}
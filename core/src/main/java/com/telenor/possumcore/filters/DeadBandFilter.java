@@ -0,0 +1,45 @@
+package com.telenor.possumcore.filters;
+
+import com.telenor.possumcore.interfaces.ISampleFilter;
+
+/**
+ * Only keeps samples that changed more than a threshold from the last kept sample in any column,
+ * so a sensor lying still or reporting noise does not fill the storage with the same values.
+ */
+public class DeadBandFilter implements ISampleFilter {
+    private final int columns;
+    private final float threshold;
+    private final float[] last;
+    private boolean primed;
+
+    /**
+     * Constructor for the dead band filter
+     *
+     * @param columns   number of values in each sample
+     * @param threshold how much a value must change before a sample is kept
+     */
+    public DeadBandFilter(int columns, float threshold) {
+        if (columns < 1) throw new IllegalArgumentException("Minimum columns is 1");
+        if (threshold < 0) throw new IllegalArgumentException("Threshold cannot be negative");
+        this.columns = columns;
+        this.threshold = threshold;
+        last = new float[columns];
+    }
+
+    @Override
+    public boolean filter(long timestamp, float[] values) {
+        boolean changed = !primed;
+        for (int i = 0; i < columns && !changed; i++) {
+            changed = Math.abs(values[i] - last[i]) > threshold;
+        }
+        if (!changed) return false;
+        System.arraycopy(values, 0, last, 0, columns);
+        primed = true;
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        primed = false;
+    }
+}
@@ -0,0 +1,64 @@
+package com.telenor.possumcore.filters;
+
+import com.telenor.possumcore.interfaces.ISampleFilter;
+
+/**
+ * Reduces the rate of samples by keeping every n-th, after a fourth order Butterworth low pass
+ * removes what changes too fast for the lower rate. Unlike simply dropping samples, fast
+ * vibrations are not folded down into the kept samples as false slow motion.
+ */
+public class Decimator implements ISampleFilter {
+    private static final double cutoff = 0.8; // Of the lower rates nyquist frequency, leaving room for the slope
+    private final int factor;
+    private final BiquadFilter first;
+    private final BiquadFilter second;
+    private int count;
+
+    /**
+     * Constructor for the decimator
+     *
+     * @param columns number of values in each sample
+     * @param factor  keeps one of this many samples
+     */
+    public Decimator(int columns, int factor) {
+        if (factor < 1) throw new IllegalArgumentException("Minimum factor is 1");
+        this.factor = factor;
+        count = factor - 1; // Keep the first sample
+        if (factor == 1) {
+            first = null;
+            second = null;
+            return;
+        }
+        // Relative to an input rate of 1, cascaded to the q values of a fourth order Butterworth
+        double cutoffHz = cutoff * 0.5 / factor;
+        first = BiquadFilter.lowPass(columns, cutoffHz, 1, 0.5411961);
+        second = BiquadFilter.lowPass(columns, cutoffHz, 1, 1.3065630);
+    }
+
+    /**
+     * The rate reduction
+     *
+     * @return one of this many samples is kept
+     */
+    public int factor() {
+        return factor;
+    }
+
+    @Override
+    public boolean filter(long timestamp, float[] values) {
+        if (factor == 1) return true;
+        first.filter(timestamp, values);
+        second.filter(timestamp, values);
+        if (++count < factor) return false;
+        count = 0;
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        if (factor == 1) return;
+        first.reset();
+        second.reset();
+        count = factor - 1; // Keep the first sample
+    }
+}
@@ -0,0 +1,38 @@
+package com.telenor.possumcore.filters;
+
+import android.support.annotation.NonNull;
+
+import com.telenor.possumcore.interfaces.ISampleFilter;
+
+/**
+ * Runs samples through several filters in order, stopping when one drops the sample. For example
+ * a GravityFilter followed by a Decimator and a DeadBandFilter stores the user acceleration at a
+ * lower rate and only when it changes.
+ */
+public class FilterPipeline implements ISampleFilter {
+    private final ISampleFilter[] stages;
+
+    /**
+     * Constructor for the pipeline
+     *
+     * @param stages the filters, in the order samples pass through them
+     */
+    public FilterPipeline(@NonNull ISampleFilter... stages) {
+        this.stages = stages.clone();
+    }
+
+    @Override
+    public boolean filter(long timestamp, float[] values) {
+        for (ISampleFilter stage : stages) {
+            if (!stage.filter(timestamp, values)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        for (ISampleFilter stage : stages) {
+            stage.reset();
+        }
+    }
+}
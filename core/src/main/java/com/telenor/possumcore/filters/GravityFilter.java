@@ -0,0 +1,64 @@
+package com.telenor.possumcore.filters;
+
+import com.telenor.possumcore.interfaces.ISampleFilter;
+
+/**
+ * Removes gravity from accelerometer samples, leaving the acceleration made by the user. Gravity
+ * is followed with a low pass filter over the time between samples, so an uneven rate is fine.
+ */
+public class GravityFilter implements ISampleFilter {
+    private final int columns;
+    private final float timeConstantMillis;
+    private final float[] gravity;
+    private long lastTimestamp;
+    private boolean primed;
+
+    /**
+     * Constructor for the gravity filter
+     *
+     * @param columns            number of values in each sample, usually 3
+     * @param timeConstantMillis how slowly gravity is followed, longer is steadier but slower to
+     *                           follow the phone turning
+     */
+    public GravityFilter(int columns, float timeConstantMillis) {
+        if (columns < 1) throw new IllegalArgumentException("Minimum columns is 1");
+        if (timeConstantMillis <= 0) throw new IllegalArgumentException("Time constant must be positive");
+        this.columns = columns;
+        this.timeConstantMillis = timeConstantMillis;
+        gravity = new float[columns];
+    }
+
+    /**
+     * The present estimate of gravity for a column
+     *
+     * @param column the column
+     * @return gravity along the column
+     */
+    public float gravity(int column) {
+        return gravity[column];
+    }
+
+    @Override
+    public boolean filter(long timestamp, float[] values) {
+        if (!primed) {
+            System.arraycopy(values, 0, gravity, 0, columns);
+            primed = true;
+        } else {
+            long elapsed = timestamp - lastTimestamp;
+            float alpha = elapsed > 0 ? elapsed / (timeConstantMillis + elapsed) : 0;
+            for (int i = 0; i < columns; i++) {
+                gravity[i] += alpha * (values[i] - gravity[i]);
+            }
+        }
+        lastTimestamp = timestamp;
+        for (int i = 0; i < columns; i++) {
+            values[i] -= gravity[i];
+        }
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        primed = false;
+    }
+}
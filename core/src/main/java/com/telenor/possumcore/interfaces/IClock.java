@@ -0,0 +1,30 @@
+package com.telenor.possumcore.interfaces;
+
+/**
+ * Interface for the clock detectors take their timestamps from. Replace it to run detectors on a
+ * virtual time, like in tests.
+ */
+public interface IClock {
+    /**
+     * The present time
+     *
+     * @return epoch timestamp in millis
+     */
+    long now();
+
+    /**
+     * Monotonic time since boot, the same time base as SensorEvent timestamps. Never jumps when
+     * the user or network changes the time.
+     *
+     * @return nanos since boot
+     */
+    long elapsedNanos();
+
+    /**
+     * Converts a time since boot, like a SensorEvent timestamp, to an epoch timestamp
+     *
+     * @param elapsedNanos nanos since boot
+     * @return epoch timestamp in millis
+     */
+    long toEpochMillis(long elapsedNanos);
+}
@@ -0,0 +1,71 @@
+package com.telenor.possumcore.interfaces;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.JsonArray;
+
+/**
+ * Receiver of data streamed out of a dataSet, one entry at a time. Typed dataSets hand over each
+ * sample as its timestamp followed by its values in column order, straight from storage, while
+ * other dataSets hand over the jsonArrays they hold.
+ */
+public interface IDataSink {
+    /**
+     * A typed sample starts
+     *
+     * @param timestamp the timestamp of the sample
+     */
+    void begin(long timestamp);
+
+    /**
+     * Value of a Float column
+     *
+     * @param column the column index
+     * @param value  the value stored
+     */
+    void value(int column, float value);
+
+    /**
+     * Value of a Double column
+     *
+     * @param column the column index
+     * @param value  the value stored
+     */
+    void value(int column, double value);
+
+    /**
+     * Value of an Int column
+     *
+     * @param column the column index
+     * @param value  the value stored
+     */
+    void value(int column, int value);
+
+    /**
+     * Value of a Long column
+     *
+     * @param column the column index
+     * @param value  the value stored
+     */
+    void value(int column, long value);
+
+    /**
+     * Value of a Text column
+     *
+     * @param column the column index
+     * @param text   the text stored, can be null
+     */
+    void text(int column, String text);
+
+    /**
+     * The typed sample has got all its values
+     */
+    void end();
+
+    /**
+     * An entry of a dataSet that is not typed
+     *
+     * @param entry the stored jsonArray
+     */
+    void entry(@NonNull JsonArray entry);
+}
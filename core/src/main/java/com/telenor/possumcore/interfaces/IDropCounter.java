@@ -0,0 +1,13 @@
+package com.telenor.possumcore.interfaces;
+
+/**
+ * Interface for bounded dataSets keeping count of the data lost because they were full
+ */
+public interface IDropCounter {
+    /**
+     * Number of entries lost since the dataSet was created
+     *
+     * @return the number of dropped entries
+     */
+    long dropped();
+}
@@ -0,0 +1,15 @@
+package com.telenor.possumcore.interfaces;
+
+/**
+ * Interface for receiving feature vectors computed from a signal, like the audio features of a
+ * window
+ */
+public interface IFeatureReceiver {
+    /**
+     * New features are ready. The features array is reused for the next vector, copy what is kept.
+     *
+     * @param timestamp the timestamp of the features
+     * @param features  the features
+     */
+    void featuresReady(long timestamp, double[] features);
+}
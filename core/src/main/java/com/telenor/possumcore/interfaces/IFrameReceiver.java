@@ -0,0 +1,14 @@
+package com.telenor.possumcore.interfaces;
+
+/**
+ * Interface for receiving fixed size frames cut from a stream of audio
+ */
+public interface IFrameReceiver {
+    /**
+     * A new frame is ready. The frame array is reused for the next frame, copy what is kept.
+     *
+     * @param timestamp the timestamp of the first sample in the frame
+     * @param frame     the samples of the frame
+     */
+    void frameReady(long timestamp, short[] frame);
+}
@@ -0,0 +1,13 @@
+package com.telenor.possumcore.interfaces;
+
+/**
+ * Interface for receiving the triggers that open the gate for costly detectors
+ */
+public interface IGateListener {
+    /**
+     * A trigger fired
+     *
+     * @param trigger the GateTrigger that fired
+     */
+    void gateTriggered(int trigger);
+}
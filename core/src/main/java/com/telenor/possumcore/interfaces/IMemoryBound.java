@@ -0,0 +1,24 @@
+package com.telenor.possumcore.interfaces;
+
+/**
+ * Interface for dataSets able to tell how much memory they use, so a memory budget can be kept
+ * across all detectors
+ */
+public interface IMemoryBound {
+    /**
+     * Estimated memory used by the entries stored
+     *
+     * @return estimated bytes used
+     */
+    long bytesUsed();
+
+    /**
+     * Removes the oldest entries until the dataSet uses no more than a given amount of memory.
+     * Removed entries are counted as dropped. DataSets that cannot remove entries outside their
+     * reader free nothing.
+     *
+     * @param bytes estimated bytes the dataSet may keep
+     * @return estimated bytes freed
+     */
+    long trimTo(long bytes);
+}
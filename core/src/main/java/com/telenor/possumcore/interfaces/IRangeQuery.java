@@ -0,0 +1,19 @@
+package com.telenor.possumcore.interfaces;
+
+import com.google.gson.JsonArray;
+
+import java.util.List;
+
+/**
+ * Interface for dataSets that can look up their entries by timestamp
+ */
+public interface IRangeQuery {
+    /**
+     * Retrieves the entries within a time window
+     *
+     * @param from first timestamp included
+     * @param to   first timestamp not included
+     * @return the entries in the window, oldest first
+     */
+    List<JsonArray> range(long from, long to);
+}
@@ -0,0 +1,21 @@
+package com.telenor.possumcore.interfaces;
+
+/**
+ * Interface for a stage filtering sensor samples before they are stored. Stages change the values
+ * in place and can drop samples, like when reducing the rate.
+ */
+public interface ISampleFilter {
+    /**
+     * Filters a sample, changing its values in place
+     *
+     * @param timestamp the timestamp of the sample
+     * @param values    the values of the sample, changed to the filtered values
+     * @return true if the sample is kept, false if it is dropped
+     */
+    boolean filter(long timestamp, float[] values);
+
+    /**
+     * Forgets all earlier samples, like when a new session starts
+     */
+    void reset();
+}
@@ -0,0 +1,14 @@
+package com.telenor.possumcore.interfaces;
+
+/**
+ * Interface for receiving samples made from other samples, like a resampled stream
+ */
+public interface ISampleReceiver {
+    /**
+     * A new sample is ready. The values array is reused for the next sample, copy what is kept.
+     *
+     * @param timestamp the timestamp of the sample
+     * @param values    the values of the sample
+     */
+    void sampleReady(long timestamp, float[] values);
+}
@@ -0,0 +1,12 @@
+package com.telenor.possumcore.interfaces;
+
+/**
+ * Interface for dataSets that can be closed for further data, so they can be read as an
+ * immutable snapshot after they have been swapped out
+ */
+public interface ISealable {
+    /**
+     * Closes the dataSet, ignoring all data added after this
+     */
+    void seal();
+}
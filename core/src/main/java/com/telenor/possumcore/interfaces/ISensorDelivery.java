@@ -0,0 +1,25 @@
+package com.telenor.possumcore.interfaces;
+
+import android.os.Handler;
+
+/**
+ * Interface for detectors listening to the android sensor manager, letting PossumCore and its
+ * subclasses decide how sensor events are delivered to them
+ */
+public interface ISensorDelivery {
+    /**
+     * Sets the handler whose thread sensor events are delivered on. Takes effect the next time
+     * the sensors are registered.
+     *
+     * @param handler the handler to deliver events with, null for the main thread
+     */
+    void setSensorHandler(Handler handler);
+
+    /**
+     * Lets the sensors keep events in their hardware fifo for up to the given time before waking
+     * up the application processor. Takes effect the next time the sensors are registered.
+     *
+     * @param millis maximum delay before an event is delivered, 0 delivers each event at once
+     */
+    void setMaxReportLatency(int millis);
+}
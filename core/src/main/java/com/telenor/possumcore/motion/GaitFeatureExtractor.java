@@ -0,0 +1,236 @@
+package com.telenor.possumcore.motion;
+
+import android.support.annotation.NonNull;
+
+import com.telenor.possumcore.interfaces.ISampleReceiver;
+
+/**
+ * Streaming gait features from accelerometer samples. Keeps a sliding window of the last samples
+ * and updates its sums, autocorrelation and the low frequency bins of its spectrum (a sliding
+ * DFT) as each sample enters and leaves. The cost pr sample is linear in the window size, half
+ * the window in lags and an eighth in bins, instead of the square of it for computing them
+ * over again. The sums are recomputed from the window once it has been fully replaced, so
+ * rounding errors do not build up.
+ * <p>
+ * The samples must come at a steady rate, the step period is found from the mean interval of
+ * the window. Reset it when the rate changes.
+ * <p>
+ * Once the window is full a feature vector is emitted every hop samples, timestamped with the
+ * newest sample. Its values, in order:
+ * <ol>
+ * <li>mean x, y and z</li>
+ * <li>mean and variance of the magnitude</li>
+ * <li>cadence in steps per minute, 0 when the motion is not periodic</li>
+ * <li>periodicity, the normalized autocorrelation at the step period (0 to 1)</li>
+ * <li>dominant frequency of the magnitude in Hz</li>
+ * </ol>
+ * Not thread safe, samples must come from one thread.
+ */
+public class GaitFeatureExtractor {
+    public static final int features = 8;
+    private static final double minStepMillis = 300; // 200 steps/minute
+    private static final double maxStepMillis = 1000; // 60 steps/minute
+    private static final double minPeriodicity = 0.25;
+    private static final double minVariance = 0.05; // Below this the magnitude is only sensor noise
+    private final int window;
+    private final int hop;
+    private final int maxLag;
+    private final int bins;
+    private final ISampleReceiver receiver;
+    private final long[] timestamps;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final double[] magnitudes;
+    private final double[] lagged; // Sum of magnitude products pr lag, lag 0 is the sum of squares
+    private final double[] correlations;
+    private final double[] real; // Sliding DFT of the magnitude, bin 1 and up
+    private final double[] imaginary;
+    private final double[] cos;
+    private final double[] sin;
+    private final float[] output = new float[features];
+    private double sumX;
+    private double sumY;
+    private double sumZ;
+    private double sum;
+    private int newest = -1;
+    private int count;
+    private int sinceEmit;
+    private int sinceRecompute;
+
+    /**
+     * Constructor defining the window and how often features are made
+     *
+     * @param window   number of samples in the window - must be at least 16
+     * @param hop      number of samples between feature vectors - must be greater than 0
+     * @param receiver receives the feature vectors
+     */
+    public GaitFeatureExtractor(int window, int hop, @NonNull ISampleReceiver receiver) {
+        if (window < 16) throw new IllegalArgumentException("Minimum window is 16");
+        if (hop < 1) throw new IllegalArgumentException("Minimum hop is 1");
+        this.window = window;
+        this.hop = hop;
+        this.receiver = receiver;
+        sinceEmit = hop - 1; // The first vector comes as soon as the window is full
+        maxLag = window / 2;
+        bins = window / 8; // Up to an eighth of the sampling rate, well above walking and running
+        timestamps = new long[window];
+        x = new double[window];
+        y = new double[window];
+        z = new double[window];
+        magnitudes = new double[window];
+        lagged = new double[maxLag + 1];
+        correlations = new double[maxLag + 1];
+        real = new double[bins + 1];
+        imaginary = new double[bins + 1];
+        cos = new double[window];
+        sin = new double[window];
+        for (int n = 0; n < window; n++) {
+            cos[n] = Math.cos(2 * Math.PI * n / window);
+            sin[n] = Math.sin(2 * Math.PI * n / window);
+        }
+    }
+
+    /**
+     * Adds an accelerometer sample
+     *
+     * @param timestamp the timestamp of the sample in milliseconds
+     * @param values    x, y and z of the sample
+     */
+    public void add(long timestamp, @NonNull float[] values) {
+        double magnitude = Math.sqrt(values[0] * values[0] + values[1] * values[1] + values[2] * values[2]);
+        int slot = (newest + 1) % window;
+        double leaving = 0;
+        if (count == window) {
+            // The oldest sample leaves, with all its products with the samples after it
+            leaving = magnitudes[slot];
+            for (int lag = 1; lag <= maxLag; lag++) {
+                lagged[lag] -= leaving * magnitudes[(slot + lag) % window];
+            }
+            lagged[0] -= leaving * leaving;
+            sum -= leaving;
+            sumX -= x[slot];
+            sumY -= y[slot];
+            sumZ -= z[slot];
+        } else count++;
+        newest = slot;
+        timestamps[slot] = timestamp;
+        x[slot] = values[0];
+        y[slot] = values[1];
+        z[slot] = values[2];
+        magnitudes[slot] = magnitude;
+        sum += magnitude;
+        sumX += values[0];
+        sumY += values[1];
+        sumZ += values[2];
+        lagged[0] += magnitude * magnitude;
+        for (int lag = 1; lag <= maxLag && lag < count; lag++) {
+            lagged[lag] += magnitude * magnitudes[(slot - lag + window) % window];
+        }
+        double change = magnitude - leaving;
+        for (int bin = 1; bin <= bins; bin++) {
+            // X = (X - leaving + entering) * e^(2 pi i bin / window)
+            double re = real[bin] + change;
+            double im = imaginary[bin];
+            real[bin] = re * cos[bin] - im * sin[bin];
+            imaginary[bin] = re * sin[bin] + im * cos[bin];
+        }
+        if (count == window && ++sinceRecompute >= window) recompute();
+        if (count == window && ++sinceEmit >= hop) {
+            sinceEmit = 0;
+            emit();
+        }
+    }
+
+    private void recompute() {
+        sinceRecompute = 0;
+        int oldest = (newest + 1) % window;
+        sum = sumX = sumY = sumZ = 0;
+        for (int lag = 0; lag <= maxLag; lag++) lagged[lag] = 0;
+        for (int bin = 1; bin <= bins; bin++) real[bin] = imaginary[bin] = 0;
+        for (int n = 0; n < window; n++) {
+            int slot = (oldest + n) % window;
+            double magnitude = magnitudes[slot];
+            sum += magnitude;
+            sumX += x[slot];
+            sumY += y[slot];
+            sumZ += z[slot];
+            for (int lag = 0; lag <= maxLag && lag <= n; lag++) {
+                lagged[lag] += magnitude * magnitudes[(slot - lag + window) % window];
+            }
+            for (int bin = 1; bin <= bins; bin++) {
+                int angle = (int) ((long) bin * n % window);
+                real[bin] += magnitude * cos[angle];
+                imaginary[bin] -= magnitude * sin[angle];
+            }
+        }
+    }
+
+    private void emit() {
+        double mean = sum / window;
+        double variance = Math.max(0, lagged[0] / window - mean * mean);
+        int oldest = (newest + 1) % window;
+        double interval = (double) (timestamps[newest] - timestamps[oldest]) / (window - 1);
+        float cadence = 0;
+        float periodicity = 0;
+        float dominant = 0;
+        if (variance > 0 && interval > 0) {
+            int fromLag = Math.max(1, (int) Math.ceil(minStepMillis / interval));
+            int toLag = Math.min(maxLag - 1, (int) (maxStepMillis / interval));
+            // Sums of the first and last samples, left out of the pairs at each lag
+            double head = 0;
+            double tail = 0;
+            for (int lag = 0; lag <= toLag + 1; lag++) {
+                if (lag > 0) {
+                    head += magnitudes[(oldest + lag - 1) % window];
+                    tail += magnitudes[(newest - lag + 1 + window) % window];
+                }
+                int pairs = window - lag;
+                correlations[lag] = (lagged[lag] / pairs - (sum - head) / pairs * (sum - tail) / pairs) / variance;
+            }
+            double best = 0;
+            for (int lag = fromLag; lag <= toLag; lag++) {
+                best = Math.max(best, correlations[lag]);
+            }
+            // A stride repeats as well as a step, so take the first peak close to the best one
+            int stepLag = 0;
+            for (int lag = fromLag; lag <= toLag && stepLag == 0; lag++) {
+                if (correlations[lag] >= 0.8 * best && correlations[lag] >= correlations[lag + 1])
+                    stepLag = lag;
+            }
+            periodicity = (float) Math.max(0, Math.min(1, best));
+            if (best >= minPeriodicity && variance >= minVariance && stepLag > 0)
+                cadence = (float) (60000 / (stepLag * interval));
+            double strongest = 0;
+            for (int bin = 1; bin <= bins; bin++) {
+                double power = real[bin] * real[bin] + imaginary[bin] * imaginary[bin];
+                if (power > strongest) {
+                    strongest = power;
+                    dominant = (float) (bin * 1000 / (window * interval));
+                }
+            }
+        }
+        output[0] = (float) (sumX / window);
+        output[1] = (float) (sumY / window);
+        output[2] = (float) (sumZ / window);
+        output[3] = (float) mean;
+        output[4] = (float) variance;
+        output[5] = cadence;
+        output[6] = periodicity;
+        output[7] = dominant;
+        receiver.sampleReady(timestamps[newest], output);
+    }
+
+    /**
+     * Empties the window, starting over with the next sample
+     */
+    public void reset() {
+        newest = -1;
+        count = 0;
+        sinceEmit = hop - 1;
+        sinceRecompute = 0;
+        sum = sumX = sumY = sumZ = 0;
+        for (int lag = 0; lag <= maxLag; lag++) lagged[lag] = 0;
+        for (int bin = 1; bin <= bins; bin++) real[bin] = imaginary[bin] = 0;
+    }
+}
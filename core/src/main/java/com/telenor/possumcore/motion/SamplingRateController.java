@@ -0,0 +1,191 @@
+package com.telenor.possumcore.motion;
+
+import com.telenor.possumcore.constants.MotionLevel;
+
+/**
+ * Decides how often a motion sensor is sampled from how much it moves. It keeps a running
+ * variance of the magnitude of the sensor values, sampling fast while it is high (like walking)
+ * and only a trickle while the phone lies still. Moving to a faster level happens at once, moving
+ * to a slower level only after the motion has stayed low for a settle time, so short pauses in a
+ * walk are kept at full rate.
+ * <p>
+ * Events are given to it from a single thread, the counters can be read from any thread.
+ */
+public class SamplingRateController {
+    private static final long timeConstantNano = 1000000000L; // How fast the variance follows the motion
+    private final float stillVariance;
+    private final float activeVariance;
+    private final int[] intervals = {500, 35, 20}; // Milliseconds between samples pr MotionLevel
+    private long settleNano = 2000000000L;
+    private double mean;
+    private double variance;
+    private long lastEvent;
+    private long lastAccepted;
+    private long lowerSince;
+    private volatile int level = MotionLevel.Moving;
+    private volatile long accepted;
+    private volatile long skipped;
+    private volatile long levelChanges;
+
+    /**
+     * Constructor defining the variances of the sensor magnitude separating the levels. Their unit
+     * is the square of the unit of the sensor values.
+     *
+     * @param stillVariance  variance at or below which the phone is still
+     * @param activeVariance variance at or above which the phone is actively moved
+     */
+    public SamplingRateController(float stillVariance, float activeVariance) {
+        if (stillVariance < 0 || activeVariance <= stillVariance)
+            throw new IllegalArgumentException("Active variance must be above still variance");
+        this.stillVariance = stillVariance;
+        this.activeVariance = activeVariance;
+    }
+
+    /**
+     * Sets the milliseconds between samples kept at each level
+     *
+     * @param stillMillis  interval while still
+     * @param movingMillis interval while moving
+     * @param activeMillis interval while active
+     * @return this controller
+     */
+    public SamplingRateController setIntervals(int stillMillis, int movingMillis, int activeMillis) {
+        if (activeMillis < 1 || movingMillis < activeMillis || stillMillis < movingMillis)
+            throw new IllegalArgumentException("Intervals must be at least 1 and slow down with less motion");
+        intervals[MotionLevel.Still] = stillMillis;
+        intervals[MotionLevel.Moving] = movingMillis;
+        intervals[MotionLevel.Active] = activeMillis;
+        return this;
+    }
+
+    /**
+     * Sets how long the motion must stay low before sampling slows down
+     *
+     * @param millis the settle time in milliseconds
+     * @return this controller
+     */
+    public SamplingRateController setSettleTime(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("Settle time cannot be negative");
+        settleNano = millis * 1000000L;
+        return this;
+    }
+
+    /**
+     * Updates the motion with a sensor event and decides whether it is stored. Every event
+     * delivered must be given, also the ones that end up skipped.
+     *
+     * @param timestampNano the timestamp of the event in nanoseconds
+     * @param values        the values of the event, the first three are used
+     * @return true if the event should be stored, false if it comes more than a quarter of the
+     * interval too soon after the last one
+     */
+    public boolean accept(long timestampNano, float[] values) {
+        update(timestampNano, values);
+        long intervalNano = intervals[level] * 1000000L;
+        // The sensor is registered at the interval, so events on time or a little early are kept
+        if (lastAccepted != 0 && timestampNano - lastAccepted < intervalNano - intervalNano / 4) {
+            skipped++;
+            return false;
+        }
+        lastAccepted = timestampNano;
+        accepted++;
+        return true;
+    }
+
+    private void update(long timestampNano, float[] values) {
+        double magnitude = 0;
+        for (int i = 0; i < values.length && i < 3; i++) {
+            magnitude += values[i] * values[i];
+        }
+        magnitude = Math.sqrt(magnitude);
+        if (lastEvent == 0) {
+            mean = magnitude;
+        } else {
+            // Exponentially weighted by time, so the estimate follows at the same pace whatever the rate
+            double elapsed = Math.max(0, timestampNano - lastEvent);
+            double alpha = elapsed / (elapsed + timeConstantNano);
+            double difference = magnitude - mean;
+            mean += alpha * difference;
+            variance = (1 - alpha) * (variance + alpha * difference * difference);
+        }
+        lastEvent = timestampNano;
+        int target = variance >= activeVariance ? MotionLevel.Active : variance <= stillVariance ? MotionLevel.Still : MotionLevel.Moving;
+        if (target > level) {
+            changeLevel(target);
+        } else if (target < level) {
+            if (lowerSince == 0) lowerSince = timestampNano;
+            else if (timestampNano - lowerSince >= settleNano) changeLevel(target);
+        } else lowerSince = 0;
+    }
+
+    private void changeLevel(int newLevel) {
+        level = newLevel;
+        lowerSince = 0;
+        levelChanges++;
+    }
+
+    /**
+     * Resets the motion estimate and the present level, used when the sensor is started again
+     */
+    public void reset() {
+        lastEvent = 0;
+        lastAccepted = 0;
+        lowerSince = 0;
+        variance = 0;
+        level = MotionLevel.Moving;
+    }
+
+    /**
+     * The present level of motion
+     *
+     * @return a MotionLevel
+     */
+    public int level() {
+        return level;
+    }
+
+    /**
+     * Milliseconds between the samples kept at the present level
+     *
+     * @return the interval in milliseconds
+     */
+    public int intervalMillis() {
+        return intervals[level];
+    }
+
+    /**
+     * The present variance of the sensor magnitude
+     *
+     * @return the variance in the square of the unit of the sensor values
+     */
+    public double variance() {
+        return variance;
+    }
+
+    /**
+     * Number of events accepted for storage since the controller was made
+     *
+     * @return accepted events
+     */
+    public long accepted() {
+        return accepted;
+    }
+
+    /**
+     * Number of events skipped because they came too soon after the last accepted one
+     *
+     * @return skipped events
+     */
+    public long skipped() {
+        return skipped;
+    }
+
+    /**
+     * Number of times the level has changed since the controller was made
+     *
+     * @return level changes
+     */
+    public long levelChanges() {
+        return levelChanges;
+    }
+}
@@ -0,0 +1,201 @@
+package com.telenor.possumcore.motion;
+
+import android.support.annotation.NonNull;
+
+import com.telenor.possumcore.interfaces.ISampleReceiver;
+
+/**
+ * Streaming resampler aligning sensors with independent timestamps into one stream with a
+ * uniform rate. Each output sample is placed on a fixed grid of timestamps and holds the values
+ * of all sources after each other, linearly interpolated between the samples around it.
+ * <p>
+ * A grid timestamp is only made while every source has samples around it no further apart than
+ * five periods, so a sensor sampled slowly or paused leaves a gap instead of made up values. When
+ * a source lags more than the max latency behind the newest sample of any source, the grid moves
+ * on without waiting for it, so no sample is ever held back for longer than that.
+ * <p>
+ * Timestamps in and out are in nanoseconds, like those of sensor events, so samples closer than a
+ * millisecond are kept apart and interpolated exactly. Convert them to epoch time when storing.
+ */
+public class SensorResampler {
+    private static final int capacity = 32; // Samples kept pr source, the oldest are dropped first
+    private final long period; // Nanoseconds, as all timestamps
+    private final long maxLatency;
+    private final long maxGap;
+    private final ISampleReceiver receiver;
+    private final int[] columns;
+    private final int[] offsets;
+    private final long[][] timestamps;
+    private final float[][] values;
+    private final int[] first;
+    private final int[] size;
+    private final float[] output;
+    private long next;
+    private boolean started;
+    private long resume; // Earliest grid timestamp after a gap that can be interpolated again
+    private long produced;
+    private long skipped;
+
+    /**
+     * Constructor defining the grid, the latency and the sources
+     *
+     * @param periodMillis     milliseconds between output samples - must be greater than 0
+     * @param maxLatencyMillis how long to wait for a lagging source before skipping ahead
+     * @param receiver         receives the aligned samples, with timestamps in nanoseconds
+     * @param columns          number of values from each source, one entry pr source
+     */
+    public SensorResampler(int periodMillis, int maxLatencyMillis, @NonNull ISampleReceiver receiver, int... columns) {
+        if (periodMillis < 1) throw new IllegalArgumentException("Minimum period is 1");
+        if (maxLatencyMillis < 0) throw new IllegalArgumentException("Latency cannot be negative");
+        if (columns.length < 1) throw new IllegalArgumentException("Minimum sources is 1");
+        period = periodMillis * 1000000L;
+        maxLatency = maxLatencyMillis * 1000000L;
+        maxGap = 5 * period;
+        this.receiver = receiver;
+        this.columns = columns.clone();
+        offsets = new int[columns.length];
+        timestamps = new long[columns.length][capacity];
+        values = new float[columns.length][];
+        int total = 0;
+        for (int source = 0; source < columns.length; source++) {
+            if (columns[source] < 1) throw new IllegalArgumentException("Minimum columns is 1");
+            offsets[source] = total;
+            values[source] = new float[capacity * columns[source]];
+            total += columns[source];
+        }
+        first = new int[columns.length];
+        size = new int[columns.length];
+        output = new float[total];
+    }
+
+    /**
+     * Adds a sample from one of the sources. Samples older than the newest from the same source
+     * are ignored.
+     *
+     * @param source    index of the source, in the order given to the constructor
+     * @param timestamp timestamp of the sample in nanoseconds
+     * @param sample    the values of the sample, at least as many as the columns of the source
+     */
+    public synchronized void add(int source, long timestamp, @NonNull float[] sample) {
+        int count = size[source];
+        if (count > 0 && timestamp <= timestampAt(source, count - 1)) return;
+        if (count == capacity) {
+            first[source] = (first[source] + 1) % capacity;
+            count--;
+        }
+        int slot = (first[source] + count) % capacity;
+        timestamps[source][slot] = timestamp;
+        System.arraycopy(sample, 0, values[source], slot * columns[source], columns[source]);
+        size[source] = count + 1;
+        produce();
+    }
+
+    private void produce() {
+        long oldest = Long.MIN_VALUE;
+        long newestMin = Long.MAX_VALUE;
+        long newestMax = Long.MIN_VALUE;
+        for (int source = 0; source < columns.length; source++) {
+            if (size[source] == 0) return;
+            oldest = Math.max(oldest, timestampAt(source, 0));
+            long newest = timestampAt(source, size[source] - 1);
+            newestMin = Math.min(newestMin, newest);
+            newestMax = Math.max(newestMax, newest);
+        }
+        if (!started) {
+            next = gridAfter(oldest);
+            started = true;
+        }
+        while (true) {
+            if (newestMin >= next) {
+                if (interpolate(next)) {
+                    receiver.sampleReady(next, output);
+                    produced++;
+                    next += period;
+                } else skipTo(Math.max(next + period, gridAfter(resume)));
+            } else if (newestMax - next > maxLatency) {
+                skipTo(gridAfter(newestMax - maxLatency));
+            } else break;
+        }
+        // Keep the last sample before the next grid timestamp for interpolating it later
+        for (int source = 0; source < columns.length; source++) {
+            while (size[source] > 1 && timestampAt(source, 1) <= next) {
+                first[source] = (first[source] + 1) % capacity;
+                size[source]--;
+            }
+        }
+    }
+
+    private long gridAfter(long timestamp) {
+        long grid = timestamp / period * period;
+        return grid < timestamp ? grid + period : grid;
+    }
+
+    private void skipTo(long grid) {
+        skipped += (grid - next) / period;
+        next = grid;
+    }
+
+    private boolean interpolate(long time) {
+        for (int source = 0; source < columns.length; source++) {
+            int index = 0;
+            while (index < size[source] - 1 && timestampAt(source, index + 1) <= time) index++;
+            long before = timestampAt(source, index);
+            long after = index < size[source] - 1 ? timestampAt(source, index + 1) : before;
+            if (before > time || before < time && (after < time || after - before > maxGap)) {
+                resume = Math.max(before, after);
+                return false;
+            }
+            float weight = before < time ? (float) (time - before) / (after - before) : 0;
+            int from = (first[source] + index) % capacity * columns[source];
+            int to = (first[source] + index + 1) % capacity * columns[source];
+            float[] sourceValues = values[source];
+            for (int column = 0; column < columns[source]; column++) {
+                float start = sourceValues[from + column];
+                output[offsets[source] + column] = start + (sourceValues[to + column] - start) * weight;
+            }
+        }
+        return true;
+    }
+
+    private long timestampAt(int source, int index) {
+        return timestamps[source][(first[source] + index) % capacity];
+    }
+
+    /**
+     * Removes all samples waiting to be aligned and starts a new grid with the next samples
+     */
+    public synchronized void reset() {
+        for (int source = 0; source < columns.length; source++) {
+            first[source] = 0;
+            size[source] = 0;
+        }
+        started = false;
+    }
+
+    /**
+     * Number of values in each output sample, the columns of all sources together
+     *
+     * @return the number of output values
+     */
+    public int columns() {
+        return output.length;
+    }
+
+    /**
+     * Number of aligned samples made since the resampler was created
+     *
+     * @return samples made
+     */
+    public synchronized long produced() {
+        return produced;
+    }
+
+    /**
+     * Number of grid timestamps skipped because a source had no samples close enough around it
+     *
+     * @return timestamps skipped
+     */
+    public synchronized long skipped() {
+        return skipped;
+    }
+}
@@ -4,6 +4,7 @@ import android.content.res.AssetManager;
 import android.graphics.Bitmap;
 
 import com.google.gson.JsonArray;
+import com.telenor.possumcore.storage.NumberEncoder;
 
 import org.tensorflow.contrib.android.TensorFlowInferenceInterface;
 
@@ -33,7 +34,7 @@ public class TensorWeights extends TensorFlowInferenceInterface {
         JsonArray data = new JsonArray();
         data.add("" + timestamp);
         for (float weight : result) {
-            data.add("" + weight);
+            data.add(NumberEncoder.toString(weight));
         }
         return data;
     }
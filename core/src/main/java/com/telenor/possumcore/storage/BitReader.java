@@ -0,0 +1,54 @@
+package com.telenor.possumcore.storage;
+
+/**
+ * Reads values written by a BitWriter
+ */
+class BitReader {
+    private byte[] bytes;
+    private long position;
+
+    BitReader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Starts reading another array from its beginning
+     *
+     * @param bytes the bytes to read
+     */
+    void reset(byte[] bytes) {
+        this.bytes = bytes;
+        position = 0;
+    }
+
+    /**
+     * Reads a number of bits as the lowest bits of a value
+     *
+     * @param bits number of bits to read, 0 to 64
+     * @return the value read
+     */
+    long read(int bits) {
+        long value = 0;
+        for (int bit = 0; bit < bits; bit++) {
+            value = (value << 1) | ((bytes[(int) (position >>> 3)] >>> (7 - (position & 7))) & 1);
+            position++;
+        }
+        return value;
+    }
+
+    boolean readBit() {
+        return read(1) != 0;
+    }
+
+    long readVarLong() {
+        long value = 0;
+        int shift = 0;
+        long group;
+        do {
+            group = read(8);
+            value |= (group & 0x7F) << shift;
+            shift += 7;
+        } while ((group & 0x80) != 0);
+        return value;
+    }
+}
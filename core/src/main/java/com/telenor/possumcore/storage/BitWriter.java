@@ -0,0 +1,87 @@
+package com.telenor.possumcore.storage;
+
+import java.util.Arrays;
+
+/**
+ * Writes values of any bit length into a growing byte array, most significant bit first
+ */
+class BitWriter {
+    private byte[] bytes;
+    private long position; // Bits written
+
+    BitWriter(int initialBytes) {
+        bytes = new byte[Math.max(initialBytes, 8)];
+    }
+
+    /**
+     * Writes the lowest bits of a value
+     *
+     * @param value the value, bits above the count are ignored
+     * @param bits  number of bits to write, 0 to 64
+     */
+    void write(long value, int bits) {
+        ensure(bits);
+        for (int bit = bits - 1; bit >= 0; bit--) {
+            if (((value >>> bit) & 1) != 0) {
+                bytes[(int) (position >>> 3)] |= (byte) (0x80 >>> (position & 7));
+            }
+            position++;
+        }
+    }
+
+    void writeBit(boolean set) {
+        write(set ? 1 : 0, 1);
+    }
+
+    /**
+     * Writes a non negative value in groups of 7 bits, each group followed by whether more comes
+     *
+     * @param value the value, treated as unsigned
+     */
+    void writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            write((value & 0x7F) | 0x80, 8);
+            value >>>= 7;
+        }
+        write(value, 8);
+    }
+
+    private void ensure(int bits) {
+        long needed = (position + bits + 7) >>> 3;
+        if (needed > bytes.length) {
+            bytes = Arrays.copyOf(bytes, (int) Math.max(needed, bytes.length * 2L));
+        }
+    }
+
+    /**
+     * The bytes written so far, trimmed to size
+     *
+     * @return a copy of the written bytes
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, (int) ((position + 7) >>> 3));
+    }
+
+    /**
+     * Number of bytes written so far, the last one possibly partly
+     *
+     * @return the bytes written
+     */
+    int length() {
+        return (int) ((position + 7) >>> 3);
+    }
+
+    /**
+     * Copies the bytes written so far to the start of another array
+     *
+     * @param target an array with room for length bytes
+     */
+    void copyTo(byte[] target) {
+        System.arraycopy(bytes, 0, target, 0, length());
+    }
+
+    void reset() {
+        Arrays.fill(bytes, 0, (int) Math.min(bytes.length, (position + 7) >>> 3), (byte) 0);
+        position = 0;
+    }
+}
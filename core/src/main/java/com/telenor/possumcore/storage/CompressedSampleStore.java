@@ -0,0 +1,471 @@
+package com.telenor.possumcore.storage;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.JsonArray;
+import com.telenor.possumcore.constants.ColumnType;
+import com.telenor.possumcore.interfaces.IDataSink;
+import com.telenor.possumcore.interfaces.IMemoryBound;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar store compressing typed samples in blocks, for keeping long sessions in memory.
+ * Samples are gathered in plain form until a block is full, then each column of the block is
+ * compressed separately:
+ * <ul>
+ * <li>timestamps as the difference between consecutive deltas, usually 0 or a few bits</li>
+ * <li>floats and doubles by XOR with the previous value, storing only the bits that changed
+ * (as in Facebook's Gorilla), exactly restoring every value</li>
+ * <li>integers as zigzag encoded deltas in 7 bit groups</li>
+ * <li>texts as an index into a dictionary of distinct texts, so a mac or BSSID seen a thousand
+ * times is stored once</li>
+ * </ul>
+ * The RetentionPolicy is met by removing whole blocks, so it keeps at least what the policy asks
+ * for, at most one block more. Trimming to a memory budget likewise removes whole blocks, and the
+ * open block last. Blocks removed by the policy are reused for the next ones compressed, so a
+ * store running at its limit seldom allocates. Reading decompresses one block at a time, keeping
+ * the last one decompressed so reading in order is cheap.
+ */
+public class CompressedSampleStore extends SampleList implements IMemoryBound {
+    private static final int blockSize = 128;
+    private static final int maxSpares = 2;
+    private final RetentionPolicy policy;
+    private final List<Block> blocks = new ArrayList<>();
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> texts = new ArrayList<>();
+    private final BitWriter writer = new BitWriter(blockSize * 4);
+    private final BitReader reader = new BitReader(new byte[0]);
+    private final List<Block> spares = new ArrayList<>(maxSpares); // Removed blocks, reused by compress
+    private final SampleBlock decoded;
+    private Block decodedFrom;
+    private int open; // Samples in the open block, not yet compressed
+    private long compressedBytes;
+    private long openBytes;
+    private long dictionaryBytes;
+
+    private static class Block {
+        byte[] data; // Can be longer than the compressed bytes when reused
+        long first;
+        long last;
+    }
+
+    /**
+     * Constructor defining how much the store keeps and the columns of each sample
+     *
+     * @param policy the retention policy deciding when blocks are removed
+     * @param schema the columns each sample has
+     */
+    public CompressedSampleStore(@NonNull RetentionPolicy policy, @NonNull DataSchema schema) {
+        super(blockSize, schema);
+        this.policy = policy;
+        decoded = new SampleBlock(blockSize, schema);
+    }
+
+    @Override
+    public synchronized void add(long timestamp, @NonNull float[] sample) {
+        if (isSealed()) return;
+        write(open, timestamp, sample);
+        openBytes += bytes(open++);
+        stored(timestamp);
+    }
+
+    @Override
+    public synchronized void add(long timestamp, @NonNull double[] sample) {
+        if (isSealed()) return;
+        write(open, timestamp, sample);
+        openBytes += bytes(open++);
+        stored(timestamp);
+    }
+
+    @Override
+    public synchronized void add(@NonNull Sample sample) {
+        if (isSealed()) return;
+        write(open, sample);
+        openBytes += bytes(open++);
+        stored(sample.timestamp());
+    }
+
+    @Override
+    public synchronized void addAll(@NonNull long[] timestamps, @NonNull float[] values, int count) {
+        if (isSealed()) return;
+        int columns = columns();
+        for (int i = 0; i < count; i++) {
+            write(open, timestamps[i], values, i * columns);
+            openBytes += bytes(open++);
+            stored(timestamps[i]);
+        }
+    }
+
+    private void stored(long newest) {
+        if (open == blockSize) {
+            Block block = compress();
+            blocks.add(block);
+            compressedBytes += block.data.length;
+            for (int slot = 0; slot < open; slot++) {
+                release(slot);
+            }
+            open = 0;
+            openBytes = 0;
+        }
+        // Remove the oldest block as long as the data left would still exceed the policy
+        while (!blocks.isEmpty()) {
+            Block oldest = blocks.get(0);
+            long next = blocks.size() > 1 ? blocks.get(1).first : open > 0 ? timestampAt(0) : newest;
+            if (!policy.exceeds(size() - blockSize, next, newest, bytesUsed() - oldest.data.length))
+                break;
+            removeOldestBlock();
+        }
+    }
+
+    private void removeOldestBlock() {
+        Block oldest = blocks.remove(0);
+        compressedBytes -= oldest.data.length;
+        if (decodedFrom == oldest) decodedFrom = null;
+        if (spares.size() < maxSpares) spares.add(oldest);
+        drop(blockSize);
+    }
+
+    private Block compress() {
+        writer.reset();
+        long previous = timestampAt(0);
+        long previousDelta = 0;
+        writer.write(previous, 64);
+        for (int slot = 1; slot < open; slot++) {
+            long delta = timestampAt(slot) - previous;
+            writeDeltaOfDelta(delta - previousDelta);
+            previousDelta = delta;
+            previous = timestampAt(slot);
+        }
+        for (int column = 0; column < columns(); column++) {
+            switch (schema().type(column)) {
+                case ColumnType.Float:
+                    compressReals(column, 32);
+                    break;
+                case ColumnType.Double:
+                    compressReals(column, 64);
+                    break;
+                case ColumnType.Int:
+                case ColumnType.Long:
+                    long last = 0;
+                    for (int slot = 0; slot < open; slot++) {
+                        long value = integerAt(slot, column);
+                        writer.writeVarLong(zigzag(value - last));
+                        last = value;
+                    }
+                    break;
+                default:
+                    for (int slot = 0; slot < open; slot++) {
+                        writer.writeVarLong(intern(textAt(slot, column)));
+                    }
+            }
+        }
+        Block block = spares.isEmpty() ? new Block() : spares.remove(spares.size() - 1);
+        int length = writer.length();
+        if (block.data == null || block.data.length < length) {
+            block.data = new byte[length + length / 16]; // Room for the next blocks of similar data
+        }
+        writer.copyTo(block.data);
+        block.first = timestampAt(0);
+        block.last = timestampAt(open - 1);
+        return block;
+    }
+
+    private void writeDeltaOfDelta(long value) {
+        if (value == 0) {
+            writer.writeBit(false);
+        } else if (value >= -63 && value <= 64) {
+            writer.write(0b10, 2);
+            writer.write(value + 63, 7);
+        } else if (value >= -255 && value <= 256) {
+            writer.write(0b110, 3);
+            writer.write(value + 255, 9);
+        } else if (value >= -2047 && value <= 2048) {
+            writer.write(0b1110, 4);
+            writer.write(value + 2047, 12);
+        } else {
+            writer.write(0b1111, 4);
+            writer.write(value, 64);
+        }
+    }
+
+    private long readDeltaOfDelta(BitReader reader) {
+        if (!reader.readBit()) return 0;
+        if (!reader.readBit()) return reader.read(7) - 63;
+        if (!reader.readBit()) return reader.read(9) - 255;
+        if (!reader.readBit()) return reader.read(12) - 2047;
+        return reader.read(64);
+    }
+
+    /**
+     * XOR compression of a float or double column. Each value is XORed with the previous, an
+     * unchanged value is a single 0 bit, otherwise the changed bits are stored, reusing the
+     * previous window of leading and trailing zeros if they fit within it.
+     */
+    private void compressReals(int column, int width) {
+        int lengthBits = width == 32 ? 5 : 6;
+        long previous = bitsOf(realAt(0, column), width);
+        writer.write(previous, width);
+        int leading = -1;
+        int trailing = 0;
+        for (int slot = 1; slot < open; slot++) {
+            long bits = bitsOf(realAt(slot, column), width);
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                writer.writeBit(false);
+                continue;
+            }
+            writer.writeBit(true);
+            int newLeading = Long.numberOfLeadingZeros(xor) - (64 - width);
+            int newTrailing = Long.numberOfTrailingZeros(xor);
+            if (leading >= 0 && newLeading >= leading && newTrailing >= trailing) {
+                writer.writeBit(false);
+            } else {
+                leading = Math.min(newLeading, (1 << lengthBits) - 1);
+                trailing = newTrailing;
+                writer.writeBit(true);
+                writer.write(leading, lengthBits);
+                writer.write(width - leading - trailing - 1, lengthBits);
+            }
+            writer.write(xor >>> trailing, width - leading - trailing);
+        }
+    }
+
+    private void decompressReals(BitReader reader, int column, int width, int count) {
+        int lengthBits = width == 32 ? 5 : 6;
+        long previous = reader.read(width);
+        decoded.setRealAt(0, column, realOf(previous, width));
+        int leading = 0;
+        int trailing = 0;
+        for (int slot = 1; slot < count; slot++) {
+            if (reader.readBit()) {
+                if (reader.readBit()) {
+                    leading = (int) reader.read(lengthBits);
+                    trailing = width - leading - (int) reader.read(lengthBits) - 1;
+                }
+                previous ^= reader.read(width - leading - trailing) << trailing;
+            }
+            decoded.setRealAt(slot, column, realOf(previous, width));
+        }
+    }
+
+    private static long bitsOf(double value, int width) {
+        if (width == 32) return Float.floatToRawIntBits((float) value) & 0xFFFFFFFFL;
+        return Double.doubleToRawLongBits(value);
+    }
+
+    private static double realOf(long bits, int width) {
+        if (width == 32) return Float.intBitsToFloat((int) bits);
+        return Double.longBitsToDouble(bits);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private int intern(String text) {
+        if (text == null) return 0;
+        Integer index = dictionary.get(text);
+        if (index == null) {
+            texts.add(text);
+            index = texts.size();
+            dictionary.put(text, index);
+            dictionaryBytes += 40 + 2 * text.length() + 32; // String and map entry
+        }
+        return index;
+    }
+
+    /**
+     * Decompresses a block, unless it is the one already decompressed
+     *
+     * @param block the block
+     * @return the samples of the block in plain form
+     */
+    private SampleBlock decode(Block block) {
+        if (decodedFrom == block) return decoded;
+        reader.reset(block.data);
+        long timestamp = reader.read(64);
+        long delta = 0;
+        decoded.setTimestampAt(0, timestamp);
+        for (int slot = 1; slot < blockSize; slot++) {
+            delta += readDeltaOfDelta(reader);
+            timestamp += delta;
+            decoded.setTimestampAt(slot, timestamp);
+        }
+        for (int column = 0; column < columns(); column++) {
+            switch (schema().type(column)) {
+                case ColumnType.Float:
+                    decompressReals(reader, column, 32, blockSize);
+                    break;
+                case ColumnType.Double:
+                    decompressReals(reader, column, 64, blockSize);
+                    break;
+                case ColumnType.Int:
+                case ColumnType.Long:
+                    long value = 0;
+                    for (int slot = 0; slot < blockSize; slot++) {
+                        value += unzigzag(reader.readVarLong());
+                        decoded.setIntegerAt(slot, column, value);
+                    }
+                    break;
+                default:
+                    for (int slot = 0; slot < blockSize; slot++) {
+                        int index = (int) reader.readVarLong();
+                        decoded.setTextAt(slot, column, index == 0 ? null : texts.get(index - 1));
+                    }
+            }
+        }
+        decoded.setSize(blockSize);
+        decodedFrom = block;
+        return decoded;
+    }
+
+    private int compressedSize() {
+        return blocks.size() * blockSize;
+    }
+
+    @Override
+    public synchronized long timestamp(int index) {
+        if (checked(index) >= compressedSize()) return super.timestamp(index);
+        return decode(blocks.get(index / blockSize)).timestamp(index % blockSize);
+    }
+
+    @Override
+    public synchronized double value(int index, int column) {
+        if (checked(index) >= compressedSize()) return super.value(index, column);
+        return decode(blocks.get(index / blockSize)).value(index % blockSize, column);
+    }
+
+    @Override
+    public synchronized String text(int index, int column) {
+        if (checked(index) >= compressedSize()) return super.text(index, column);
+        return decode(blocks.get(index / blockSize)).text(index % blockSize, column);
+    }
+
+    @Override
+    public synchronized JsonArray get(int index) {
+        if (checked(index) >= compressedSize()) return super.get(index);
+        return decode(blocks.get(index / blockSize)).get(index % blockSize);
+    }
+
+    @Override
+    public synchronized void read(int index, @NonNull IDataSink sink) {
+        if (checked(index) >= compressedSize()) super.read(index, sink);
+        else decode(blocks.get(index / blockSize)).read(index % blockSize, sink);
+    }
+
+    @Override
+    public synchronized int readAll(@NonNull IDataSink sink) {
+        return super.readAll(sink);
+    }
+
+    @Override
+    public synchronized int indexAt(long timestamp) {
+        int low = 0;
+        int high = blocks.size();
+        while (low < high) { // First block whose last sample is at or after the timestamp
+            int middle = (low + high) >>> 1;
+            if (blocks.get(middle).last < timestamp) low = middle + 1;
+            else high = middle;
+        }
+        if (low < blocks.size()) {
+            return low * blockSize + decode(blocks.get(low)).indexAt(timestamp);
+        }
+        int index = compressedSize();
+        while (index < size() && super.timestamp(index) < timestamp) index++;
+        return index;
+    }
+
+    @Override
+    public synchronized List<JsonArray> range(long from, long to) {
+        return super.range(from, to);
+    }
+
+    private int checked(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        return index;
+    }
+
+    /**
+     * Estimated memory used by the store, the compressed blocks, the open block and the texts
+     *
+     * @return estimated bytes used
+     */
+    @Override
+    public synchronized long bytesUsed() {
+        return compressedBytes + blocks.size() * 32 + openBytes + dictionaryBytes;
+    }
+
+    @Override
+    public synchronized long trimTo(long bytes) {
+        long before = bytesUsed();
+        while (!blocks.isEmpty() && bytesUsed() > bytes) {
+            removeOldestBlock();
+        }
+        spares.clear(); // The memory is wanted elsewhere
+        if (bytesUsed() > bytes && open > 0) {
+            for (int slot = 0; slot < open; slot++) {
+                release(slot);
+            }
+            drop(open);
+            open = 0;
+            openBytes = 0;
+        }
+        if (blocks.isEmpty()) {
+            dictionary.clear(); // No compressed block refers to the texts any more
+            texts.clear();
+            dictionaryBytes = 0;
+        }
+        return before - bytesUsed();
+    }
+
+    /**
+     * The policy deciding how much the store keeps
+     *
+     * @return the retention policy
+     */
+    public RetentionPolicy policy() {
+        return policy;
+    }
+
+    @Override
+    public synchronized int size() {
+        return compressedSize() + open;
+    }
+
+    @Override
+    public synchronized void seal() {
+        super.seal();
+    }
+
+    @Override
+    public synchronized void clear() {
+        blocks.clear();
+        spares.clear();
+        for (int slot = 0; slot < open; slot++) {
+            release(slot);
+        }
+        open = 0;
+        openBytes = 0;
+        compressedBytes = 0;
+        decodedFrom = null;
+        decoded.clear();
+        dictionary.clear();
+        texts.clear();
+        dictionaryBytes = 0;
+    }
+
+    @Override
+    protected int slot(int index) {
+        return checked(index) - compressedSize();
+    }
+}
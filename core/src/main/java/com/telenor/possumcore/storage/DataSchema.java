@@ -0,0 +1,70 @@
+package com.telenor.possumcore.storage;
+
+import com.telenor.possumcore.constants.ColumnType;
+
+import java.util.Arrays;
+
+/**
+ * Declares the columns of a typed dataSet, each column with a type from ColumnType. Every
+ * record in a typed dataSet has a timestamp in addition to the declared columns, and is exported
+ * as a jsonArray starting with the timestamp followed by each column in order.
+ */
+public class DataSchema {
+    private final int[] types;
+
+    /**
+     * Constructor for a schema with the given column types
+     *
+     * @param types the type of each column, found in ColumnType
+     */
+    public DataSchema(int... types) {
+        if (types.length == 0) throw new IllegalArgumentException("Minimum columns is 1");
+        for (int type : types) {
+            if (type < ColumnType.Float || type > ColumnType.Text)
+                throw new IllegalArgumentException("Unknown column type:" + type);
+        }
+        this.types = Arrays.copyOf(types, types.length);
+    }
+
+    /**
+     * Handy method for creating a schema where all columns are floats, like sensor values
+     *
+     * @param columns number of columns
+     * @return a schema with the given number of float columns
+     */
+    public static DataSchema floats(int columns) {
+        if (columns <= 0) throw new IllegalArgumentException("Minimum columns is 1");
+        int[] types = new int[columns];
+        Arrays.fill(types, ColumnType.Float);
+        return new DataSchema(types);
+    }
+
+    /**
+     * Number of columns, not counting the timestamp
+     *
+     * @return the number of columns
+     */
+    public int columns() {
+        return types.length;
+    }
+
+    /**
+     * The type of a given column
+     *
+     * @param column the column index
+     * @return the ColumnType of the column
+     */
+    public int type(int column) {
+        return types[column];
+    }
+
+    /**
+     * Confirms whether a column holds numbers or not
+     *
+     * @param column the column index
+     * @return true if the column is numeric, false if it is text
+     */
+    public boolean isNumeric(int column) {
+        return types[column] != ColumnType.Text;
+    }
+}
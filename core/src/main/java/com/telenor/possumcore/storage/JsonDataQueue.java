@@ -0,0 +1,238 @@
+package com.telenor.possumcore.storage;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.telenor.possumcore.interfaces.IDropCounter;
+import com.telenor.possumcore.interfaces.IMemoryBound;
+import com.telenor.possumcore.interfaces.IRangeQuery;
+import com.telenor.possumcore.interfaces.ISealable;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Circular FIFO for jsonArrays, removing the oldest entries when a new comes in and the
+ * RetentionPolicy is no longer met. Each entry is expected to start with its timestamp, like all
+ * detectors store their data, which is kept alongside so entries can be looked up by time.
+ */
+public class JsonDataQueue extends AbstractList<JsonArray> implements IDropCounter, IMemoryBound, IRangeQuery, ISealable {
+    private final RetentionPolicy policy;
+    private JsonArray[] entries;
+    private long[] timestamps;
+    private long[] sizes; // Estimated bytes of each entry
+    private int head; // Position the next entry is written to
+    private int size;
+    private long bytesUsed;
+    private long dropped;
+    private boolean sealed;
+
+    /**
+     * Constructor defining how much the queue keeps
+     *
+     * @param policy the retention policy deciding when entries are removed
+     */
+    public JsonDataQueue(@NonNull RetentionPolicy policy) {
+        this.policy = policy;
+        entries = new JsonArray[policy.initialCapacity()];
+        timestamps = new long[entries.length];
+        sizes = new long[entries.length];
+    }
+
+    @Override
+    public synchronized boolean add(@NonNull JsonArray data) {
+        if (sealed) return false;
+        if (size == entries.length) {
+            if (size >= policy.maxEntries()) removeOldest();
+            else grow();
+        }
+        long timestamp = timestampOf(data, size > 0 ? timestamps[slot(size - 1)] : 0);
+        int slot = head;
+        entries[slot] = data;
+        timestamps[slot] = timestamp;
+        sizes[slot] = estimateBytes(data);
+        head = (head + 1) % entries.length;
+        size++;
+        bytesUsed += sizes[slot];
+        while (size > 1 && policy.exceeds(size, timestamps[slot(0)], timestamp, bytesUsed)) {
+            removeOldest();
+        }
+        return true;
+    }
+
+    private void grow() {
+        int slots = (int) Math.min((long) entries.length * 2, policy.maxEntries());
+        int first = slot(0);
+        JsonArray[] movedEntries = new JsonArray[slots];
+        long[] movedTimestamps = new long[slots];
+        long[] movedSizes = new long[slots];
+        int untilEnd = Math.min(size, entries.length - first);
+        System.arraycopy(entries, first, movedEntries, 0, untilEnd);
+        System.arraycopy(entries, 0, movedEntries, untilEnd, size - untilEnd);
+        System.arraycopy(timestamps, first, movedTimestamps, 0, untilEnd);
+        System.arraycopy(timestamps, 0, movedTimestamps, untilEnd, size - untilEnd);
+        System.arraycopy(sizes, first, movedSizes, 0, untilEnd);
+        System.arraycopy(sizes, 0, movedSizes, untilEnd, size - untilEnd);
+        entries = movedEntries;
+        timestamps = movedTimestamps;
+        sizes = movedSizes;
+        head = size;
+    }
+
+    private void removeOldest() {
+        int oldest = slot(0);
+        bytesUsed -= sizes[oldest];
+        entries[oldest] = null;
+        size--;
+        dropped++;
+    }
+
+    /**
+     * Finds the timestamp of an entry, being the first value of it
+     *
+     * @param data     the entry
+     * @param fallback timestamp used if the entry does not start with one
+     * @return the timestamp of the entry
+     */
+    public static long timestampOf(@NonNull JsonArray data, long fallback) {
+        if (data.size() == 0 || !data.get(0).isJsonPrimitive()) return fallback;
+        try {
+            return Long.parseLong(data.get(0).getAsString());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Estimates the memory used by a jsonElement and all it contains
+     *
+     * @param element the element
+     * @return estimated bytes used
+     */
+    public static long estimateBytes(@NonNull JsonElement element) {
+        if (element.isJsonArray()) {
+            long bytes = 40; // Array and its list
+            for (JsonElement child : element.getAsJsonArray()) {
+                bytes += 4 + estimateBytes(child);
+            }
+            return bytes;
+        }
+        if (element.isJsonObject()) {
+            long bytes = 56; // Object and its map
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                bytes += 32 + 40 + 2 * entry.getKey().length() + estimateBytes(entry.getValue());
+            }
+            return bytes;
+        }
+        if (element.isJsonPrimitive()) {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            return 16 + (primitive.isString() ? 40 + 2 * primitive.getAsString().length() : 16);
+        }
+        return 0; // JsonNull is shared
+    }
+
+    /**
+     * Finds the first entry at or after a given time by binary search. Entries are expected to
+     * be added in time order.
+     *
+     * @param timestamp the time to search for
+     * @return index of the first entry with a timestamp at or after it, size if there is none
+     */
+    public synchronized int indexAt(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[slot(middle)] < timestamp) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    @Override
+    public synchronized List<JsonArray> range(long from, long to) {
+        int first = indexAt(from);
+        int last = indexAt(to);
+        List<JsonArray> data = new ArrayList<>(Math.max(0, last - first));
+        for (int index = first; index < last; index++) {
+            data.add(entries[slot(index)]);
+        }
+        return data;
+    }
+
+    /**
+     * Timestamp of a given entry
+     *
+     * @param index position of the entry, 0 being the oldest
+     * @return the timestamp of the entry
+     */
+    public synchronized long timestamp(int index) {
+        return timestamps[checkedSlot(index)];
+    }
+
+    @Override
+    public synchronized JsonArray get(int index) {
+        return entries[checkedSlot(index)];
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void clear() {
+        Arrays.fill(entries, null);
+        head = 0;
+        size = 0;
+        bytesUsed = 0;
+    }
+
+    @Override
+    public synchronized long bytesUsed() {
+        return bytesUsed;
+    }
+
+    @Override
+    public synchronized long trimTo(long bytes) {
+        long before = bytesUsed;
+        while (size > 0 && bytesUsed > bytes) {
+            removeOldest();
+        }
+        return before - bytesUsed;
+    }
+
+    /**
+     * The policy deciding how much the queue keeps
+     *
+     * @return the retention policy
+     */
+    public RetentionPolicy policy() {
+        return policy;
+    }
+
+    @Override
+    public synchronized long dropped() {
+        return dropped;
+    }
+
+    @Override
+    public synchronized void seal() {
+        sealed = true;
+    }
+
+    private int checkedSlot(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return slot(index);
+    }
+
+    private int slot(int index) {
+        return (head - size + index + entries.length) % entries.length;
+    }
+}
@@ -0,0 +1,269 @@
+package com.telenor.possumcore.storage;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.telenor.possumcore.interfaces.IDataSink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Sink writing each entry as UTF-8 text to a stream, as JsonArray.toString() would give it,
+ * followed by a separator. Text is gathered in a reusable buffer, and typed samples are written
+ * straight from their values with a NumberEncoder, so writing them allocates nothing. Their
+ * numbers follow the NumberEncoder text, which may differ in the last digit from the platform's.
+ * <p>
+ * The first failure to write is kept and everything after it is ignored, check it with flush.
+ */
+public class JsonRecordWriter implements IDataSink {
+    private static final int bufferSize = 8192;
+    private final OutputStream out;
+    private final byte[] separator;
+    private final byte[] buffer = new byte[bufferSize];
+    private final NumberEncoder encoder = new NumberEncoder();
+    private int position;
+    private IOException error;
+    private int records;
+
+    /**
+     * Constructor for writing entries to a stream. It is not closed by this sink.
+     *
+     * @param out       the stream receiving the text
+     * @param separator text written after each entry, like a line break
+     */
+    public JsonRecordWriter(@NonNull OutputStream out, @NonNull String separator) {
+        this.out = out;
+        this.separator = new byte[separator.length()];
+        for (int i = 0; i < separator.length(); i++) {
+            this.separator[i] = (byte) separator.charAt(i); // Separators are plain ascii
+        }
+    }
+
+    @Override
+    public void begin(long timestamp) {
+        room(NumberEncoder.maxLength + 3);
+        buffer[position++] = '[';
+        buffer[position++] = '"';
+        position = encoder.encode(timestamp, buffer, position);
+        buffer[position++] = '"';
+    }
+
+    @Override
+    public void value(int column, float value) {
+        room(NumberEncoder.maxLength + 3);
+        buffer[position++] = ',';
+        buffer[position++] = '"';
+        position = encoder.encode(value, buffer, position);
+        buffer[position++] = '"';
+    }
+
+    @Override
+    public void value(int column, double value) {
+        room(NumberEncoder.maxLength + 3);
+        buffer[position++] = ',';
+        buffer[position++] = '"';
+        position = encoder.encode(value, buffer, position);
+        buffer[position++] = '"';
+    }
+
+    @Override
+    public void value(int column, int value) {
+        value(column, (long) value);
+    }
+
+    @Override
+    public void value(int column, long value) {
+        room(NumberEncoder.maxLength + 3);
+        buffer[position++] = ',';
+        buffer[position++] = '"';
+        position = encoder.encode(value, buffer, position);
+        buffer[position++] = '"';
+    }
+
+    @Override
+    public void text(int column, String text) {
+        write(',');
+        if (text == null) ascii("null");
+        else string(text);
+    }
+
+    @Override
+    public void end() {
+        write(']');
+        separator();
+        records++;
+    }
+
+    @Override
+    public void entry(@NonNull JsonArray entry) {
+        element(entry);
+        separator();
+        records++;
+    }
+
+    /**
+     * Number of entries written
+     *
+     * @return the number of entries
+     */
+    public int records() {
+        return records;
+    }
+
+    /**
+     * Writes out what is buffered and flushes the stream, reporting if anything failed
+     *
+     * @throws IOException the first failure writing or flushing
+     */
+    public void flush() throws IOException {
+        drain();
+        if (error != null) throw error;
+        out.flush();
+    }
+
+    private void element(JsonElement element) {
+        if (element.isJsonArray()) {
+            write('[');
+            boolean first = true;
+            for (JsonElement child : element.getAsJsonArray()) {
+                if (!first) write(',');
+                element(child);
+                first = false;
+            }
+            write(']');
+        } else if (element.isJsonObject()) {
+            write('{');
+            boolean first = true;
+            for (Map.Entry<String, JsonElement> member : element.getAsJsonObject().entrySet()) {
+                if (!first) write(',');
+                string(member.getKey());
+                write(':');
+                element(member.getValue());
+                first = false;
+            }
+            write('}');
+        } else if (element.isJsonPrimitive()) {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isString()) string(primitive.getAsString());
+            else if (primitive.isBoolean()) ascii(primitive.getAsBoolean() ? "true" : "false");
+            else string(primitive.getAsNumber().toString(), false);
+        } else {
+            ascii("null");
+        }
+    }
+
+    private void string(String text) {
+        write('"');
+        string(text, true);
+        write('"');
+    }
+
+    // Escapes like gson, which writes characters above 127 as they are, then encodes as UTF-8
+    private void string(String text, boolean escape) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (escape && (c < 0x20 || c == '"' || c == '\\')) escape(c);
+                else write((byte) c);
+            } else if (c < 0x800) {
+                room(2);
+                buffer[position++] = (byte) (0xC0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (escape && (c == '\u2028' || c == '\u2029')) {
+                ascii(c == '\u2028' ? "\\u2028" : "\\u2029");
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                room(4);
+                buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                write((byte) '?'); // Unpaired surrogate, replaced like String.getBytes does
+            } else {
+                room(3);
+                buffer[position++] = (byte) (0xE0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+    }
+
+    private void escape(char c) {
+        switch (c) {
+            case '"':
+                ascii("\\\"");
+                break;
+            case '\\':
+                ascii("\\\\");
+                break;
+            case '\t':
+                ascii("\\t");
+                break;
+            case '\b':
+                ascii("\\b");
+                break;
+            case '\n':
+                ascii("\\n");
+                break;
+            case '\r':
+                ascii("\\r");
+                break;
+            case '\f':
+                ascii("\\f");
+                break;
+            default:
+                room(6);
+                buffer[position++] = '\\';
+                buffer[position++] = 'u';
+                buffer[position++] = '0';
+                buffer[position++] = '0';
+                buffer[position++] = (byte) Character.forDigit(c >> 4, 16);
+                buffer[position++] = (byte) Character.forDigit(c & 0xF, 16);
+        }
+    }
+
+    private void separator() {
+        room(separator.length);
+        System.arraycopy(separator, 0, buffer, position, separator.length);
+        position += separator.length;
+    }
+
+    private void ascii(String text) {
+        room(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer[position++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void write(char c) {
+        write((byte) c);
+    }
+
+    private void write(byte b) {
+        room(1);
+        buffer[position++] = b;
+    }
+
+    // Makes room in the buffer for a number of bytes, none longer than the buffer
+    private void room(int bytes) {
+        if (position + bytes > bufferSize) drain();
+    }
+
+    private void drain() {
+        if (position == 0) return;
+        if (error == null) {
+            try {
+                out.write(buffer, 0, position);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        position = 0;
+    }
+}
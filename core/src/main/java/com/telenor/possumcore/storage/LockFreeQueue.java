@@ -0,0 +1,98 @@
+package com.telenor.possumcore.storage;
+
+import android.support.annotation.NonNull;
+
+import com.telenor.possumcore.interfaces.IDropCounter;
+import com.telenor.possumcore.interfaces.ISealable;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock free bounded queue, letting any number of threads add while one thread reads. Producers
+ * never wait for the reader: when the queue is full new elements are dropped and counted until
+ * the reader clears it, unlike a ring buffer which removes the oldest element.
+ * <p>
+ * Reading by index and size walk the queue, iterate it when reading everything.
+ */
+public class LockFreeQueue<E> extends AbstractList<E> implements IDropCounter, ISealable {
+    private final ConcurrentLinkedQueue<E> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final int limit;
+    private volatile boolean sealed;
+
+    /**
+     * Constructor defining the capacity of the queue
+     *
+     * @param limit the capacity - must be greater than 0 or it fails
+     */
+    public LockFreeQueue(int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("Minimum size is 1");
+        this.limit = limit;
+    }
+
+    @Override
+    public boolean add(@NonNull E element) {
+        if (sealed) return false;
+        if (count.incrementAndGet() > limit) {
+            count.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+        queue.offer(element);
+        return true;
+    }
+
+    @Override
+    public E get(int index) {
+        if (index >= 0) {
+            int position = 0;
+            for (E element : queue) {
+                if (position++ == index) return element;
+            }
+        }
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+
+    @Override
+    @NonNull
+    public Iterator<E> iterator() {
+        return Collections.unmodifiableCollection(queue).iterator();
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public void clear() {
+        while (queue.poll() != null) {
+            count.decrementAndGet();
+        }
+    }
+
+    /**
+     * Maximum number of elements stored
+     *
+     * @return the capacity
+     */
+    public int limit() {
+        return limit;
+    }
+
+    @Override
+    public void seal() {
+        sealed = true;
+    }
+
+    @Override
+    public long dropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,398 @@
+package com.telenor.possumcore.storage;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Writes numbers as text into a buffer without allocating. Longs are written as Long.toString
+ * would. Floats and doubles are written as Float.toString and Double.toString of Java 8 to 18
+ * (OpenJDK's FloatingDecimal, also used by Android from API 24) write them, whatever the platform
+ * running: the same steps are taken, so the digits picked, including its rounding of the last
+ * digit, are identical. That text is the contract. Java 19 and later and Android before API 24
+ * may differ in the last digit for some values. NaN, infinities, subnormals and numbers needing
+ * more than 64 bit arithmetic to convert, being far larger or smaller than any sensor reading,
+ * fall back to the platform methods and so give the platform's text.
+ * <p>
+ * Not thread safe, each writer should have its own encoder.
+ */
+public class NumberEncoder {
+    /**
+     * The most characters a number can be written with
+     */
+    public static final int maxLength = 26;
+    private static final int expShift = 52;
+    private static final long fractHob = 1L << expShift;
+    private static final int singleExpShift = 23;
+    private static final int maxSmallBinExp = 62;
+    private static final int[] n5Bits = {0, 3, 5, 7, 10, 12, 14, 17, 19, 21, 24, 26, 28, 31, 33, 35, 38, 40, 42, 45, 47, 49, 52, 54, 56, 59, 61};
+    private static final long[] long5Pow = new long[n5Bits.length];
+    private static final ThreadLocal<NumberEncoder> shared = new ThreadLocal<>();
+
+    static {
+        long5Pow[0] = 1;
+        for (int i = 1; i < long5Pow.length; i++) {
+            long5Pow[i] = long5Pow[i - 1] * 5;
+        }
+    }
+
+    private final char[] digits = new char[20];
+    private final char[] text = new char[maxLength];
+    private int firstDigit;
+    private int nDigits;
+    private int decExponent;
+
+    /**
+     * Writes a long as text
+     *
+     * @param value  the value
+     * @param target the buffer written to, must have room for maxLength characters
+     * @param offset where in the buffer to start
+     * @return the position after the text
+     */
+    public int encode(long value, @NonNull byte[] target, int offset) {
+        return copy(longChars(value), target, offset);
+    }
+
+    /**
+     * Writes a float as text
+     *
+     * @param value  the value
+     * @param target the buffer written to, must have room for maxLength characters
+     * @param offset where in the buffer to start
+     * @return the position after the text
+     */
+    public int encode(float value, @NonNull byte[] target, int offset) {
+        return copy(floatChars(value), target, offset);
+    }
+
+    /**
+     * Writes a double as text
+     *
+     * @param value  the value
+     * @param target the buffer written to, must have room for maxLength characters
+     * @param offset where in the buffer to start
+     * @return the position after the text
+     */
+    public int encode(double value, @NonNull byte[] target, int offset) {
+        return copy(doubleChars(value), target, offset);
+    }
+
+    /**
+     * Gives a float as a string like Float.toString, with no allocation besides the string
+     *
+     * @param value the value
+     * @return the text of the value
+     */
+    public static String toString(float value) {
+        NumberEncoder encoder = encoder();
+        return new String(encoder.text, 0, encoder.floatChars(value));
+    }
+
+    /**
+     * Gives a double as a string like Double.toString, with no allocation besides the string
+     *
+     * @param value the value
+     * @return the text of the value
+     */
+    public static String toString(double value) {
+        NumberEncoder encoder = encoder();
+        return new String(encoder.text, 0, encoder.doubleChars(value));
+    }
+
+    private static NumberEncoder encoder() {
+        NumberEncoder encoder = shared.get();
+        if (encoder == null) {
+            encoder = new NumberEncoder();
+            shared.set(encoder);
+        }
+        return encoder;
+    }
+
+    private int copy(int length, byte[] target, int offset) {
+        for (int i = 0; i < length; i++) {
+            target[offset + i] = (byte) text[i];
+        }
+        return offset + length;
+    }
+
+    private int longChars(long value) {
+        if (value == Long.MIN_VALUE) return set("-9223372036854775808");
+        int length = 0;
+        if (value < 0) {
+            text[length++] = '-';
+            value = -value;
+        }
+        int end = length + digitCount(value);
+        for (int i = end - 1; i >= length; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    private int floatChars(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        boolean negative = bits < 0;
+        int fractBits = bits & 0x007FFFFF;
+        int binExp = (bits >> singleExpShift) & 0xFF;
+        if (binExp == 0xFF) return set(Float.toString(value));
+        if (binExp == 0) {
+            if (fractBits == 0) return set(negative ? "-0.0" : "0.0");
+            return set(Float.toString(value)); // Subnormal
+        }
+        fractBits |= 1 << singleExpShift;
+        if (!dtoa(binExp - 127, ((long) fractBits) << (expShift - singleExpShift), singleExpShift + 1))
+            return set(Float.toString(value));
+        return chars(negative);
+    }
+
+    private int doubleChars(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        boolean negative = bits < 0;
+        long fractBits = bits & (fractHob - 1);
+        int binExp = (int) ((bits >> expShift) & 0x7FF);
+        if (binExp == 0x7FF) return set(Double.toString(value));
+        if (binExp == 0) {
+            if (fractBits == 0) return set(negative ? "-0.0" : "0.0");
+            return set(Double.toString(value)); // Subnormal
+        }
+        fractBits |= fractHob;
+        if (!dtoa(binExp - 1023, fractBits, expShift + 1)) return set(Double.toString(value));
+        return chars(negative);
+    }
+
+    private int set(String value) {
+        value.getChars(0, value.length(), text, 0);
+        return value.length();
+    }
+
+    /**
+     * Finds the digits of a number, following FloatingDecimal.BinaryToASCIIBuffer.dtoa
+     *
+     * @param binExp           the binary exponent, without bias
+     * @param fractBits        the significand with its high order bit at bit 52
+     * @param nSignificantBits the number of bits in the significand
+     * @return false if the number needs more than 64 bit arithmetic
+     */
+    private boolean dtoa(int binExp, long fractBits, int nSignificantBits) {
+        int tailZeros = Long.numberOfTrailingZeros(fractBits);
+        int nFractBits = expShift + 1 - tailZeros;
+        int nTinyBits = Math.max(0, nFractBits - binExp - 1);
+        if (nTinyBits == 0 && binExp <= maxSmallBinExp) {
+            if (binExp > nSignificantBits) return false; // Has insignificant digits
+            if (binExp >= expShift) fractBits <<= (binExp - expShift);
+            else fractBits >>>= (expShift - binExp);
+            longDigits(fractBits);
+            return true;
+        }
+        int decExp = estimateDecExp(fractBits, binExp);
+        int b5 = Math.max(0, -decExp);
+        int b2 = b5 + nTinyBits + binExp;
+        int s5 = Math.max(0, decExp);
+        int s2 = s5 + nTinyBits;
+        int m5 = b5;
+        int m2 = b2 - nSignificantBits;
+        fractBits >>>= tailZeros;
+        b2 -= nFractBits - 1;
+        int common2 = Math.min(b2, s2);
+        b2 -= common2;
+        s2 -= common2;
+        m2 -= common2;
+        if (nFractBits == 1) m2 -= 1; // Spacing below a power of two is half
+        if (m2 < 0) {
+            b2 -= m2;
+            s2 -= m2;
+            m2 = 0;
+        }
+        int bBits = nFractBits + b2 + (b5 < n5Bits.length ? n5Bits[b5] : b5 * 3);
+        int tenSBits = s2 + 1 + (s5 + 1 < n5Bits.length ? n5Bits[s5 + 1] : (s5 + 1) * 3);
+        if (bBits >= 64 || tenSBits >= 64) return false;
+        int nDigit = 0;
+        boolean low;
+        boolean high;
+        long lowDigitDifference;
+        if (bBits < 32 && tenSBits < 32) {
+            int b = ((int) fractBits * (int) long5Pow[b5]) << b2;
+            int s = (int) long5Pow[s5] << s2;
+            int m = (int) long5Pow[m5] << m2;
+            int tens = s * 10;
+            int q = b / s;
+            b = 10 * (b % s);
+            m *= 10;
+            low = b < m;
+            high = b + m > tens;
+            if (q == 0 && !high) decExp--;
+            else digits[nDigit++] = (char) ('0' + q);
+            if (decExp < -3 || decExp >= 8) high = low = false; // Scientific form needs 2 digits
+            while (!low && !high) {
+                q = b / s;
+                b = 10 * (b % s);
+                m *= 10;
+                if (m > 0) {
+                    low = b < m;
+                    high = b + m > tens;
+                } else {
+                    low = true;
+                    high = true;
+                }
+                digits[nDigit++] = (char) ('0' + q);
+            }
+            lowDigitDifference = (b << 1) - tens;
+        } else {
+            long b = (fractBits * long5Pow[b5]) << b2;
+            long s = long5Pow[s5] << s2;
+            long m = long5Pow[m5] << m2;
+            long tens = s * 10L;
+            int q = (int) (b / s);
+            b = 10L * (b % s);
+            m *= 10L;
+            low = b < m;
+            high = b + m > tens;
+            if (q == 0 && !high) decExp--;
+            else digits[nDigit++] = (char) ('0' + q);
+            if (decExp < -3 || decExp >= 8) high = low = false;
+            while (!low && !high) {
+                q = (int) (b / s);
+                b = 10 * (b % s);
+                m *= 10;
+                if (m > 0L) {
+                    low = b < m;
+                    high = b + m > tens;
+                } else {
+                    low = true;
+                    high = true;
+                }
+                digits[nDigit++] = (char) ('0' + q);
+            }
+            lowDigitDifference = (b << 1) - tens;
+        }
+        decExponent = decExp + 1;
+        firstDigit = 0;
+        nDigits = nDigit;
+        if (high) {
+            if (low) {
+                if (lowDigitDifference == 0L) {
+                    if ((digits[nDigits - 1] & 1) != 0) roundUp(); // Tie, round to even
+                } else if (lowDigitDifference > 0) {
+                    roundUp();
+                }
+            } else {
+                roundUp();
+            }
+        }
+        return true;
+    }
+
+    private static int estimateDecExp(long fractBits, int binExp) {
+        double d2 = Double.longBitsToDouble(0x3FF0000000000000L | (fractBits & (fractHob - 1)));
+        double d = (d2 - 1.5D) * 0.289529654D + 0.176091259 + (double) binExp * 0.301029995663981;
+        return (int) Math.floor(d);
+    }
+
+    private void longDigits(long value) {
+        int exponent = 0;
+        int digit = digits.length - 1;
+        long c = value % 10;
+        value /= 10;
+        while (c == 0) {
+            exponent++;
+            c = value % 10;
+            value /= 10;
+        }
+        while (value != 0) {
+            digits[digit--] = (char) (c + '0');
+            exponent++;
+            c = value % 10;
+            value /= 10;
+        }
+        digits[digit] = (char) (c + '0');
+        decExponent = exponent + 1;
+        firstDigit = digit;
+        nDigits = digits.length - digit;
+    }
+
+    private void roundUp() {
+        int i = firstDigit + nDigits - 1;
+        char q = digits[i];
+        if (q == '9') {
+            while (q == '9' && i > firstDigit) {
+                digits[i] = '0';
+                q = digits[--i];
+            }
+            if (q == '9') {
+                decExponent += 1;
+                digits[firstDigit] = '1';
+                return;
+            }
+        }
+        digits[i] = (char) (q + 1);
+    }
+
+    // Lays out the digits as plain or scientific notation, following FloatingDecimal.getChars
+    private int chars(boolean negative) {
+        int i = 0;
+        if (negative) text[i++] = '-';
+        if (decExponent > 0 && decExponent < 8) {
+            int length = Math.min(nDigits, decExponent);
+            System.arraycopy(digits, firstDigit, text, i, length);
+            i += length;
+            if (length < decExponent) {
+                for (int zeros = decExponent - length; zeros > 0; zeros--) {
+                    text[i++] = '0';
+                }
+                text[i++] = '.';
+                text[i++] = '0';
+            } else {
+                text[i++] = '.';
+                if (length < nDigits) {
+                    System.arraycopy(digits, firstDigit + length, text, i, nDigits - length);
+                    i += nDigits - length;
+                } else {
+                    text[i++] = '0';
+                }
+            }
+        } else if (decExponent <= 0 && decExponent > -3) {
+            text[i++] = '0';
+            text[i++] = '.';
+            for (int zeros = -decExponent; zeros > 0; zeros--) {
+                text[i++] = '0';
+            }
+            System.arraycopy(digits, firstDigit, text, i, nDigits);
+            i += nDigits;
+        } else {
+            text[i++] = digits[firstDigit];
+            text[i++] = '.';
+            if (nDigits > 1) {
+                System.arraycopy(digits, firstDigit + 1, text, i, nDigits - 1);
+                i += nDigits - 1;
+            } else {
+                text[i++] = '0';
+            }
+            text[i++] = 'E';
+            int e;
+            if (decExponent <= 0) {
+                text[i++] = '-';
+                e = -decExponent + 1;
+            } else {
+                e = decExponent - 1;
+            }
+            if (e > 99) {
+                text[i++] = (char) (e / 100 + '0');
+                e %= 100;
+                text[i++] = (char) (e / 10 + '0');
+            } else if (e > 9) {
+                text[i++] = (char) (e / 10 + '0');
+            }
+            text[i++] = (char) (e % 10 + '0');
+        }
+        return i;
+    }
+}
@@ -0,0 +1,127 @@
+package com.telenor.possumcore.storage;
+
+/**
+ * Decides how much data a dataSet keeps, by number of entries, by the time span from the newest
+ * entry and/or by the estimated memory used. The oldest entries are removed until all limits
+ * are met. Limits can be combined, like keeping the last 3 seconds but never more than 500
+ * entries.
+ */
+public class RetentionPolicy {
+    private static final int unbounded = -1;
+    private static final int growingCapacity = 64; // Start size of dataSets not bound by entries
+    private final int entries;
+    private final long millis;
+    private final long bytes;
+
+    private RetentionPolicy(int entries, long millis, long bytes) {
+        this.entries = entries;
+        this.millis = millis;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Keeps the last entries added
+     *
+     * @param entries number of entries kept - must be greater than 0 or it fails
+     * @return a policy keeping a number of entries
+     */
+    public static RetentionPolicy entries(int entries) {
+        return new RetentionPolicy(unbounded, unbounded, unbounded).withEntries(entries);
+    }
+
+    /**
+     * Keeps entries no older than a time span from the newest entry
+     *
+     * @param millis the time span in milliseconds - must be greater than 0 or it fails
+     * @return a policy keeping entries within a time span
+     */
+    public static RetentionPolicy millis(long millis) {
+        return new RetentionPolicy(unbounded, unbounded, unbounded).withMillis(millis);
+    }
+
+    /**
+     * Keeps the last entries fitting in an estimated amount of memory
+     *
+     * @param bytes the estimated memory in bytes - must be greater than 0 or it fails
+     * @return a policy keeping entries within a memory size
+     */
+    public static RetentionPolicy bytes(long bytes) {
+        return new RetentionPolicy(unbounded, unbounded, unbounded).withBytes(bytes);
+    }
+
+    /**
+     * Adds a limit on the number of entries to the policy
+     *
+     * @param entries number of entries kept - must be greater than 0 or it fails
+     * @return a new policy with the limit
+     */
+    public RetentionPolicy withEntries(int entries) {
+        if (entries <= 0) throw new IllegalArgumentException("Minimum size is 1");
+        return new RetentionPolicy(entries, millis, bytes);
+    }
+
+    /**
+     * Adds a limit on the time span of entries to the policy
+     *
+     * @param millis the time span in milliseconds - must be greater than 0 or it fails
+     * @return a new policy with the limit
+     */
+    public RetentionPolicy withMillis(long millis) {
+        if (millis <= 0) throw new IllegalArgumentException("Minimum time span is 1 ms");
+        return new RetentionPolicy(entries, millis, bytes);
+    }
+
+    /**
+     * Adds a limit on the estimated memory used by the entries to the policy
+     *
+     * @param bytes the estimated memory in bytes - must be greater than 0 or it fails
+     * @return a new policy with the limit
+     */
+    public RetentionPolicy withBytes(long bytes) {
+        if (bytes <= 0) throw new IllegalArgumentException("Minimum size is 1 byte");
+        return new RetentionPolicy(entries, millis, bytes);
+    }
+
+    /**
+     * Confirms whether the oldest entry must be removed to meet the policy
+     *
+     * @param size      number of entries stored
+     * @param oldest    timestamp of the oldest entry
+     * @param newest    timestamp of the newest entry
+     * @param bytesUsed estimated memory used by the entries
+     * @return true if the oldest entry should be removed, false if all limits are met
+     */
+    public boolean exceeds(int size, long oldest, long newest, long bytesUsed) {
+        return (entries != unbounded && size > entries) ||
+                (millis != unbounded && newest - oldest > millis) ||
+                (bytes != unbounded && bytesUsed > bytes);
+    }
+
+    /**
+     * Confirms whether the policy caps the number of entries
+     *
+     * @return true if it has an entries limit, false if not
+     */
+    public boolean isBoundedByEntries() {
+        return entries != unbounded;
+    }
+
+    /**
+     * Maximum number of entries kept
+     *
+     * @return the entries limit or Integer.MAX_VALUE if there is none
+     */
+    public int maxEntries() {
+        return entries == unbounded ? Integer.MAX_VALUE : entries;
+    }
+
+    /**
+     * How many entries storage should make room for up front. Storage bound by entries is
+     * allocated once, other storage starts small and grows as needed.
+     *
+     * @return the initial capacity
+     */
+    public int initialCapacity() {
+        return entries == unbounded ? growingCapacity : entries;
+    }
+}
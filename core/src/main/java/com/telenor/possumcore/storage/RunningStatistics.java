@@ -0,0 +1,218 @@
+package com.telenor.possumcore.storage;
+
+import android.support.annotation.NonNull;
+
+import com.telenor.possumcore.constants.ColumnType;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Mean, variance, min and max of each numeric column of a typed dataSet and the rate of its
+ * samples, updated as samples are streamed with Welford's method. Nothing is kept pr sample, so
+ * the statistics cover everything streamed since the last reset, even data already retrieved or
+ * removed by the retention policy. Text columns are skipped, and so are NaN values.
+ * <p>
+ * Samples are added by one thread at a time, like the producer of a lock free dataSet, without
+ * taking any lock. Snapshots can be taken from any thread without blocking the writer: the writer
+ * publishes each update between two steps of a version, and a reader copying while the version
+ * moves copies again.
+ */
+public class RunningStatistics {
+    private final DataSchema schema;
+    private final int columns;
+    private long samples;
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private final long[] counts;
+    private final double[] means;
+    private final double[] squares; // Sum of squared differences from the mean
+    private final double[] minimums;
+    private final double[] maximums;
+    private volatile int version; // Odd while the writer is publishing
+    private final AtomicLongArray published; // What readers copy, doubles as their bits
+    private static final int header = 3; // Samples, first and last timestamp, then five pr column
+
+    /**
+     * Constructor for statistics of a dataSet
+     *
+     * @param schema the schema of the dataSet
+     */
+    public RunningStatistics(@NonNull DataSchema schema) {
+        this.schema = schema;
+        columns = schema.columns();
+        counts = new long[columns];
+        means = new double[columns];
+        squares = new double[columns];
+        minimums = new double[columns];
+        maximums = new double[columns];
+        published = new AtomicLongArray(header + 5 * columns);
+    }
+
+    /**
+     * The schema of the dataSet the statistics are for
+     *
+     * @return the schema
+     */
+    public DataSchema schema() {
+        return schema;
+    }
+
+    /**
+     * Adds a sample of float values
+     *
+     * @param timestamp the timestamp of the sample
+     * @param values    the values, one pr column
+     */
+    public void add(long timestamp, @NonNull float[] values) {
+        version++;
+        addTimestamp(timestamp);
+        for (int column = 0; column < columns; column++) {
+            if (schema.isNumeric(column)) addValue(column, values[column]);
+        }
+        publishTimestamps();
+    }
+
+    /**
+     * Adds a sample of double values
+     *
+     * @param timestamp the timestamp of the sample
+     * @param values    the values, one pr column
+     */
+    public void add(long timestamp, @NonNull double[] values) {
+        version++;
+        addTimestamp(timestamp);
+        for (int column = 0; column < columns; column++) {
+            if (schema.isNumeric(column)) addValue(column, values[column]);
+        }
+        publishTimestamps();
+    }
+
+    /**
+     * Adds a sample with mixed column types
+     *
+     * @param sample the sample, made for the schema
+     */
+    public void add(@NonNull Sample sample) {
+        version++;
+        addTimestamp(sample.timestamp());
+        for (int column = 0; column < columns; column++) {
+            switch (schema.type(column)) {
+                case ColumnType.Float:
+                case ColumnType.Double:
+                    addValue(column, sample.real(column));
+                    break;
+                case ColumnType.Int:
+                case ColumnType.Long:
+                    addValue(column, sample.integer(column));
+                    break;
+            }
+        }
+        publishTimestamps();
+    }
+
+    /**
+     * Adds a batch of float samples
+     *
+     * @param timestamps the timestamps of the samples
+     * @param values     the values of the samples, one sample after the other
+     * @param count      number of samples
+     */
+    public void addAll(@NonNull long[] timestamps, @NonNull float[] values, int count) {
+        version++;
+        for (int i = 0; i < count; i++) {
+            addTimestamp(timestamps[i]);
+            int offset = i * columns;
+            for (int column = 0; column < columns; column++) {
+                if (schema.isNumeric(column)) addValue(column, values[offset + column]);
+            }
+        }
+        publishTimestamps();
+    }
+
+    private void addTimestamp(long timestamp) {
+        if (samples++ == 0) firstTimestamp = timestamp;
+        lastTimestamp = timestamp;
+    }
+
+    private void addValue(int column, double value) {
+        if (Double.isNaN(value)) return;
+        long count = ++counts[column];
+        double delta = value - means[column];
+        means[column] += delta / count;
+        squares[column] += delta * (value - means[column]);
+        if (count == 1 || value < minimums[column]) minimums[column] = value;
+        if (count == 1 || value > maximums[column]) maximums[column] = value;
+        publish(column);
+    }
+
+    private void publish(int column) {
+        int index = header + 5 * column;
+        published.lazySet(index, counts[column]);
+        published.lazySet(index + 1, Double.doubleToRawLongBits(means[column]));
+        published.lazySet(index + 2, Double.doubleToRawLongBits(squares[column]));
+        published.lazySet(index + 3, Double.doubleToRawLongBits(minimums[column]));
+        published.lazySet(index + 4, Double.doubleToRawLongBits(maximums[column]));
+    }
+
+    /**
+     * Publishes the sample count and timestamps and ends the update begun by stepping the version
+     */
+    private void publishTimestamps() {
+        published.lazySet(0, samples);
+        published.lazySet(1, firstTimestamp);
+        published.lazySet(2, lastTimestamp);
+        version++;
+    }
+
+    /**
+     * Forgets all samples. Called by the thread adding samples, or while none are added.
+     */
+    public void reset() {
+        version++;
+        samples = 0;
+        firstTimestamp = 0;
+        lastTimestamp = 0;
+        Arrays.fill(counts, 0);
+        Arrays.fill(means, 0);
+        Arrays.fill(squares, 0);
+        for (int column = 0; column < columns; column++) {
+            publish(column);
+        }
+        publishTimestamps();
+    }
+
+    /**
+     * Copies the present statistics without blocking the writer. Costs the same however many
+     * samples there are.
+     *
+     * @return a snapshot that does not change as more samples are added
+     */
+    public StatisticsSnapshot snapshot() {
+        long[] copiedCounts = new long[columns];
+        double[] copiedMeans = new double[columns];
+        double[] copiedSquares = new double[columns];
+        double[] copiedMinimums = new double[columns];
+        double[] copiedMaximums = new double[columns];
+        while (true) {
+            int before = version;
+            if ((before & 1) == 0) {
+                long copiedSamples = published.get(0);
+                long copiedFirst = published.get(1);
+                long copiedLast = published.get(2);
+                for (int column = 0; column < columns; column++) {
+                    int index = header + 5 * column;
+                    copiedCounts[column] = published.get(index);
+                    copiedMeans[column] = Double.longBitsToDouble(published.get(index + 1));
+                    copiedSquares[column] = Double.longBitsToDouble(published.get(index + 2));
+                    copiedMinimums[column] = Double.longBitsToDouble(published.get(index + 3));
+                    copiedMaximums[column] = Double.longBitsToDouble(published.get(index + 4));
+                }
+                if (version == before)
+                    return new StatisticsSnapshot(copiedSamples, copiedFirst, copiedLast, copiedCounts,
+                            copiedMeans, copiedSquares, copiedMinimums, copiedMaximums);
+            }
+            Thread.yield(); // The writer is between the two steps, let it finish
+        }
+    }
+}
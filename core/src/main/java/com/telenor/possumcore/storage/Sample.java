@@ -0,0 +1,146 @@
+package com.telenor.possumcore.storage;
+
+import android.support.annotation.NonNull;
+
+import com.telenor.possumcore.constants.ColumnType;
+
+/**
+ * A reusable record for streaming values of mixed types into a typed dataSet. A detector keeps
+ * one around, fills in the timestamp and the columns and streams it. The values are copied into
+ * the dataSet, so the sample can be filled again right after.
+ * <p>
+ * Not thread safe, each producing thread should use its own sample or borrow one from a
+ * SamplePool.
+ */
+public class Sample {
+    private final DataSchema schema;
+    private long timestamp;
+    private final double[] reals;
+    private final long[] integers;
+    private final String[] texts;
+
+    /**
+     * Constructor for a sample fitting a given schema
+     *
+     * @param schema the schema of the dataSet the sample is to be streamed to
+     */
+    public Sample(@NonNull DataSchema schema) {
+        this.schema = schema;
+        reals = new double[schema.columns()];
+        integers = new long[schema.columns()];
+        texts = new String[schema.columns()];
+    }
+
+    /**
+     * Sets the timestamp of the sample
+     *
+     * @param timestamp timestamp in millis
+     * @return the sample itself
+     */
+    public Sample timestamp(long timestamp) {
+        this.timestamp = timestamp;
+        return this;
+    }
+
+    /**
+     * Sets a numeric column. Values set on integer columns are truncated
+     *
+     * @param column the column index
+     * @param value  the value
+     * @return the sample itself
+     */
+    public Sample set(int column, float value) {
+        return set(column, (double) value);
+    }
+
+    /**
+     * Sets a numeric column. Values set on integer columns are truncated
+     *
+     * @param column the column index
+     * @param value  the value
+     * @return the sample itself
+     */
+    public Sample set(int column, double value) {
+        switch (schema.type(column)) {
+            case ColumnType.Float:
+            case ColumnType.Double:
+                reals[column] = value;
+                break;
+            case ColumnType.Int:
+            case ColumnType.Long:
+                integers[column] = (long) value;
+                break;
+            default:
+                throw new IllegalArgumentException("Column " + column + " is not numeric");
+        }
+        return this;
+    }
+
+    /**
+     * Sets a numeric column
+     *
+     * @param column the column index
+     * @param value  the value
+     * @return the sample itself
+     */
+    public Sample set(int column, int value) {
+        return set(column, (long) value);
+    }
+
+    /**
+     * Sets a numeric column
+     *
+     * @param column the column index
+     * @param value  the value
+     * @return the sample itself
+     */
+    public Sample set(int column, long value) {
+        switch (schema.type(column)) {
+            case ColumnType.Float:
+            case ColumnType.Double:
+                reals[column] = value;
+                break;
+            case ColumnType.Int:
+            case ColumnType.Long:
+                integers[column] = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Column " + column + " is not numeric");
+        }
+        return this;
+    }
+
+    /**
+     * Sets a text column
+     *
+     * @param column the column index
+     * @param value  the text, null is exported as json null
+     * @return the sample itself
+     */
+    public Sample set(int column, String value) {
+        if (schema.type(column) != ColumnType.Text)
+            throw new IllegalArgumentException("Column " + column + " is not text");
+        texts[column] = value;
+        return this;
+    }
+
+    public DataSchema schema() {
+        return schema;
+    }
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    double real(int column) {
+        return reals[column];
+    }
+
+    long integer(int column) {
+        return integers[column];
+    }
+
+    String text(int column) {
+        return texts[column];
+    }
+}
@@ -0,0 +1,65 @@
+package com.telenor.possumcore.storage;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Fixed block of samples in plain form, filled from the start. Used by CompressedSampleStore for
+ * the samples not yet compressed and for decompressing a block. Not thread safe.
+ */
+class SampleBlock extends SampleList {
+    private int size;
+
+    SampleBlock(int slots, @NonNull DataSchema schema) {
+        super(slots, schema);
+    }
+
+    @Override
+    public void add(long timestamp, @NonNull float[] sample) {
+        write(size++, timestamp, sample);
+    }
+
+    @Override
+    public void add(long timestamp, @NonNull double[] sample) {
+        write(size++, timestamp, sample);
+    }
+
+    @Override
+    public void add(@NonNull Sample sample) {
+        write(size++, sample);
+    }
+
+    @Override
+    public void addAll(@NonNull long[] timestamps, @NonNull float[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            write(size++, timestamps[i], values, i * columns());
+        }
+    }
+
+    boolean isFull() {
+        return size == limit();
+    }
+
+    void setSize(int size) {
+        this.size = size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (int slot = 0; slot < size; slot++) {
+            release(slot);
+        }
+        size = 0;
+    }
+
+    @Override
+    protected int slot(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return index;
+    }
+}
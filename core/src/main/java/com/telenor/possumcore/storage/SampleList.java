@@ -0,0 +1,479 @@
+package com.telenor.possumcore.storage;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.JsonArray;
+import com.telenor.possumcore.constants.ColumnType;
+import com.telenor.possumcore.interfaces.IDataSink;
+import com.telenor.possumcore.interfaces.IDropCounter;
+import com.telenor.possumcore.interfaces.IRangeQuery;
+import com.telenor.possumcore.interfaces.ISealable;
+
+import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base for typed dataSets. Timestamps and each column declared by the DataSchema are kept in
+ * parallel primitive arrays allocated once, indexed by slot, so adding a sample allocates
+ * nothing. Subclasses decide which slot a sample goes to and how producers and readers are kept
+ * apart.
+ * <p>
+ * The list interface is a read view: each entry is serialized to a jsonArray of strings when it
+ * is retrieved, matching the format detectors have always stored.
+ */
+public abstract class SampleList extends AbstractList<JsonArray> implements IDropCounter, IRangeQuery, ISealable {
+    private final DataSchema schema;
+    private long[] timestamps;
+    private final Object[] columns; // One primitive array pr column, typed by the schema
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean sealed;
+
+    /**
+     * Constructor allocating the slots of the list
+     *
+     * @param slots  number of samples that can be held - must be greater than 0 or it fails
+     * @param schema the columns each sample has
+     */
+    protected SampleList(int slots, @NonNull DataSchema schema) {
+        if (slots <= 0) throw new IllegalArgumentException("Minimum size is 1");
+        this.schema = schema;
+        timestamps = new long[slots];
+        columns = new Object[schema.columns()];
+        for (int column = 0; column < columns.length; column++) {
+            switch (schema.type(column)) {
+                case ColumnType.Float:
+                    columns[column] = new float[slots];
+                    break;
+                case ColumnType.Double:
+                    columns[column] = new double[slots];
+                    break;
+                case ColumnType.Int:
+                    columns[column] = new int[slots];
+                    break;
+                case ColumnType.Long:
+                    columns[column] = new long[slots];
+                    break;
+                default:
+                    columns[column] = new String[slots];
+            }
+        }
+    }
+
+    /**
+     * Adds a sample of float values. Values beyond the number of columns are ignored.
+     *
+     * @param timestamp the timestamp of the sample
+     * @param sample    the values of the sample, must have at least as many values as columns
+     */
+    public abstract void add(long timestamp, @NonNull float[] sample);
+
+    /**
+     * Adds a sample of double values. Values beyond the number of columns are ignored.
+     *
+     * @param timestamp the timestamp of the sample
+     * @param sample    the values of the sample, must have at least as many values as columns
+     */
+    public abstract void add(long timestamp, @NonNull double[] sample);
+
+    /**
+     * Adds a sample with mixed column types
+     *
+     * @param sample a sample made for this lists schema
+     */
+    public abstract void add(@NonNull Sample sample);
+
+    /**
+     * Adds a batch of float samples at once, like a burst of events from a sensor fifo. The
+     * values are laid out one sample after the other, one value pr column for each sample.
+     *
+     * @param timestamps the timestamps of the samples, at least count of them
+     * @param values     the values of the samples, at least count times columns of them
+     * @param count      number of samples to add
+     */
+    public abstract void addAll(@NonNull long[] timestamps, @NonNull float[] values, int count);
+
+    /**
+     * Finds the slot a given sample is stored in
+     *
+     * @param index position of the sample, 0 being the oldest
+     * @return the slot of the sample
+     */
+    protected abstract int slot(int index);
+
+    /**
+     * Timestamp of a given sample
+     *
+     * @param index position of the sample, 0 being the oldest
+     * @return the timestamp of the sample
+     */
+    public long timestamp(int index) {
+        return timestamps[slot(index)];
+    }
+
+    /**
+     * A numeric value of a given sample
+     *
+     * @param index  position of the sample, 0 being the oldest
+     * @param column which of the values of the sample
+     * @return the value stored
+     */
+    public double value(int index, int column) {
+        int slot = slot(index);
+        switch (schema.type(column)) {
+            case ColumnType.Float:
+                return ((float[]) columns[column])[slot];
+            case ColumnType.Double:
+                return ((double[]) columns[column])[slot];
+            case ColumnType.Int:
+                return ((int[]) columns[column])[slot];
+            case ColumnType.Long:
+                return ((long[]) columns[column])[slot];
+            default:
+                throw new IllegalArgumentException("Column " + column + " is not numeric");
+        }
+    }
+
+    /**
+     * A text value of a given sample
+     *
+     * @param index  position of the sample, 0 being the oldest
+     * @param column which of the values of the sample
+     * @return the text stored
+     */
+    public String text(int index, int column) {
+        if (schema.type(column) != ColumnType.Text)
+            throw new IllegalArgumentException("Column " + column + " is not text");
+        return ((String[]) columns[column])[slot(index)];
+    }
+
+    /**
+     * Finds the first sample at or after a given time by binary search. Samples are expected to
+     * be added in time order.
+     *
+     * @param timestamp the time to search for
+     * @return index of the first sample with a timestamp at or after it, size if there is none
+     */
+    public int indexAt(long timestamp) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamp(middle) < timestamp) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    @Override
+    public List<JsonArray> range(long from, long to) {
+        int first = indexAt(from);
+        int last = indexAt(to);
+        List<JsonArray> data = new ArrayList<>(Math.max(0, last - first));
+        for (int index = first; index < last; index++) {
+            data.add(get(index));
+        }
+        return data;
+    }
+
+    @Override
+    public JsonArray get(int index) {
+        int slot = slot(index);
+        JsonArray data = new JsonArray();
+        data.add(Long.toString(timestamps[slot]));
+        for (int column = 0; column < columns.length; column++) {
+            switch (schema.type(column)) {
+                case ColumnType.Float:
+                    data.add(Float.toString(((float[]) columns[column])[slot]));
+                    break;
+                case ColumnType.Double:
+                    data.add(Double.toString(((double[]) columns[column])[slot]));
+                    break;
+                case ColumnType.Int:
+                    data.add(Integer.toString(((int[]) columns[column])[slot]));
+                    break;
+                case ColumnType.Long:
+                    data.add(Long.toString(((long[]) columns[column])[slot]));
+                    break;
+                default:
+                    data.add(((String[]) columns[column])[slot]);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Streams a sample into a sink, straight from its columns without serializing it
+     *
+     * @param index position of the sample, 0 being the oldest
+     * @param sink  the sink receiving the sample
+     */
+    public void read(int index, @NonNull IDataSink sink) {
+        int slot = slot(index);
+        sink.begin(timestamps[slot]);
+        for (int column = 0; column < columns.length; column++) {
+            switch (schema.type(column)) {
+                case ColumnType.Float:
+                    sink.value(column, ((float[]) columns[column])[slot]);
+                    break;
+                case ColumnType.Double:
+                    sink.value(column, ((double[]) columns[column])[slot]);
+                    break;
+                case ColumnType.Int:
+                    sink.value(column, ((int[]) columns[column])[slot]);
+                    break;
+                case ColumnType.Long:
+                    sink.value(column, ((long[]) columns[column])[slot]);
+                    break;
+                default:
+                    sink.text(column, ((String[]) columns[column])[slot]);
+            }
+        }
+        sink.end();
+    }
+
+    /**
+     * Streams all samples into a sink, oldest first
+     *
+     * @param sink the sink receiving the samples
+     * @return number of samples streamed
+     */
+    public int readAll(@NonNull IDataSink sink) {
+        int size = size();
+        for (int index = 0; index < size; index++) {
+            read(index, sink);
+        }
+        return size;
+    }
+
+    /**
+     * The schema describing the columns of each sample
+     *
+     * @return the schema
+     */
+    public DataSchema schema() {
+        return schema;
+    }
+
+    /**
+     * Number of values each sample has
+     *
+     * @return the number of columns
+     */
+    public int columns() {
+        return columns.length;
+    }
+
+    /**
+     * Number of samples there is room for without growing
+     *
+     * @return the capacity
+     */
+    public int limit() {
+        return timestamps.length;
+    }
+
+    @Override
+    public long dropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void seal() {
+        sealed = true;
+    }
+
+    /**
+     * Confirms whether the list has been sealed, subclasses must ignore samples added after this
+     *
+     * @return true if sealed, false if not
+     */
+    protected boolean isSealed() {
+        return sealed;
+    }
+
+    /**
+     * Counts a sample lost because the list was full
+     */
+    protected void drop() {
+        dropped.incrementAndGet();
+    }
+
+    /**
+     * Counts a number of samples lost because the list was full
+     *
+     * @param samples number of samples lost
+     */
+    protected void drop(int samples) {
+        dropped.addAndGet(samples);
+    }
+
+    protected void write(int slot, long timestamp, @NonNull float[] sample) {
+        write(slot, timestamp, sample, 0);
+    }
+
+    protected void write(int slot, long timestamp, @NonNull float[] values, int offset) {
+        timestamps[slot] = timestamp;
+        for (int column = 0; column < columns.length; column++) {
+            putReal(slot, column, values[offset + column]);
+        }
+    }
+
+    protected void write(int slot, long timestamp, @NonNull double[] sample) {
+        timestamps[slot] = timestamp;
+        for (int column = 0; column < columns.length; column++) {
+            putReal(slot, column, sample[column]);
+        }
+    }
+
+    protected void write(int slot, @NonNull Sample sample) {
+        timestamps[slot] = sample.timestamp();
+        for (int column = 0; column < columns.length; column++) {
+            switch (schema.type(column)) {
+                case ColumnType.Float:
+                case ColumnType.Double:
+                    putReal(slot, column, sample.real(column));
+                    break;
+                case ColumnType.Int:
+                    ((int[]) columns[column])[slot] = (int) sample.integer(column);
+                    break;
+                case ColumnType.Long:
+                    ((long[]) columns[column])[slot] = sample.integer(column);
+                    break;
+                default:
+                    ((String[]) columns[column])[slot] = sample.text(column);
+            }
+        }
+    }
+
+    protected long timestampAt(int slot) {
+        return timestamps[slot];
+    }
+
+    protected void setTimestampAt(int slot, long timestamp) {
+        timestamps[slot] = timestamp;
+    }
+
+    /**
+     * Raw value of a Float or Double column, floats are widened without loss
+     *
+     * @param slot   the slot of the sample
+     * @param column the column index
+     * @return the value stored
+     */
+    protected double realAt(int slot, int column) {
+        if (schema.type(column) == ColumnType.Float) return ((float[]) columns[column])[slot];
+        return ((double[]) columns[column])[slot];
+    }
+
+    protected void setRealAt(int slot, int column, double value) {
+        putReal(slot, column, value);
+    }
+
+    /**
+     * Raw value of an Int or Long column
+     *
+     * @param slot   the slot of the sample
+     * @param column the column index
+     * @return the value stored
+     */
+    protected long integerAt(int slot, int column) {
+        if (schema.type(column) == ColumnType.Int) return ((int[]) columns[column])[slot];
+        return ((long[]) columns[column])[slot];
+    }
+
+    protected void setIntegerAt(int slot, int column, long value) {
+        if (schema.type(column) == ColumnType.Int) ((int[]) columns[column])[slot] = (int) value;
+        else ((long[]) columns[column])[slot] = value;
+    }
+
+    protected String textAt(int slot, int column) {
+        return ((String[]) columns[column])[slot];
+    }
+
+    protected void setTextAt(int slot, int column, String text) {
+        ((String[]) columns[column])[slot] = text;
+    }
+
+    /**
+     * Releases the references held by a slot no longer in use, so texts can be collected
+     *
+     * @param slot the slot to release
+     */
+    protected void release(int slot) {
+        for (Object column : columns) {
+            if (column instanceof String[]) ((String[]) column)[slot] = null;
+        }
+    }
+
+    /**
+     * Estimates the memory used by the sample in a slot
+     *
+     * @param slot the slot of the sample
+     * @return estimated bytes used
+     */
+    protected long bytes(int slot) {
+        long bytes = 8; // Timestamp
+        for (int column = 0; column < columns.length; column++) {
+            switch (schema.type(column)) {
+                case ColumnType.Float:
+                case ColumnType.Int:
+                    bytes += 4;
+                    break;
+                case ColumnType.Double:
+                case ColumnType.Long:
+                    bytes += 8;
+                    break;
+                default:
+                    String text = ((String[]) columns[column])[slot];
+                    bytes += 4 + (text == null ? 0 : 40 + 2 * text.length()); // Reference and string
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Moves the samples into new arrays with a different number of slots. The samples end up in
+     * order from slot 0.
+     *
+     * @param slots new number of slots
+     * @param first slot of the oldest sample
+     * @param count number of samples to keep, must fit in the new slots
+     */
+    protected void resize(int slots, int first, int count) {
+        timestamps = (long[]) moved(timestamps, slots, first, count);
+        for (int column = 0; column < columns.length; column++) {
+            columns[column] = moved(columns[column], slots, first, count);
+        }
+    }
+
+    private static Object moved(Object source, int slots, int first, int count) {
+        int length = Array.getLength(source);
+        Object target = Array.newInstance(source.getClass().getComponentType(), slots);
+        int untilEnd = Math.min(count, length - first);
+        System.arraycopy(source, first, target, 0, untilEnd);
+        System.arraycopy(source, 0, target, untilEnd, count - untilEnd);
+        return target;
+    }
+
+    private void putReal(int slot, int column, double value) {
+        switch (schema.type(column)) {
+            case ColumnType.Float:
+                ((float[]) columns[column])[slot] = (float) value;
+                break;
+            case ColumnType.Double:
+                ((double[]) columns[column])[slot] = value;
+                break;
+            case ColumnType.Int:
+                ((int[]) columns[column])[slot] = (int) value;
+                break;
+            case ColumnType.Long:
+                ((long[]) columns[column])[slot] = (long) value;
+                break;
+            default:
+                throw new IllegalArgumentException("Column " + column + " is not numeric");
+        }
+    }
+}
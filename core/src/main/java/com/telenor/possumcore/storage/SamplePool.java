@@ -0,0 +1,81 @@
+package com.telenor.possumcore.storage;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock free pool of samples for one schema. Producers borrow a sample, fill it in, stream it and
+ * hand it back, so callbacks arriving on several threads neither share a sample behind a lock
+ * nor allocate one pr event. A sample can be handed back as soon as it is streamed, since the
+ * dataSet copies its values. When every pooled sample is borrowed a new one is made, and kept
+ * when handed back if there is room for it.
+ */
+public class SamplePool {
+    private final DataSchema schema;
+    private final AtomicReferenceArray<Sample> samples;
+
+    /**
+     * Constructor filling the pool
+     *
+     * @param schema the schema of the samples
+     * @param size   number of samples kept - must be greater than 0 or it fails
+     */
+    public SamplePool(@NonNull DataSchema schema, int size) {
+        if (size <= 0) throw new IllegalArgumentException("Minimum size is 1");
+        this.schema = schema;
+        samples = new AtomicReferenceArray<>(size);
+        for (int i = 0; i < size; i++) {
+            samples.set(i, new Sample(schema));
+        }
+    }
+
+    /**
+     * Borrows a sample from the pool
+     *
+     * @return a sample for the schema of the pool, holding the values it was last given
+     */
+    public Sample acquire() {
+        for (int i = 0; i < samples.length(); i++) {
+            if (samples.get(i) == null) continue;
+            Sample sample = samples.getAndSet(i, null);
+            if (sample != null) return sample;
+        }
+        return new Sample(schema);
+    }
+
+    /**
+     * Hands a sample back to the pool. It must not be used after this.
+     *
+     * @param sample a sample for the schema of the pool
+     */
+    public void release(@NonNull Sample sample) {
+        if (sample.schema() != schema)
+            throw new IllegalArgumentException("Sample does not belong to the schema of the pool");
+        for (int i = 0; i < samples.length(); i++) {
+            if (samples.get(i) == null && samples.compareAndSet(i, null, sample)) return;
+        }
+    }
+
+    /**
+     * Number of samples waiting in the pool
+     *
+     * @return the samples not borrowed
+     */
+    public int available() {
+        int available = 0;
+        for (int i = 0; i < samples.length(); i++) {
+            if (samples.get(i) != null) available++;
+        }
+        return available;
+    }
+
+    /**
+     * The schema of the samples in the pool
+     *
+     * @return the schema
+     */
+    public DataSchema schema() {
+        return schema;
+    }
+}
@@ -0,0 +1,214 @@
+package com.telenor.possumcore.storage;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.JsonArray;
+import com.telenor.possumcore.interfaces.IDataSink;
+import com.telenor.possumcore.interfaces.IMemoryBound;
+
+import java.util.List;
+
+/**
+ * Circular FIFO for typed samples, removing the oldest samples when a new comes in and the
+ * RetentionPolicy is no longer met, thereby conserving the most recent samples added. Removed
+ * samples are counted as dropped. A buffer bound by entries is allocated once, otherwise it grows
+ * as needed. Producers and readers share a lock, see SpscSampleQueue for a lock free alternative.
+ */
+public class SampleRingBuffer extends SampleList implements IMemoryBound {
+    private final RetentionPolicy policy;
+    private int head; // Position the next sample is written to
+    private int size;
+    private long bytesUsed;
+
+    /**
+     * Constructor for a buffer where all columns are floats
+     *
+     * @param limit   the capacity - must be greater than 0 or it fails
+     * @param columns number of values stored per sample - must be greater than 0 or it fails
+     */
+    public SampleRingBuffer(int limit, int columns) {
+        this(limit, DataSchema.floats(columns));
+    }
+
+    /**
+     * Constructor defining the capacity of the buffer and the columns of each sample
+     *
+     * @param limit  the capacity - must be greater than 0 or it fails
+     * @param schema the columns each sample has
+     */
+    public SampleRingBuffer(int limit, @NonNull DataSchema schema) {
+        this(RetentionPolicy.entries(limit), schema);
+    }
+
+    /**
+     * Constructor defining how much the buffer keeps and the columns of each sample
+     *
+     * @param policy the retention policy deciding when samples are removed
+     * @param schema the columns each sample has
+     */
+    public SampleRingBuffer(@NonNull RetentionPolicy policy, @NonNull DataSchema schema) {
+        super(policy.initialCapacity(), schema);
+        this.policy = policy;
+    }
+
+    @Override
+    public synchronized void add(long timestamp, @NonNull float[] sample) {
+        if (isSealed()) return;
+        int slot = claim();
+        write(slot, timestamp, sample);
+        retain(slot, timestamp);
+    }
+
+    @Override
+    public synchronized void add(long timestamp, @NonNull double[] sample) {
+        if (isSealed()) return;
+        int slot = claim();
+        write(slot, timestamp, sample);
+        retain(slot, timestamp);
+    }
+
+    @Override
+    public synchronized void add(@NonNull Sample sample) {
+        if (isSealed()) return;
+        int slot = claim();
+        write(slot, sample);
+        retain(slot, sample.timestamp());
+    }
+
+    @Override
+    public synchronized void addAll(@NonNull long[] timestamps, @NonNull float[] values, int count) {
+        if (isSealed()) return;
+        int columns = columns();
+        for (int i = 0; i < count; i++) {
+            int slot = claim();
+            write(slot, timestamps[i], values, i * columns);
+            retain(slot, timestamps[i]);
+        }
+    }
+
+    private int claim() {
+        if (size == limit()) {
+            if (size >= policy.maxEntries()) removeOldest();
+            else grow();
+        }
+        int slot = head;
+        head = (head + 1) % limit();
+        size++;
+        return slot;
+    }
+
+    private void grow() {
+        int slots = (int) Math.min((long) limit() * 2, policy.maxEntries());
+        resize(slots, oldestSlot(), size);
+        head = size;
+    }
+
+    private void retain(int slot, long newest) {
+        bytesUsed += bytes(slot);
+        while (size > 1 && policy.exceeds(size, super.timestamp(0), newest, bytesUsed)) {
+            removeOldest();
+        }
+    }
+
+    private void removeOldest() {
+        int oldest = oldestSlot();
+        bytesUsed -= bytes(oldest);
+        release(oldest);
+        size--;
+        drop();
+    }
+
+    private int oldestSlot() {
+        return (head - size + limit()) % limit();
+    }
+
+    @Override
+    public synchronized long bytesUsed() {
+        return bytesUsed;
+    }
+
+    @Override
+    public synchronized long trimTo(long bytes) {
+        long before = bytesUsed;
+        while (size > 0 && bytesUsed > bytes) {
+            removeOldest();
+        }
+        return before - bytesUsed;
+    }
+
+    /**
+     * The policy deciding how much the buffer keeps
+     *
+     * @return the retention policy
+     */
+    public RetentionPolicy policy() {
+        return policy;
+    }
+
+    @Override
+    public synchronized long timestamp(int index) {
+        return super.timestamp(index);
+    }
+
+    @Override
+    public synchronized double value(int index, int column) {
+        return super.value(index, column);
+    }
+
+    @Override
+    public synchronized String text(int index, int column) {
+        return super.text(index, column);
+    }
+
+    @Override
+    public synchronized int indexAt(long timestamp) {
+        return super.indexAt(timestamp);
+    }
+
+    @Override
+    public synchronized List<JsonArray> range(long from, long to) {
+        return super.range(from, to);
+    }
+
+    @Override
+    public synchronized JsonArray get(int index) {
+        return super.get(index);
+    }
+
+    @Override
+    public synchronized void read(int index, @NonNull IDataSink sink) {
+        super.read(index, sink);
+    }
+
+    @Override
+    public synchronized int readAll(@NonNull IDataSink sink) {
+        return super.readAll(sink);
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void seal() {
+        super.seal();
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (int slot = 0; slot < limit(); slot++) {
+            release(slot);
+        }
+        head = 0;
+        size = 0;
+        bytesUsed = 0;
+    }
+
+    @Override
+    protected int slot(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return (head - size + index + limit()) % limit();
+    }
+}
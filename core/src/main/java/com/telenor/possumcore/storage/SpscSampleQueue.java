@@ -0,0 +1,129 @@
+package com.telenor.possumcore.storage;
+
+import android.support.annotation.NonNull;
+
+import com.telenor.possumcore.interfaces.IMemoryBound;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock free bounded queue for typed samples, handing samples from one producing thread to one
+ * reading thread. The producer never waits for the reader: when the queue is full new samples
+ * are dropped and counted until the reader clears it, unlike SampleRingBuffer which removes the
+ * oldest sample.
+ * <p>
+ * Only one thread may add at a time, producers on different threads must synchronize between
+ * them. Only one thread may read and clear.
+ */
+public class SpscSampleQueue extends SampleList implements IMemoryBound {
+    private final AtomicLong head = new AtomicLong(); // Samples consumed, moved by the reader
+    private final AtomicLong tail = new AtomicLong(); // Samples published, moved by the producer
+
+    /**
+     * Constructor defining the capacity of the queue and the columns of each sample
+     *
+     * @param limit  the capacity - must be greater than 0 or it fails
+     * @param schema the columns each sample has
+     */
+    public SpscSampleQueue(int limit, @NonNull DataSchema schema) {
+        super(limit, schema);
+    }
+
+    @Override
+    public void add(long timestamp, @NonNull float[] sample) {
+        long next = tail.get();
+        if (isRejected(next)) return;
+        write(slotOf(next), timestamp, sample);
+        tail.lazySet(next + 1);
+    }
+
+    @Override
+    public void add(long timestamp, @NonNull double[] sample) {
+        long next = tail.get();
+        if (isRejected(next)) return;
+        write(slotOf(next), timestamp, sample);
+        tail.lazySet(next + 1);
+    }
+
+    @Override
+    public void add(@NonNull Sample sample) {
+        long next = tail.get();
+        if (isRejected(next)) return;
+        write(slotOf(next), sample);
+        tail.lazySet(next + 1);
+    }
+
+    @Override
+    public void addAll(@NonNull long[] timestamps, @NonNull float[] values, int count) {
+        if (isSealed()) return;
+        long next = tail.get();
+        int columns = columns();
+        for (int i = 0; i < count; i++) {
+            if (next - head.get() >= limit()) {
+                drop(count - i);
+                break;
+            }
+            write(slotOf(next++), timestamps[i], values, i * columns);
+        }
+        tail.lazySet(next);
+    }
+
+    private boolean isRejected(long next) {
+        if (isSealed()) return true;
+        if (next - head.get() < limit()) return false;
+        drop();
+        return true;
+    }
+
+    private int slotOf(long sequence) {
+        return (int) (sequence % limit());
+    }
+
+    @Override
+    public int size() {
+        long first = head.get();
+        return (int) (tail.get() - first);
+    }
+
+    @Override
+    public long bytesUsed() {
+        long first = head.get();
+        long last = tail.get();
+        long bytes = 0;
+        for (long sequence = first; sequence < last; sequence++) {
+            bytes += bytes(slotOf(sequence));
+        }
+        return bytes;
+    }
+
+    /**
+     * Only the reader may remove samples, so the queue is never trimmed. It is bounded by its
+     * limit instead.
+     *
+     * @param bytes estimated bytes the queue may keep
+     * @return always 0
+     */
+    @Override
+    public long trimTo(long bytes) {
+        return 0;
+    }
+
+    @Override
+    public void clear() {
+        long first = head.get();
+        long last = tail.get();
+        for (long sequence = first; sequence < last; sequence++) {
+            release(slotOf(sequence));
+        }
+        head.set(last);
+    }
+
+    @Override
+    protected int slot(int index) {
+        long first = head.get();
+        long size = tail.get() - first;
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return slotOf(first + index);
+    }
+}
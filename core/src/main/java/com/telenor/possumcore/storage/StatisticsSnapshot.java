@@ -0,0 +1,134 @@
+package com.telenor.possumcore.storage;
+
+/**
+ * The running statistics of a dataSet at one point in time. Columns without values, like text
+ * columns, have NaN for mean, min and max.
+ */
+public class StatisticsSnapshot {
+    private final long samples;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+    private final long[] counts;
+    private final double[] means;
+    private final double[] squares;
+    private final double[] minimums;
+    private final double[] maximums;
+
+    StatisticsSnapshot(long samples, long firstTimestamp, long lastTimestamp, long[] counts,
+                       double[] means, double[] squares, double[] minimums, double[] maximums) {
+        this.samples = samples;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.counts = counts;
+        this.means = means;
+        this.squares = squares;
+        this.minimums = minimums;
+        this.maximums = maximums;
+    }
+
+    /**
+     * Number of samples streamed
+     *
+     * @return number of samples
+     */
+    public long samples() {
+        return samples;
+    }
+
+    /**
+     * Timestamp of the first sample
+     *
+     * @return timestamp in millis, 0 if there are no samples
+     */
+    public long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    /**
+     * Timestamp of the last sample
+     *
+     * @return timestamp in millis, 0 if there are no samples
+     */
+    public long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Average rate of the samples between the first and the last
+     *
+     * @return samples pr second, 0 if there are too few samples to tell
+     */
+    public double rate() {
+        if (samples < 2 || lastTimestamp <= firstTimestamp) return 0;
+        return (samples - 1) * 1000.0 / (lastTimestamp - firstTimestamp);
+    }
+
+    /**
+     * Number of columns
+     *
+     * @return number of columns, not counting the timestamp
+     */
+    public int columns() {
+        return counts.length;
+    }
+
+    /**
+     * Number of values of a column, less than the samples if some were NaN
+     *
+     * @param column the column
+     * @return number of values
+     */
+    public long count(int column) {
+        return counts[column];
+    }
+
+    /**
+     * Mean of a column
+     *
+     * @param column the column
+     * @return the mean, NaN if there are no values
+     */
+    public double mean(int column) {
+        return counts[column] > 0 ? means[column] : Double.NaN;
+    }
+
+    /**
+     * Sample variance of a column
+     *
+     * @param column the column
+     * @return the variance, 0 if there are less than two values
+     */
+    public double variance(int column) {
+        return counts[column] > 1 ? squares[column] / (counts[column] - 1) : 0;
+    }
+
+    /**
+     * Standard deviation of a column
+     *
+     * @param column the column
+     * @return the standard deviation, 0 if there are less than two values
+     */
+    public double standardDeviation(int column) {
+        return Math.sqrt(variance(column));
+    }
+
+    /**
+     * Smallest value of a column
+     *
+     * @param column the column
+     * @return the minimum, NaN if there are no values
+     */
+    public double min(int column) {
+        return counts[column] > 0 ? minimums[column] : Double.NaN;
+    }
+
+    /**
+     * Largest value of a column
+     *
+     * @param column the column
+     * @return the maximum, NaN if there are no values
+     */
+    public double max(int column) {
+        return counts[column] > 0 ? maximums[column] : Double.NaN;
+    }
+}
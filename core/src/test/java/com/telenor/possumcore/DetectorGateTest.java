@@ -0,0 +1,63 @@
+package com.telenor.possumcore;
+
+import android.content.Intent;
+import android.os.Handler;
+
+import com.telenor.possumcore.constants.GateTrigger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Config(constants = BuildConfig.class)
+@RunWith(RobolectricTestRunner.class)
+public class DetectorGateTest {
+    private DetectorGate gate;
+    private List<Integer> triggered;
+
+    @Before
+    public void setUp() {
+        triggered = new ArrayList<>();
+        gate = new DetectorGate(RuntimeEnvironment.application, trigger -> triggered.add(trigger));
+    }
+
+    @Test
+    public void testScreenOnTriggers() {
+        gate.setTriggers(GateTrigger.ScreenOn);
+        gate.start(new Handler());
+        Assert.assertEquals(GateTrigger.ScreenOn, gate.started());
+        RuntimeEnvironment.application.sendBroadcast(new Intent(Intent.ACTION_SCREEN_OFF));
+        Assert.assertEquals(0, triggered.size());
+        RuntimeEnvironment.application.sendBroadcast(new Intent(Intent.ACTION_SCREEN_ON));
+        Assert.assertEquals(1, triggered.size());
+        Assert.assertEquals(GateTrigger.ScreenOn, (int) triggered.get(0));
+        gate.stop();
+        Assert.assertEquals(GateTrigger.None, gate.started());
+        RuntimeEnvironment.application.sendBroadcast(new Intent(Intent.ACTION_SCREEN_ON));
+        Assert.assertEquals(1, triggered.size());
+    }
+
+    @Test
+    public void testNoTriggersStartsNothing() {
+        gate.start(new Handler());
+        Assert.assertEquals(GateTrigger.None, gate.started());
+        RuntimeEnvironment.application.sendBroadcast(new Intent(Intent.ACTION_SCREEN_ON));
+        Assert.assertEquals(0, triggered.size());
+        gate.stop();
+    }
+
+    @Test
+    public void testSkipsMissingSensors() {
+        gate.setTriggers(GateTrigger.SignificantMotion | GateTrigger.StepDetected);
+        gate.start(new Handler());
+        Assert.assertEquals(GateTrigger.None, gate.started());
+        gate.stop();
+    }
+}
@@ -3,10 +3,18 @@ package com.telenor.possumcore;
 import android.Manifest;
 import android.app.Activity;
 import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
 
+import com.google.gson.JsonArray;
 import com.telenor.possumcore.abstractdetectors.AbstractDetector;
 import com.telenor.possumcore.constants.CoreStatus;
+import com.telenor.possumcore.constants.GateTrigger;
+import com.telenor.possumcore.constants.MemoryPriority;
 import com.telenor.possumcore.detectors.Accelerometer;
+import com.telenor.possumcore.detectors.GyroScope;
 import com.telenor.possumcore.detectors.ImageDetector;
 
 import org.junit.After;
@@ -14,6 +22,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -27,6 +36,7 @@ import org.robolectric.shadows.ShadowApplication;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -36,11 +46,13 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @Config(constants = BuildConfig.class)
 @RunWith(RobolectricTestRunner.class)
@@ -88,6 +100,17 @@ public class PossumCoreTest {
         verify(mockedAccelerometer, Mockito.times(1)).run();
     }
 
+    @Test
+    public void testSensorEventsOffMainThread() {
+        Assert.assertTrue(possumCore.startListening());
+        ArgumentCaptor<Handler> handlerCaptor = ArgumentCaptor.forClass(Handler.class);
+        verify(mockedAccelerometer).setSensorHandler(handlerCaptor.capture());
+        Looper looper = handlerCaptor.getValue().getLooper();
+        Assert.assertNotEquals(Looper.getMainLooper(), looper);
+        possumCore.stopListening();
+        verify(mockedAccelerometer).setSensorHandler(null);
+    }
+
     @Test
     public void testPermissions() {
         List<String> permissions = PossumCore.permissions();
@@ -269,6 +292,96 @@ public class PossumCoreTest {
         verify(mockedExecutorService, times(2)).submit(eq(mockedImageDetector));
     }
 
+    @Test
+    public void testGatesCostlyDetectors() throws Exception {
+        Field executorField = PossumCore.class.getDeclaredField("executorService");
+        executorField.setAccessible(true);
+        ExecutorService mockedExecutorService = mock(ExecutorService.class);
+        executorField.set(possumCore, mockedExecutorService);
+        when(mockedImageDetector.isCostly()).thenReturn(true);
+        possumCore.setGating(GateTrigger.ScreenOn, 1000);
+        Assert.assertTrue(possumCore.isGated());
+        Assert.assertTrue(possumCore.startListening());
+        verify(mockedExecutorService, times(1)).submit(eq(mockedAccelerometer));
+        verify(mockedExecutorService, never()).submit(eq(mockedImageDetector));
+        Assert.assertFalse(possumCore.isGateOpen());
+        RuntimeEnvironment.application.sendBroadcast(new Intent(Intent.ACTION_SCREEN_ON));
+        Assert.assertTrue(possumCore.isGateOpen());
+        verify(mockedExecutorService, times(1)).submit(eq(mockedImageDetector));
+        verify(mockedImageDetector, never()).terminate();
+        Robolectric.getForegroundThreadScheduler().advanceBy(1000, TimeUnit.MILLISECONDS);
+        Assert.assertFalse(possumCore.isGateOpen());
+        verify(mockedImageDetector, times(1)).terminate();
+        Assert.assertTrue(possumCore.isListening());
+        Assert.assertTrue(possumCore.openGate());
+        Assert.assertFalse(possumCore.openGate());
+        verify(mockedExecutorService, times(2)).submit(eq(mockedImageDetector));
+        verify(mockedExecutorService, times(1)).submit(eq(mockedAccelerometer));
+        possumCore.stopListening();
+        Assert.assertFalse(possumCore.isGateOpen());
+        Assert.assertFalse(possumCore.openGate());
+    }
+
+    @Test
+    public void testBurstsKeepEarlierData() throws Exception {
+        AbstractDetector costly = new AbstractDetector(RuntimeEnvironment.application, null) {
+            @Override
+            public void run() {
+                super.run();
+                streamData(new JsonArray()); // One sample each burst
+            }
+
+            @Override
+            public boolean isCostly() {
+                return true;
+            }
+
+            @Override
+            public int queueLimit(@NonNull String key) {
+                return 10;
+            }
+
+            @Override
+            public int detectorType() {
+                return 999;
+            }
+
+            @Override
+            public String detectorName() {
+                return "costly";
+            }
+        };
+        possumCore = new PossumCore(RuntimeEnvironment.application, "testId") {
+            @Override
+            protected void addAllDetectors(Context context) {
+                addDetector(costly);
+            }
+        };
+        Field executorField = PossumCore.class.getDeclaredField("executorService");
+        executorField.setAccessible(true);
+        ExecutorService directExecutor = mock(ExecutorService.class);
+        when(directExecutor.submit(any(Runnable.class))).thenAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        });
+        executorField.set(possumCore, directExecutor);
+        costly.run(); // Data left from an earlier session
+        possumCore.setGating(GateTrigger.ScreenOn, 1000);
+        Assert.assertTrue(possumCore.startListening());
+        Assert.assertEquals(0, costly.dataSize("default"));
+        Assert.assertTrue(possumCore.openGate());
+        Robolectric.getForegroundThreadScheduler().advanceBy(1000, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(possumCore.openGate());
+        Assert.assertEquals(2, costly.dataSize("default"));
+        possumCore.stopListening();
+        Assert.assertEquals(2, costly.dataSize("default"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGatingNeedsBurstDuration() {
+        possumCore.setGating(GateTrigger.ScreenOn, 0);
+    }
+
     @Test
     public void testStopListening() throws Exception {
         possumCore.startListening();
@@ -301,4 +414,72 @@ public class PossumCoreTest {
         timeout = (long) timeOutField.get(possumCore);
         Assert.assertEquals(100, timeout);
     }
-}
\ No newline at end of file
+
+    private static void storedBytes(AbstractDetector detector, long bytes, int priority) {
+        when(detector.jsonKeys()).thenReturn(new HashSet<>(Collections.singleton("default")));
+        when(detector.bytesUsed()).thenReturn(bytes);
+        when(detector.bytesUsed("default")).thenReturn(bytes);
+        when(detector.memoryPriority("default")).thenReturn(priority);
+        when(detector.trimDataSet(eq("default"), anyLong())).thenAnswer(invocation -> bytes - (long) invocation.getArgument(1));
+    }
+
+    @Test
+    public void testMemoryUsage() {
+        storedBytes(mockedAccelerometer, 1000, MemoryPriority.Normal);
+        storedBytes(mockedImageDetector, 400, MemoryPriority.Normal);
+        Assert.assertEquals(0, possumCore.memoryBudget());
+        Assert.assertEquals(1400, possumCore.memoryUsage());
+        Assert.assertEquals(0, possumCore.enforceMemoryBudget());
+        possumCore.setMemoryBudget(2000);
+        Assert.assertEquals(2000, possumCore.memoryBudget());
+        Assert.assertEquals(0, possumCore.enforceMemoryBudget());
+        verify(mockedAccelerometer, never()).trimDataSet(any(), anyLong());
+    }
+
+    @Test
+    public void testMemoryBudgetTrimsLowestPriorityFirst() {
+        storedBytes(mockedAccelerometer, 1000, MemoryPriority.Normal);
+        storedBytes(mockedImageDetector, 1000, MemoryPriority.Low);
+        possumCore.setMemoryBudget(1500);
+        Assert.assertEquals(500, possumCore.enforceMemoryBudget());
+        verify(mockedImageDetector).trimDataSet("default", 500);
+        verify(mockedAccelerometer, never()).trimDataSet(any(), anyLong());
+    }
+
+    @Test
+    public void testMemoryBudgetTrimsLargestOfSamePriority() {
+        storedBytes(mockedAccelerometer, 1000, MemoryPriority.Normal);
+        storedBytes(mockedImageDetector, 400, MemoryPriority.Normal);
+        possumCore.setMemoryBudget(1000);
+        Assert.assertEquals(400, possumCore.enforceMemoryBudget());
+        verify(mockedAccelerometer).trimDataSet("default", 600);
+        verify(mockedImageDetector, never()).trimDataSet(any(), anyLong());
+        possumCore.setMemoryBudget(600);
+        Assert.assertEquals(800, possumCore.enforceMemoryBudget());
+        verify(mockedAccelerometer).trimDataSet("default", 300);
+        verify(mockedImageDetector).trimDataSet("default", 300);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMemoryBudget() {
+        possumCore.setMemoryBudget(-1);
+    }
+
+    @Test
+    public void testAlignMotionSensors() {
+        GyroScope gyroScope = mock(GyroScope.class);
+        when(mockedAccelerometer.isEnabled()).thenReturn(true);
+        when(gyroScope.isEnabled()).thenReturn(true);
+        Assert.assertFalse(possumCore.alignMotionSensors(20, 100));
+        possumCore = new PossumCore(RuntimeEnvironment.application, "testId") {
+            @Override
+            protected void addAllDetectors(Context context) {
+                addDetector(mockedAccelerometer);
+                addDetector(gyroScope);
+            }
+        };
+        verify(mockedAccelerometer, never()).alignWith(any(), Mockito.anyInt(), Mockito.anyInt());
+        Assert.assertTrue(possumCore.alignMotionSensors(20, 100));
+        verify(mockedAccelerometer).alignWith(gyroScope, 20, 100);
+    }
+}
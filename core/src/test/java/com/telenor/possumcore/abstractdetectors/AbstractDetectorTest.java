@@ -4,7 +4,13 @@ import android.support.annotation.NonNull;
 
 import com.google.gson.JsonArray;
 import com.telenor.possumcore.TestUtils;
+import com.telenor.possumcore.constants.MemoryPriority;
 import com.telenor.possumcore.interfaces.IDetectorChange;
+import com.telenor.possumcore.storage.DataSchema;
+import com.telenor.possumcore.storage.JsonDataQueue;
+import com.telenor.possumcore.storage.JsonRecordWriter;
+import com.telenor.possumcore.storage.LockFreeQueue;
+import com.telenor.possumcore.storage.StatisticsSnapshot;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -17,6 +23,7 @@ import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowApplication;
 
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
@@ -221,7 +228,7 @@ public class AbstractDetectorTest {
     }
 
     @Test
-    public void testRunClearsDataButNotDataSets() throws Exception {
+    public void testClearDataKeepsDataSets() throws Exception {
         Field dataField = AbstractDetector.class.getDeclaredField("dataStored");
         dataField.setAccessible(true);
         Map<String, List<JsonArray>> data = (Map<String, List<JsonArray>>)dataField.get(abstractDetector);
@@ -232,6 +239,8 @@ public class AbstractDetectorTest {
         Assert.assertTrue(data.size() == 1);
         Assert.assertTrue(data.get("default").size() == 1);
         abstractDetector.run();
+        Assert.assertTrue(data.get("default").size() == 1); // Running again keeps the data
+        abstractDetector.clearData();
         data = (Map<String, List<JsonArray>>)dataField.get(abstractDetector);
         Assert.assertTrue(data.size() == 1);
         Assert.assertTrue(data.get("default").size() == 0);
@@ -280,4 +289,154 @@ public class AbstractDetectorTest {
     public void testCleanUpForCompletion() {
         abstractDetector.cleanUp();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testLockFreeDataSetCountsDrops() {
+        abstractDetector = new AbstractDetector(RuntimeEnvironment.application, detectorChange) {
+            @Override
+            public int queueLimit(@NonNull String key) {
+                return 2;
+            }
+
+            @Override
+            protected boolean isLockFree(@NonNull String dataSet) {
+                return true;
+            }
+
+            @Override
+            public int detectorType() {
+                return 999;
+            }
+
+            @Override
+            public String detectorName() {
+                return "abstractDetector";
+            }
+        };
+        Assert.assertTrue(abstractDetector.dataSet("default") instanceof LockFreeQueue);
+        for (int i = 0; i < 5; i++) {
+            abstractDetector.streamData(new JsonArray());
+        }
+        Assert.assertEquals(2, abstractDetector.dataSet("default").size());
+        Assert.assertEquals(3, abstractDetector.dropped("default"));
+        Assert.assertEquals(0, abstractDetector.dropped("unknown"));
+    }
+
+    @Test
+    public void testJsonDataSwapsOutDataSet() {
+        List<JsonArray> before = abstractDetector.dataSet("default");
+        JsonArray data = new JsonArray();
+        data.add("1");
+        abstractDetector.streamData(data);
+        abstractDetector.streamData(data);
+        JsonArray output = abstractDetector.jsonData("default");
+        Assert.assertEquals(2, output.size());
+        Assert.assertEquals("1", output.get(0).getAsJsonArray().get(0).getAsString());
+        Assert.assertNotSame(before, abstractDetector.dataSet("default"));
+        Assert.assertEquals(0, abstractDetector.dataSet("default").size());
+        before.add(data); // A producer still holding the old set is ignored
+        Assert.assertEquals(2, before.size());
+        Assert.assertEquals(0, abstractDetector.jsonData("unknown").size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotIsUnmodifiable() {
+        abstractDetector.streamData(new JsonArray());
+        List<JsonArray> snapshot = abstractDetector.snapshot("default");
+        Assert.assertEquals(1, snapshot.size());
+        snapshot.add(new JsonArray());
+    }
+
+    @Test
+    public void testDataRange() {
+        for (int i = 0; i < 5; i++) {
+            JsonArray data = new JsonArray();
+            data.add("" + (1000 + i * 10));
+            abstractDetector.streamData(data);
+        }
+        List<JsonArray> range = abstractDetector.dataRange("default", 1010, 1030);
+        Assert.assertEquals(2, range.size());
+        Assert.assertEquals("1010", range.get(0).get(0).getAsString());
+        Assert.assertEquals(5, abstractDetector.dataSet("default").size());
+        Assert.assertEquals(0, abstractDetector.dataRange("unknown", 0, 2000).size());
+    }
+
+    @Test
+    public void testBytesUsedAndTrimDataSet() {
+        JsonArray data = new JsonArray();
+        data.add("1000");
+        long bytes = JsonDataQueue.estimateBytes(data);
+        for (int i = 0; i < 5; i++) {
+            JsonArray entry = new JsonArray();
+            entry.add("" + (1000 + i));
+            abstractDetector.streamData(entry);
+        }
+        Assert.assertEquals(bytes * 5, abstractDetector.bytesUsed("default"));
+        Assert.assertEquals(bytes * 5, abstractDetector.bytesUsed());
+        Assert.assertEquals(0, abstractDetector.bytesUsed("unknown"));
+        Assert.assertEquals(bytes * 3, abstractDetector.trimDataSet("default", bytes * 2));
+        Assert.assertEquals(2, abstractDetector.dataSet("default").size());
+        Assert.assertEquals(3, abstractDetector.dropped("default"));
+        Assert.assertEquals(0, abstractDetector.trimDataSet("unknown", 0));
+        Assert.assertEquals(MemoryPriority.Normal, abstractDetector.memoryPriority("default"));
+    }
+
+    @Test
+    public void testStatisticsSurviveRetrieval() {
+        abstractDetector = new AbstractDetector(RuntimeEnvironment.application, detectorChange) {
+            @Override
+            public int queueLimit(@NonNull String key) {
+                return 2;
+            }
+
+            @Override
+            protected DataSchema dataSchema(@NonNull String dataSet) {
+                return DataSchema.floats(3);
+            }
+
+            @Override
+            public int detectorType() {
+                return 999;
+            }
+
+            @Override
+            public String detectorName() {
+                return "abstractDetector";
+            }
+        };
+        for (int i = 0; i < 5; i++) {
+            abstractDetector.streamSample(1000 + i * 10, i, -i, 1);
+        }
+        abstractDetector.jsonData("default");
+        StatisticsSnapshot statistics = abstractDetector.statistics("default");
+        Assert.assertEquals(5, statistics.samples());
+        Assert.assertEquals(2, statistics.mean(0), 0);
+        Assert.assertEquals(-4, statistics.min(1), 0);
+        Assert.assertEquals(0, statistics.variance(2), 0);
+        Assert.assertEquals(100, statistics.rate(), 0);
+        Assert.assertNull(abstractDetector.statistics("unknown"));
+        abstractDetector.run();
+        Assert.assertEquals(5, abstractDetector.statistics("default").samples());
+        abstractDetector.clearData();
+        Assert.assertEquals(0, abstractDetector.statistics("default").samples());
+    }
+
+    @Test
+    public void testDrainDataStreamsAndTakesOutDataSet() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            JsonArray data = new JsonArray();
+            data.add("" + (1000 + i));
+            data.add("value" + i);
+            abstractDetector.streamData(data);
+        }
+        Assert.assertEquals(3, abstractDetector.dataSize("default"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonRecordWriter writer = new JsonRecordWriter(out, "\n");
+        Assert.assertEquals(3, abstractDetector.drainData("default", writer));
+        writer.flush();
+        Assert.assertEquals("[\"1000\",\"value0\"]\n[\"1001\",\"value1\"]\n[\"1002\",\"value2\"]\n", out.toString("UTF-8"));
+        Assert.assertEquals(0, abstractDetector.dataSize("default"));
+        Assert.assertEquals(0, abstractDetector.drainData("unknown", writer));
+        Assert.assertEquals(0, abstractDetector.dataSize("unknown"));
+    }
+}
@@ -6,11 +6,20 @@ import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 
+import com.google.gson.JsonArray;
 import com.telenor.possumcore.BuildConfig;
 import com.telenor.possumcore.TestUtils;
+import com.telenor.possumcore.clock.VirtualClock;
+import com.telenor.possumcore.constants.MotionLevel;
+import com.telenor.possumcore.filters.Decimator;
+import com.telenor.possumcore.filters.FilterPipeline;
+import com.telenor.possumcore.filters.GravityFilter;
 import com.telenor.possumcore.interfaces.IDetectorChange;
+import com.telenor.possumcore.motion.SamplingRateController;
 
 import org.joda.time.DateTime;
 import org.junit.After;
@@ -31,6 +40,9 @@ import java.lang.reflect.Field;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -186,9 +198,244 @@ public class AbstractSensorDetectorTest {
                 return "test";
             }
         };
-        verify(mockedSensorManager, times(0)).registerListener(any(SensorEventListener.class), any(Sensor.class), anyInt());
+        verify(mockedSensorManager, times(0)).registerListener(any(SensorEventListener.class), any(Sensor.class), anyInt(), nullable(Handler.class));
         abstractSensorDetector.run();
-        verify(mockedSensorManager, times(1)).registerListener(any(SensorEventListener.class), any(Sensor.class), anyInt());
+        verify(mockedSensorManager, times(1)).registerListener(any(SensorEventListener.class), any(Sensor.class), anyInt(), nullable(Handler.class));
+    }
+
+    @Config(sdk = Build.VERSION_CODES.LOLLIPOP)
+    @Test
+    public void testBatchesEventsFromFifo() throws Exception {
+        abstractSensorDetector = new AbstractSensorDetector(mockedContext, Sensor.TYPE_ACCELEROMETER, detectorChange) {
+            @Override
+            public void onSensorChanged(SensorEvent sensorEvent) {
+                streamEvent(sensorEvent);
+            }
+
+            @Override
+            public int queueLimit(@NonNull String key) {
+                return 20;
+            }
+
+            @Override
+            public int detectorType() {
+                return 999;
+            }
+
+            @Override
+            public String detectorName() {
+                return "test";
+            }
+        };
+        when(mockedSensor.getFifoMaxEventCount()).thenReturn(300);
+        abstractSensorDetector.setMaxReportLatency(10000);
+        abstractSensorDetector.run();
+        Assert.assertTrue(abstractSensorDetector.isBatching());
+        verify(mockedSensorManager, times(1)).registerListener(any(SensorEventListener.class), any(Sensor.class), anyInt(), anyInt(), nullable(Handler.class));
+        long newest = SystemClock.elapsedRealtimeNanos();
+        for (int i = 9; i > 0; i--) {
+            abstractSensorDetector.onSensorChanged(TestUtils.createSensorEvent(mockedSensor, newest - i * 500000000L, 0, i, 0, 0));
+        }
+        Assert.assertEquals(0, abstractSensorDetector.dataSize(AbstractDetector.defaultSet));
+        abstractSensorDetector.onSensorChanged(TestUtils.createSensorEvent(mockedSensor, newest, 0, 0, 0, 0));
+        Assert.assertEquals(10, abstractSensorDetector.dataSize(AbstractDetector.defaultSet));
+        abstractSensorDetector.onSensorChanged(TestUtils.createSensorEvent(mockedSensor, newest - 200000000L, 0, 0, 0, 0));
+        abstractSensorDetector.terminate();
+        Assert.assertEquals(11, abstractSensorDetector.dataSize(AbstractDetector.defaultSet));
+    }
+
+    @Config(sdk = Build.VERSION_CODES.LOLLIPOP)
+    @Test
+    public void testNoBatchingWithoutFifo() {
+        when(mockedSensor.getFifoMaxEventCount()).thenReturn(0);
+        abstractSensorDetector = new AbstractSensorDetector(mockedContext, Sensor.TYPE_ACCELEROMETER, detectorChange) {
+            @Override
+            public void onSensorChanged(SensorEvent sensorEvent) {
+                streamEvent(sensorEvent);
+            }
+
+            @Override
+            public int queueLimit(@NonNull String key) {
+                return 20;
+            }
+
+            @Override
+            public int detectorType() {
+                return 999;
+            }
+
+            @Override
+            public String detectorName() {
+                return "test";
+            }
+        };
+        abstractSensorDetector.setMaxReportLatency(10000);
+        abstractSensorDetector.run();
+        Assert.assertFalse(abstractSensorDetector.isBatching());
+        verify(mockedSensorManager, times(1)).registerListener(any(SensorEventListener.class), any(Sensor.class), anyInt(), nullable(Handler.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeReportLatency() {
+        abstractSensorDetector.setMaxReportLatency(-1);
+    }
+
+    @Test
+    public void testRegistersOnSensorHandler() {
+        abstractSensorDetector = new AbstractSensorDetector(mockedContext, Sensor.TYPE_ACCELEROMETER, detectorChange) {
+            @Override
+            public void onSensorChanged(SensorEvent sensorEvent) {
+
+            }
+
+            @Override
+            public int queueLimit(@NonNull String key) {
+                return 20;
+            }
+
+            @Override
+            public int detectorType() {
+                return 999;
+            }
+
+            @Override
+            public String detectorName() {
+                return "test";
+            }
+        };
+        Handler handler = new Handler();
+        abstractSensorDetector.setSensorHandler(handler);
+        abstractSensorDetector.run();
+        verify(mockedSensorManager, times(1)).registerListener(any(SensorEventListener.class), any(Sensor.class), anyInt(), eq(handler));
+    }
+
+    @Test
+    public void testRateControllerChangesSamplingPeriod() throws Exception {
+        abstractSensorDetector = new AbstractSensorDetector(mockedContext, Sensor.TYPE_ACCELEROMETER, detectorChange) {
+            @Override
+            public void onSensorChanged(SensorEvent sensorEvent) {
+
+            }
+
+            @Override
+            public int queueLimit(@NonNull String key) {
+                return 20;
+            }
+
+            @Override
+            public int detectorType() {
+                return 999;
+            }
+
+            @Override
+            public String detectorName() {
+                return "test";
+            }
+        };
+        abstractSensorDetector.setRateController(new SamplingRateController(0.01f, 1f).setSettleTime(0));
+        abstractSensorDetector.run();
+        verify(mockedSensorManager, times(1)).registerListener(any(SensorEventListener.class), any(Sensor.class), eq(35000), nullable(Handler.class));
+        long timestamp = System.nanoTime();
+        Assert.assertFalse(abstractSensorDetector.isInvalid(TestUtils.createSensorEvent(mockedSensor, timestamp, 0, 0, 0, 9.81f)));
+        Assert.assertTrue(abstractSensorDetector.isInvalid(TestUtils.createSensorEvent(mockedSensor, timestamp + 10000000L, 0, 0, 0, 9.81f)));
+        Assert.assertEquals(MotionLevel.Still, abstractSensorDetector.rateController().level());
+        verify(mockedSensorManager, times(1)).unregisterListener(any(SensorEventListener.class), any(Sensor.class));
+        verify(mockedSensorManager, times(1)).registerListener(any(SensorEventListener.class), any(Sensor.class), eq(500000), nullable(Handler.class));
+    }
+
+    @Test
+    public void testNoRegisteringAfterTerminate() throws Exception {
+        abstractSensorDetector = streamingDetector();
+        abstractSensorDetector.setRateController(new SamplingRateController(0.01f, 1f).setSettleTime(0));
+        abstractSensorDetector.run();
+        abstractSensorDetector.terminate();
+        // Events still queued on the sensor thread, still enough to change the motion level
+        long timestamp = System.nanoTime();
+        abstractSensorDetector.onSensorChanged(TestUtils.createSensorEvent(mockedSensor, timestamp, 0, 0, 0, 9.81f));
+        abstractSensorDetector.onSensorChanged(TestUtils.createSensorEvent(mockedSensor, timestamp + 10000000L, 0, 0, 0, 9.81f));
+        Assert.assertEquals(MotionLevel.Still, abstractSensorDetector.rateController().level());
+        verify(mockedSensorManager, times(1)).registerListener(any(SensorEventListener.class), any(Sensor.class), anyInt(), nullable(Handler.class));
+        verify(mockedSensorManager, times(1)).unregisterListener(any(SensorEventListener.class), any(Sensor.class));
+    }
+
+    private AbstractSensorDetector streamingDetector() {
+        return new AbstractSensorDetector(mockedContext, Sensor.TYPE_ACCELEROMETER, detectorChange) {
+            @Override
+            public void onSensorChanged(SensorEvent sensorEvent) {
+                handleEvent(sensorEvent);
+            }
+
+            @Override
+            public int queueLimit(@NonNull String key) {
+                return 100;
+            }
+
+            @Override
+            public int detectorType() {
+                return 999;
+            }
+
+            @Override
+            public String detectorName() {
+                return "test";
+            }
+        };
+    }
+
+    @Test
+    public void testAlignsWithOtherSensor() throws Exception {
+        AbstractSensorDetector first = streamingDetector();
+        AbstractSensorDetector second = streamingDetector();
+        first.alignWith(second, 20, 100);
+        Assert.assertTrue(first.jsonKeys().contains(AbstractSensorDetector.alignedSet));
+        Assert.assertFalse(second.jsonKeys().contains(AbstractSensorDetector.alignedSet));
+        long start = System.nanoTime();
+        for (int i = 0; i < 50; i++) {
+            first.onSensorChanged(TestUtils.createSensorEvent(mockedSensor, start + i * 30000000L, 0, 1, 2, 3));
+            second.onSensorChanged(TestUtils.createSensorEvent(mockedSensor, start + i * 30000000L + 5000000L, 0, 4, 5, 6));
+        }
+        int aligned = first.dataSize(AbstractSensorDetector.alignedSet);
+        Assert.assertTrue("Aligned " + aligned, aligned >= 70);
+        JsonArray sample = first.dataSet(AbstractSensorDetector.alignedSet).get(10);
+        Assert.assertEquals(7, sample.size());
+        // Aligned on the event nanos, stored in epoch milliseconds like the default set
+        long firstStored = first.dataSet("default").get(0).get(0).getAsLong();
+        Assert.assertEquals(firstStored + 200, sample.get(0).getAsLong(), 20);
+        Assert.assertEquals(1, sample.get(1).getAsFloat(), 0);
+        Assert.assertEquals(6, sample.get(6).getAsFloat(), 0);
+    }
+
+    @Test
+    public void testStoresFilteredSamples() throws Exception {
+        AbstractSensorDetector detector = streamingDetector();
+        detector.setFilter(new FilterPipeline(new GravityFilter(3, 1000), new Decimator(3, 2)));
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            SensorEvent event = TestUtils.createSensorEvent(mockedSensor, start + i * 10000000L, 0, 0, 0, 9.81f);
+            Assert.assertFalse(detector.isInvalid(event));
+            detector.onSensorChanged(event);
+        }
+        Assert.assertEquals(5, detector.dataSize("default"));
+        Assert.assertEquals(0, detector.dataSet("default").get(4).get(3).getAsFloat(), 1e-4);
+        detector.setFilter(null);
+        Assert.assertNull(detector.filter());
+        detector.onSensorChanged(TestUtils.createSensorEvent(mockedSensor, start + 100000000L, 0, 0, 0, 9.81f));
+        Assert.assertEquals(9.81f, detector.dataSet("default").get(5).get(3).getAsFloat(), 0);
+    }
+
+    @Test
+    public void testFilterKeepsFixedSamplingPeriod() throws Exception {
+        AbstractSensorDetector detector = streamingDetector();
+        detector.setRateController(new SamplingRateController(0.01f, 1f).setSettleTime(0));
+        detector.setFilter(new Decimator(3, 2));
+        detector.run();
+        long timestamp = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            detector.onSensorChanged(TestUtils.createSensorEvent(mockedSensor, timestamp + i * 35000000L, 0, 0, 0, 9.81f));
+        }
+        verify(mockedSensorManager, times(1)).registerListener(any(SensorEventListener.class), any(Sensor.class), eq(35000), nullable(Handler.class));
+        verify(mockedSensorManager, never()).unregisterListener(any(SensorEventListener.class), any(Sensor.class));
+        Assert.assertEquals(5, detector.dataSize("default"));
     }
 
     @Test
@@ -253,6 +500,16 @@ public class AbstractSensorDetectorTest {
         Assert.assertTrue(timestamp < timestampOut);
     }
 
+    @Test
+    public void testTimestampFromClock() throws Exception {
+        VirtualClock clock = new VirtualClock(1500000000000L);
+        abstractSensorDetector.setClock(clock);
+        clock.advance(5000);
+        Assert.assertEquals(1500000005000L, abstractSensorDetector.now());
+        SensorEvent event = TestUtils.createSensorEvent(mockedSensor, 4980000000L, 0, 0.1f, 0.1f, 0.1f);
+        Assert.assertEquals(1500000004980L, abstractSensorDetector.timestamp(event));
+    }
+
     @Test
     public void testAccuracyChanged() throws Exception {
         Field accuracyField = AbstractSensorDetector.class.getDeclaredField("presentAccuracy");
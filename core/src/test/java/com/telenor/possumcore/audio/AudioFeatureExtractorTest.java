@@ -0,0 +1,92 @@
+package com.telenor.possumcore.audio;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class AudioFeatureExtractorTest {
+    @Test(expected = IllegalArgumentException.class)
+    public void testFrameMustBeWindowSize() {
+        new AudioFeatureExtractor(48000, (timestamp, features) -> {}).frameReady(0, new short[1024]);
+    }
+
+    @Test
+    public void testSendsTimestamp() {
+        List<Long> timestamps = new ArrayList<>();
+        AudioFeatureExtractor extractor = new AudioFeatureExtractor(48000, (timestamp, features) -> {
+            Assert.assertEquals(AudioFeatureExtractor.features, features.length);
+            timestamps.add(timestamp);
+        });
+        extractor.frameReady(42, new short[AudioFeatureExtractor.windowSize]);
+        Assert.assertEquals(1, timestamps.size());
+        Assert.assertEquals(42L, (long) timestamps.get(0));
+    }
+
+    @Test
+    public void testReusesFeatureArray() {
+        List<double[]> arrays = new ArrayList<>();
+        AudioFeatureExtractor extractor = new AudioFeatureExtractor(48000, (timestamp, features) -> arrays.add(features));
+        extractor.frameReady(0, noise(2048, 1));
+        extractor.frameReady(0, noise(2048, 2));
+        Assert.assertEquals(2, arrays.size());
+        for (double[] array : arrays) {
+            Assert.assertSame(arrays.get(0), array);
+        }
+    }
+
+    @Test
+    public void testBuffersDoNotLeakBetweenWindows() {
+        short[] first = noise(2048, 3);
+        short[] second = noise(2048, 4);
+        List<double[]> reused = new ArrayList<>();
+        AudioFeatureExtractor extractor = new AudioFeatureExtractor(48000, (timestamp, features) -> reused.add(features.clone()));
+        extractor.frameReady(0, first);
+        extractor.frameReady(0, new short[2048]);
+        extractor.frameReady(0, second);
+        List<double[]> fresh = new ArrayList<>();
+        new AudioFeatureExtractor(48000, (timestamp, features) -> fresh.add(features.clone())).frameReady(0, second);
+        Assert.assertArrayEquals(fresh.get(0), reused.get(2), 0);
+    }
+
+    @Test
+    public void testToneFeatures() {
+        // A tone at bin 64 of the 2048 window
+        short[] tone = new short[2048];
+        for (int i = 0; i < tone.length; i++) {
+            tone[i] = (short) Math.round(10000 * Math.sin(2 * Math.PI * 64 * i / 2048));
+        }
+        double[] result = new double[AudioFeatureExtractor.features];
+        new AudioFeatureExtractor(48000, (timestamp, features) ->
+                System.arraycopy(features, 0, result, 0, features.length)).frameReady(0, tone);
+        Assert.assertEquals(256.0 / 2048, result[13], 4.0 / 2048); // Two crossings pr period, each counting 2
+        Assert.assertEquals(10000 * 10000 / 2.0, result[14], 1e5); // Mean power of a sine
+        Assert.assertEquals(64, result[17], 0); // First half of the mirrored spectrum wins ties
+        for (double feature : result) {
+            Assert.assertFalse(Double.isInfinite(feature));
+        }
+    }
+
+    @Test
+    public void testSilence() {
+        double[] result = new double[AudioFeatureExtractor.features];
+        new AudioFeatureExtractor(48000, (timestamp, features) ->
+                System.arraycopy(features, 0, result, 0, features.length)).frameReady(0, new short[2048]);
+        Assert.assertEquals(0, result[13], 0);
+        Assert.assertEquals(0, result[14], 0);
+        for (int i = 18; i < AudioFeatureExtractor.features; i++) {
+            Assert.assertEquals(0, result[i], 0);
+        }
+    }
+
+    private static short[] noise(int size, long seed) {
+        Random random = new Random(seed);
+        short[] samples = new short[size];
+        for (int i = 0; i < size; i++) {
+            samples[i] = (short) random.nextInt(65536);
+        }
+        return samples;
+    }
+}
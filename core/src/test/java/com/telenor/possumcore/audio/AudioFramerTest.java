@@ -0,0 +1,85 @@
+package com.telenor.possumcore.audio;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class AudioFramerTest {
+    private List<Long> timestamps;
+    private List<short[]> frames;
+    private AudioFramer framer;
+
+    @Before
+    public void setUp() {
+        timestamps = new ArrayList<>();
+        frames = new ArrayList<>();
+        framer = new AudioFramer(4, 2, 1000, (timestamp, frame) -> {
+            timestamps.add(timestamp);
+            frames.add(frame.clone());
+        });
+        framer.start(100);
+    }
+
+    @Test
+    public void testKeepsSamplesAcrossPushes() {
+        Assert.assertEquals(0, framer.push(new short[]{0, 1, 2}, 3));
+        Assert.assertEquals(3, framer.pending());
+        Assert.assertEquals(2, framer.push(new short[]{3, 4, 5, 99}, 3));
+        Assert.assertEquals(1, framer.push(new short[]{6, 7, 8}, 3));
+        Assert.assertEquals(3, frames.size());
+        Assert.assertArrayEquals(new short[]{0, 1, 2, 3}, frames.get(0));
+        Assert.assertArrayEquals(new short[]{2, 3, 4, 5}, frames.get(1));
+        Assert.assertArrayEquals(new short[]{4, 5, 6, 7}, frames.get(2));
+        Assert.assertEquals(3, framer.pending());
+    }
+
+    @Test
+    public void testTimestampsFromSampleIndex() {
+        short[] samples = new short[10];
+        framer.push(samples, samples.length);
+        Assert.assertEquals(4, timestamps.size());
+        Assert.assertEquals(100L, (long) timestamps.get(0));
+        Assert.assertEquals(102L, (long) timestamps.get(1));
+        Assert.assertEquals(106L, (long) timestamps.get(3));
+    }
+
+    @Test
+    public void testFrameYieldIndependentOfReadSize() {
+        short[] samples = new short[7];
+        for (int i = 0; i < 100; i++) {
+            framer.push(samples, samples.length);
+        }
+        // 700 samples give a frame for every hop after the first full frame
+        Assert.assertEquals((700 - 4) / 2 + 1, frames.size());
+        Assert.assertEquals(100L + 696, (long) timestamps.get(frames.size() - 1));
+    }
+
+    @Test
+    public void testStartDropsPendingSamples() {
+        framer.push(new short[]{1, 2, 3}, 3);
+        framer.start(500);
+        Assert.assertEquals(0, framer.pending());
+        framer.push(new short[]{4, 5, 6, 7}, 4);
+        Assert.assertArrayEquals(new short[]{4, 5, 6, 7}, frames.get(0));
+        Assert.assertEquals(500L, (long) timestamps.get(0));
+    }
+
+    @Test
+    public void testIgnoresFailedReads() {
+        Assert.assertEquals(0, framer.push(new short[4], -3));
+        Assert.assertEquals(0, framer.pending());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHop() {
+        new AudioFramer(4, 5, 1000, (timestamp, frame) -> {});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSampleRate() {
+        new AudioFramer(4, 2, 0, (timestamp, frame) -> {});
+    }
+}
@@ -0,0 +1,99 @@
+package com.telenor.possumcore.audio;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class FastFourierTransformTest {
+    private static void assertMatchesDft(int size, long seed) {
+        FastFourierTransform transform = new FastFourierTransform(size);
+        Random random = new Random(seed);
+        double[] signal = new double[size];
+        for (int i = 0; i < size; i++) {
+            signal[i] = random.nextGaussian() * 1000;
+        }
+        double[] copy = signal.clone();
+        double[] real = new double[transform.bins()];
+        double[] imag = new double[transform.bins()];
+        transform.realForward(signal, real, imag);
+        Assert.assertArrayEquals(copy, signal, 0);
+        for (int k = 0; k < transform.bins(); k++) {
+            double expectedReal = 0;
+            double expectedImag = 0;
+            for (int n = 0; n < size; n++) {
+                expectedReal += signal[n] * Math.cos(2 * Math.PI * k * n / size);
+                expectedImag -= signal[n] * Math.sin(2 * Math.PI * k * n / size);
+            }
+            Assert.assertEquals("Real of bin " + k, expectedReal, real[k], 1e-6 * size);
+            Assert.assertEquals("Imaginary of bin " + k, expectedImag, imag[k], 1e-6 * size);
+        }
+    }
+
+    @Test
+    public void testMatchesDft() {
+        for (int size = 2; size <= 512; size <<= 1) {
+            assertMatchesDft(size, size);
+        }
+    }
+
+    @Test
+    public void testMagnitudesMirror() {
+        FastFourierTransform transform = new FastFourierTransform(64);
+        double[] signal = new double[64];
+        for (int i = 0; i < signal.length; i++) {
+            signal[i] = Math.cos(2 * Math.PI * 5 * i / 64.0);
+        }
+        double[] magnitudes = new double[64];
+        transform.magnitudes(signal, new double[33], new double[33], magnitudes);
+        Assert.assertEquals(32, magnitudes[5], 1e-9);
+        Assert.assertEquals(32, magnitudes[59], 1e-9);
+        Assert.assertEquals(0, magnitudes[6], 1e-9);
+        Assert.assertEquals(0, magnitudes[0], 1e-9);
+    }
+
+    @Test
+    public void testSharedBetweenThreads() throws Exception {
+        FastFourierTransform transform = new FastFourierTransform(2048);
+        double[] signal = new double[2048];
+        Random random = new Random(1);
+        for (int i = 0; i < signal.length; i++) {
+            signal[i] = random.nextInt(65536) - 32768;
+        }
+        double[] expected = new double[2048];
+        transform.magnitudes(signal, new double[1025], new double[1025], expected);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future[4];
+            for (int t = 0; t < futures.length; t++) {
+                futures[t] = executor.submit(() -> {
+                    double[] real = new double[1025];
+                    double[] imag = new double[1025];
+                    double[] magnitudes = new double[2048];
+                    for (int i = 0; i < 50; i++) {
+                        transform.magnitudes(signal, real, imag, magnitudes);
+                        Assert.assertArrayEquals(expected, magnitudes, 0);
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSizeMustBePowerOfTwo() {
+        new FastFourierTransform(1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutputMustHoldBins() {
+        new FastFourierTransform(8).realForward(new double[8], new double[4], new double[5]);
+    }
+}
@@ -0,0 +1,72 @@
+package com.telenor.possumcore.audio;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class MfccExtractorTest {
+    @Test
+    public void testConstantSignal() {
+        MfccExtractor extractor = new MfccExtractor(512, 16000, 133.3334, 8000, 23, 13);
+        Assert.assertEquals(23, extractor.filters());
+        Assert.assertEquals(13, extractor.cepstra());
+        double[] bins = new double[257];
+        Arrays.fill(bins, 1);
+        double[] energies = new double[23];
+        double[] cepstra = new double[13];
+        extractor.extract(bins, energies, cepstra);
+        // Each filter sums its bins, so the first coefficient is the sum of the log energies
+        double sum = 0;
+        for (double energy : energies) {
+            Assert.assertTrue(energy >= 0);
+            sum += energy;
+        }
+        Assert.assertEquals(sum, cepstra[0], 1e-9);
+    }
+
+    @Test
+    public void testSilenceIsFloored() {
+        MfccExtractor extractor = new MfccExtractor(512, 16000, 133.3334, 8000, 23, 13);
+        double[] energies = new double[23];
+        double[] cepstra = new double[13];
+        extractor.extract(new double[257], energies, cepstra);
+        for (double energy : energies) {
+            Assert.assertEquals(-50, energy, 0);
+        }
+        Assert.assertEquals(-50 * 23, cepstra[0], 1e-9);
+        for (int i = 1; i < cepstra.length; i++) {
+            Assert.assertEquals(0, cepstra[i], 1e-9);
+        }
+    }
+
+    @Test
+    public void testLoudnessOnlyMovesFirstCoefficient() {
+        MfccExtractor extractor = new MfccExtractor(512, 48000, 133.3334, 8000, 23, 13);
+        double[] bins = new double[257];
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] = 1 + (i * 37) % 11;
+        }
+        double[] quiet = new double[13];
+        extractor.extract(bins, new double[23], quiet);
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] *= 10;
+        }
+        double[] loud = new double[13];
+        extractor.extract(bins, new double[23], loud);
+        Assert.assertEquals(quiet[0] + 23 * Math.log(10), loud[0], 1e-9);
+        for (int i = 1; i < quiet.length; i++) {
+            Assert.assertEquals(quiet[i], loud[i], 1e-9);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooFewBins() {
+        new MfccExtractor(512, 16000, 133.3334, 8000, 23, 13).extract(new double[256], new double[23], new double[13]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMoreCepstraThanFilters() {
+        new MfccExtractor(512, 16000, 133.3334, 8000, 13, 23);
+    }
+}
@@ -0,0 +1,102 @@
+package com.telenor.possumcore.audio;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class PolyphaseDecimatorTest {
+    @Test
+    public void testKeepsConstantSignal() {
+        PolyphaseDecimator decimator = new PolyphaseDecimator(3, 32);
+        Assert.assertEquals(3, decimator.factor());
+        short[] input = new short[300];
+        Arrays.fill(input, (short) 1234);
+        short[] output = new short[decimator.outputSize(input.length)];
+        Assert.assertEquals(100, decimator.decimate(input, input.length, output));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(1234, output[i]);
+        }
+    }
+
+    @Test
+    public void testPassesLowTone() {
+        // 1 kHz at 48 kHz stays 1 kHz at 16 kHz
+        double amplitude = amplitude(tone(1000, 48000, 9600), 3);
+        Assert.assertEquals(10000, amplitude, 300);
+    }
+
+    @Test
+    public void testRemovesToneAboveNewNyquist() {
+        // 12 kHz would be folded down to 4 kHz by just dropping samples
+        double amplitude = amplitude(tone(12000, 48000, 9600), 3);
+        Assert.assertTrue("Amplitude " + amplitude, amplitude < 10);
+    }
+
+    @Test
+    public void testSameOutputForAnyReadSize() {
+        short[] input = tone(3000, 48000, 5000);
+        PolyphaseDecimator whole = new PolyphaseDecimator(3, 32);
+        short[] expected = new short[whole.outputSize(input.length)];
+        int size = whole.decimate(input, input.length, expected);
+        PolyphaseDecimator pieces = new PolyphaseDecimator(3, 32);
+        short[] read = new short[7];
+        short[] output = new short[pieces.outputSize(read.length)];
+        int kept = 0;
+        for (int start = 0; start < input.length; start += read.length) {
+            int length = Math.min(read.length, input.length - start);
+            System.arraycopy(input, start, read, 0, length);
+            int made = pieces.decimate(read, length, output);
+            for (int i = 0; i < made; i++) {
+                Assert.assertEquals(expected[kept++], output[i]);
+            }
+        }
+        Assert.assertEquals(size, kept);
+    }
+
+    @Test
+    public void testFactorOneCopies() {
+        PolyphaseDecimator decimator = new PolyphaseDecimator(1, 32);
+        short[] input = {1, -2, 3, Short.MAX_VALUE, Short.MIN_VALUE};
+        short[] output = new short[decimator.outputSize(input.length)];
+        Assert.assertEquals(5, decimator.decimate(input, input.length, output));
+        for (int i = 0; i < input.length; i++) {
+            Assert.assertEquals(input[i], output[i]);
+        }
+    }
+
+    @Test
+    public void testIgnoresFailedReads() {
+        PolyphaseDecimator decimator = new PolyphaseDecimator(3, 32);
+        Assert.assertEquals(0, decimator.decimate(new short[3], -3, new short[0]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutputTooSmall() {
+        new PolyphaseDecimator(3, 32).decimate(new short[30], 30, new short[10]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFactor() {
+        new PolyphaseDecimator(0, 32);
+    }
+
+    private static short[] tone(double frequency, double rate, int size) {
+        short[] samples = new short[size];
+        for (int i = 0; i < size; i++) {
+            samples[i] = (short) Math.round(10000 * Math.sin(2 * Math.PI * frequency * i / rate));
+        }
+        return samples;
+    }
+
+    private static double amplitude(short[] input, int factor) {
+        PolyphaseDecimator decimator = new PolyphaseDecimator(factor, 32);
+        short[] output = new short[decimator.outputSize(input.length)];
+        int size = decimator.decimate(input, input.length, output);
+        double max = 0;
+        for (int i = size / 2; i < size; i++) {
+            max = Math.max(max, Math.abs(output[i]));
+        }
+        return max;
+    }
+}
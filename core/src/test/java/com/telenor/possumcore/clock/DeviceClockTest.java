@@ -0,0 +1,43 @@
+package com.telenor.possumcore.clock;
+
+import android.content.Intent;
+
+import com.telenor.possumcore.BuildConfig;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowApplication;
+
+@Config(constants = BuildConfig.class)
+@RunWith(RobolectricTestRunner.class)
+public class DeviceClockTest {
+    @Test
+    public void testConvertsElapsedToEpoch() {
+        DeviceClock clock = new DeviceClock();
+        long before = System.currentTimeMillis();
+        long converted = clock.toEpochMillis(clock.elapsedNanos());
+        long after = System.currentTimeMillis();
+        Assert.assertTrue(converted >= before - 1 && converted <= after + 1);
+        Assert.assertEquals(1000, clock.toEpochMillis(clock.elapsedNanos() + 1000000000L) - converted, 1);
+    }
+
+    @Test
+    public void testNow() {
+        DeviceClock clock = new DeviceClock();
+        long before = System.currentTimeMillis();
+        long now = clock.now();
+        Assert.assertTrue(now >= before && now <= System.currentTimeMillis());
+    }
+
+    @Test
+    public void testSharedClockFollowsTimeChanges() {
+        DeviceClock.reset(); // Another test may have made the shared clock with the application of that test
+        DeviceClock clock = DeviceClock.instance(RuntimeEnvironment.application);
+        Assert.assertSame(clock, DeviceClock.instance(RuntimeEnvironment.application));
+        Assert.assertTrue(ShadowApplication.getInstance().hasReceiverForIntent(new Intent(Intent.ACTION_TIME_CHANGED)));
+    }
+}
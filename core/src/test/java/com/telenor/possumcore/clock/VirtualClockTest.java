@@ -0,0 +1,23 @@
+package com.telenor.possumcore.clock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VirtualClockTest {
+    @Test
+    public void testOnlyMovesWhenTold() {
+        VirtualClock clock = new VirtualClock(1500000000000L);
+        Assert.assertEquals(1500000000000L, clock.now());
+        Assert.assertEquals(0, clock.elapsedNanos());
+        clock.advance(20);
+        clock.advanceNanos(500000);
+        Assert.assertEquals(20500000L, clock.elapsedNanos());
+        Assert.assertEquals(1500000000020L, clock.now());
+        Assert.assertEquals(1500000001000L, clock.toEpochMillis(1000000000L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCannotMoveBackwards() {
+        new VirtualClock(0).advance(-1);
+    }
+}
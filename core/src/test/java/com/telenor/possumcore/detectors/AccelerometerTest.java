@@ -8,8 +8,13 @@ import android.os.SystemClock;
 import com.google.gson.JsonArray;
 import com.telenor.possumcore.BuildConfig;
 import com.telenor.possumcore.TestUtils;
+import com.telenor.possumcore.clock.DeviceClock;
+import com.telenor.possumcore.clock.VirtualClock;
 import com.telenor.possumcore.abstractdetectors.AbstractDetector;
+import com.telenor.possumcore.abstractdetectors.AbstractSensorDetector;
 import com.telenor.possumcore.constants.DetectorType;
+import com.telenor.possumcore.constants.MotionLevel;
+import com.telenor.possumcore.filters.Decimator;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -61,12 +66,14 @@ public class AccelerometerTest {
     @Test
     public void testOnSensorChanged() throws Exception {
         long presentTimestamp = System.currentTimeMillis();
-        long nanoTimestamp = SystemClock.elapsedRealtime()*1000;
+        accelerometer.setClock(new DeviceClock()); // Robolectric restarts the boot clock for each test
+        long nanoTimestamp = SystemClock.elapsedRealtime() * 1000000L;
         Field dataStoredField = AbstractDetector.class.getDeclaredField("dataStored");
         dataStoredField.setAccessible(true);
         Map<String, List<JsonArray>> dataStored = (Map<String, List<JsonArray>>)dataStoredField.get(accelerometer);
-        Assert.assertEquals(1, dataStored.size());
+        Assert.assertEquals(2, dataStored.size());
         Assert.assertEquals(0, dataStored.get("default").size());
+        Assert.assertEquals(0, dataStored.get(Accelerometer.gaitSet).size());
         accelerometer.onSensorChanged(TestUtils.createSensorEvent(mockedSensor, nanoTimestamp, 0, 1, 2, 3));
         accelerometer.onSensorChanged(TestUtils.createSensorEvent(mockedSensor, nanoTimestamp, 0, 1, 2, 3));
         dataStored = (Map<String, List<JsonArray>>)dataStoredField.get(accelerometer);
@@ -74,4 +81,64 @@ public class AccelerometerTest {
         JsonArray stored = dataStored.get("default").get(0);
         Assert.assertTrue(stored.get(0).getAsLong() >= presentTimestamp);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGaitFeatures() throws Exception {
+        VirtualClock clock = new VirtualClock(1500000000000L);
+        accelerometer.setClock(clock);
+        accelerometer.run();
+        long nanoTimestamp = 1000000000L;
+        int activeFrom = -1;
+        for (int i = 0; i < 300; i++) { // Walking with two steps a second, delivered every 20 ms
+            float step = (float) (2 * Math.sin(2 * Math.PI * i * 0.02 * 2));
+            accelerometer.onSensorChanged(TestUtils.createSensorEvent(mockedSensor, nanoTimestamp + i * 20000000L, 0, 0, 0, 9.81f + step));
+            if (activeFrom < 0 && accelerometer.rateController().level() == MotionLevel.Active) activeFrom = i;
+        }
+        Assert.assertTrue(activeFrom >= 0);
+        List<JsonArray> gait = accelerometer.dataStored().get(Accelerometer.gaitSet);
+        Assert.assertTrue(gait.size() >= 2);
+        // The window starts over at the faster rate, so no window mixes the two
+        Assert.assertTrue(gait.get(0).get(0).getAsLong() >= clock.toEpochMillis(nanoTimestamp + (activeFrom + 127) * 20000000L));
+        JsonArray last = gait.get(gait.size() - 1);
+        Assert.assertEquals(9, last.size());
+        Assert.assertEquals(120, last.get(6).getAsFloat(), 10); // Cadence, two steps a second
+    }
+
+    @Test
+    public void testAlignmentKeepsRateWhileStill() throws Exception {
+        SensorManager sensorManager = (SensorManager) RuntimeEnvironment.application.getSystemService(Context.SENSOR_SERVICE);
+        Shadows.shadowOf(sensorManager).addSensor(Sensor.TYPE_GYROSCOPE, mockedSensor);
+        Shadows.shadowOf(sensorManager).addSensor(Sensor.TYPE_GYROSCOPE_UNCALIBRATED, mockedSensor);
+        GyroScope gyroScope = new GyroScope(RuntimeEnvironment.application);
+        VirtualClock clock = new VirtualClock(1500000000000L);
+        accelerometer.setClock(clock);
+        gyroScope.setClock(clock);
+        accelerometer.alignWith(gyroScope, 20, 100); // As PossumCore.alignMotionSensors(20, 100) does
+        accelerometer.run();
+        gyroScope.run();
+        long nanoTimestamp = 1000000000L;
+        for (int i = 0; i < 250; i++) { // Five seconds lying still at 50 Hz
+            accelerometer.onSensorChanged(TestUtils.createSensorEvent(mockedSensor, nanoTimestamp + i * 20000000L, 0, 0, 0, 9.81f));
+            gyroScope.onSensorChanged(TestUtils.createSensorEvent(mockedSensor, nanoTimestamp + i * 20000000L + 3000000L, 0, 0, 0, 0));
+        }
+        Assert.assertEquals(MotionLevel.Still, accelerometer.rateController().level());
+        Assert.assertEquals(MotionLevel.Still, gyroScope.rateController().level());
+        int aligned = accelerometer.dataSize(AbstractSensorDetector.alignedSet);
+        // The last three seconds are kept, all of them after the sensors were still
+        Assert.assertTrue("Aligned " + aligned, aligned >= 145);
+        Assert.assertTrue(accelerometer.dataSize("default") < aligned / 2);
+    }
+
+    @Test
+    public void testFilterBypassesRateController() throws Exception {
+        accelerometer.setClock(new VirtualClock(1500000000000L));
+        accelerometer.setFilter(new Decimator(3, 2));
+        accelerometer.run();
+        long nanoTimestamp = 1000000000L;
+        for (int i = 0; i < 80; i++) { // 2.8 seconds lying still, long enough to slow the controller down
+            accelerometer.onSensorChanged(TestUtils.createSensorEvent(mockedSensor, nanoTimestamp + i * 35000000L, 0, 0, 0, 9.81f));
+        }
+        Assert.assertEquals(MotionLevel.Moving, accelerometer.rateController().level());
+        Assert.assertEquals(40, accelerometer.dataSize("default")); // Every other event of the fixed rate
+    }
+}
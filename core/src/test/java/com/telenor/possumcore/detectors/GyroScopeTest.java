@@ -8,6 +8,7 @@ import android.os.SystemClock;
 import com.google.gson.JsonArray;
 import com.telenor.possumcore.BuildConfig;
 import com.telenor.possumcore.TestUtils;
+import com.telenor.possumcore.clock.DeviceClock;
 import com.telenor.possumcore.abstractdetectors.AbstractDetector;
 import com.telenor.possumcore.constants.DetectorType;
 
@@ -61,7 +62,8 @@ public class GyroScopeTest {
     @Test
     public void testOnSensorChanged() throws Exception {
         long presentTimestamp = System.currentTimeMillis();
-        long nanoTimestamp = SystemClock.elapsedRealtime()*1000;
+        gyroScope.setClock(new DeviceClock()); // Robolectric restarts the boot clock for each test
+        long nanoTimestamp = SystemClock.elapsedRealtime() * 1000000L;
         Field dataStoredField = AbstractDetector.class.getDeclaredField("dataStored");
         dataStoredField.setAccessible(true);
         Map<String, List<JsonArray>> dataStored = (Map<String, List<JsonArray>>)dataStoredField.get(gyroScope);
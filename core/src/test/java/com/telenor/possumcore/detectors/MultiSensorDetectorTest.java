@@ -0,0 +1,135 @@
+package com.telenor.possumcore.detectors;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+
+import com.google.gson.JsonArray;
+import com.telenor.possumcore.BuildConfig;
+import com.telenor.possumcore.TestUtils;
+import com.telenor.possumcore.constants.DetectorType;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Config(constants = BuildConfig.class)
+@RunWith(RobolectricTestRunner.class)
+public class MultiSensorDetectorTest {
+    @Mock
+    private Context mockedContext;
+    @Mock
+    private SensorManager mockedSensorManager;
+    @Mock
+    private Sensor magnetometer;
+    @Mock
+    private Sensor pressure;
+
+    private MultiSensorDetector detector;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        TestUtils.initializeJodaTime();
+        when(mockedContext.getApplicationContext()).thenReturn(mockedContext);
+        when(mockedContext.getSystemService(Context.SENSOR_SERVICE)).thenReturn(mockedSensorManager);
+        when(magnetometer.getType()).thenReturn(Sensor.TYPE_MAGNETIC_FIELD);
+        when(pressure.getType()).thenReturn(Sensor.TYPE_PRESSURE);
+        when(mockedSensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD)).thenReturn(magnetometer);
+        when(mockedSensorManager.getDefaultSensor(Sensor.TYPE_PRESSURE)).thenReturn(pressure);
+        detector = new MultiSensorDetector(mockedContext);
+    }
+
+    @Test
+    public void testInitialize() {
+        Assert.assertEquals(DetectorType.MultiSensor, detector.detectorType());
+        Assert.assertEquals("multisensor", detector.detectorName());
+        Assert.assertTrue(detector.isEnabled());
+        Assert.assertTrue(detector.jsonKeys().contains("magnetometer"));
+        Assert.assertTrue(detector.jsonKeys().contains("pressure"));
+        Assert.assertFalse(detector.jsonKeys().contains("gravity"));
+    }
+
+    @Test
+    public void testNotEnabledWithoutSensors() {
+        when(mockedSensorManager.getDefaultSensor(anyInt())).thenReturn(null);
+        Assert.assertFalse(new MultiSensorDetector(mockedContext).isEnabled());
+    }
+
+    @Test
+    public void testRegistersEachSensorOnce() {
+        Handler handler = new Handler();
+        detector.setSensorHandler(handler);
+        detector.run();
+        verify(mockedSensorManager, times(1)).registerListener(any(SensorEventListener.class), eq(magnetometer), eq(35000), eq(handler));
+        verify(mockedSensorManager, times(1)).registerListener(any(SensorEventListener.class), eq(pressure), eq(200000), eq(handler));
+        detector.terminate();
+        verify(mockedSensorManager, times(1)).unregisterListener(detector);
+    }
+
+    @Test
+    public void testDispatchesBySensorType() throws Exception {
+        long nanoTimestamp = System.nanoTime();
+        detector.onSensorChanged(TestUtils.createSensorEvent(magnetometer, nanoTimestamp, 0, 20, -5, 40));
+        detector.onSensorChanged(TestUtils.createSensorEvent(magnetometer, nanoTimestamp + 1000000L, 0, 21, -5, 40));
+        detector.onSensorChanged(TestUtils.createSensorEvent(magnetometer, nanoTimestamp + 40000000L, 0, 22, -5, 40));
+        detector.onSensorChanged(TestUtils.createSensorEvent(pressure, nanoTimestamp, 0, 1013.25f, 0, 0));
+        detector.onSensorChanged(TestUtils.createSensorEvent(pressure, nanoTimestamp + 40000000L, 0, 1013.5f, 0, 0));
+        Assert.assertEquals(2, detector.dataSize("magnetometer"));
+        Assert.assertEquals(1, detector.dataSize("pressure"));
+        JsonArray magnetic = detector.dataStored().get("magnetometer").get(1);
+        Assert.assertEquals(4, magnetic.size());
+        Assert.assertEquals(22, magnetic.get(1).getAsFloat(), 0);
+        JsonArray air = detector.dataStored().get("pressure").get(0);
+        Assert.assertEquals(2, air.size());
+        Assert.assertEquals(1013.25f, air.get(1).getAsFloat(), 0);
+    }
+
+    @Test
+    public void testKeepsEventsDeliveredAtTheInterval() throws Exception {
+        long nanoTimestamp = System.nanoTime();
+        for (int i = 0; i < 14; i++) { // Within the three seconds kept
+            // Delivered at the registered interval, some a little early as sensors do
+            long jitter = i % 2 == 0 ? 0 : -2000000L;
+            detector.onSensorChanged(TestUtils.createSensorEvent(magnetometer, nanoTimestamp + i * 35000000L + jitter, 0, i, 0, 0));
+            detector.onSensorChanged(TestUtils.createSensorEvent(pressure, nanoTimestamp + i * 200000000L + jitter, 0, 1013, 0, 0));
+        }
+        Assert.assertEquals(14, detector.dataSize("magnetometer"));
+        Assert.assertEquals(14, detector.dataSize("pressure"));
+    }
+
+    @Test
+    public void testIgnoresUnknownSensors() throws Exception {
+        Sensor light = org.mockito.Mockito.mock(Sensor.class);
+        when(light.getType()).thenReturn(Sensor.TYPE_LIGHT);
+        detector.onSensorChanged(TestUtils.createSensorEvent(light, System.nanoTime(), 0, 100, 0, 0));
+        Assert.assertEquals(0, detector.dataSize("magnetometer"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeReportLatency() {
+        detector.setMaxReportLatency(-1);
+    }
+
+    @Test
+    public void testDataSetNames() {
+        Assert.assertEquals("linear_acceleration", MultiSensorDetector.dataSetName(Sensor.TYPE_LINEAR_ACCELERATION));
+        Assert.assertEquals("rotation_vector", MultiSensorDetector.dataSetName(Sensor.TYPE_ROTATION_VECTOR));
+        Assert.assertEquals("sensor_5", MultiSensorDetector.dataSetName(Sensor.TYPE_LIGHT));
+    }
+}
@@ -0,0 +1,55 @@
+package com.telenor.possumcore.filters;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BiquadFilterTest {
+    private static float amplitude(BiquadFilter filter, double frequency, double sampleRate) {
+        float[] values = new float[1];
+        float peak = 0;
+        for (int i = 0; i < 2000; i++) {
+            values[0] = (float) Math.sin(2 * Math.PI * frequency * i / sampleRate);
+            filter.filter(i, values);
+            if (i >= 1000) peak = Math.max(peak, Math.abs(values[0]));
+        }
+        return peak;
+    }
+
+    @Test
+    public void testLowPass() {
+        Assert.assertEquals(1, amplitude(BiquadFilter.lowPass(1, 5, 50), 0.5, 50), 0.02);
+        Assert.assertEquals(Math.sqrt(0.5), amplitude(BiquadFilter.lowPass(1, 5, 50), 5, 50), 0.02);
+        Assert.assertTrue(amplitude(BiquadFilter.lowPass(1, 5, 50), 20, 50) < 0.05);
+    }
+
+    @Test
+    public void testHighPass() {
+        Assert.assertTrue(amplitude(BiquadFilter.highPass(1, 5, 50), 0.5, 50) < 0.02);
+        Assert.assertEquals(Math.sqrt(0.5), amplitude(BiquadFilter.highPass(1, 5, 50), 5, 50), 0.02);
+        Assert.assertEquals(1, amplitude(BiquadFilter.highPass(1, 5, 50), 20, 50), 0.05);
+    }
+
+    @Test
+    public void testStartsSettled() {
+        BiquadFilter filter = BiquadFilter.lowPass(3, 1, 50);
+        float[] values = new float[3];
+        for (int i = 0; i < 10; i++) {
+            values[0] = 0.5f;
+            values[1] = 9.81f;
+            values[2] = -3;
+            filter.filter(i, values);
+            Assert.assertEquals(0.5f, values[0], 1e-4);
+            Assert.assertEquals(9.81f, values[1], 1e-4);
+            Assert.assertEquals(-3, values[2], 1e-4);
+        }
+        filter.reset();
+        values[1] = 1;
+        filter.filter(10, values);
+        Assert.assertEquals(1, values[1], 1e-4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCutoffAboveNyquist() {
+        BiquadFilter.lowPass(1, 25, 50);
+    }
+}
@@ -0,0 +1,23 @@
+package com.telenor.possumcore.filters;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeadBandFilterTest {
+    @Test
+    public void testKeepsChanges() {
+        DeadBandFilter filter = new DeadBandFilter(2, 0.1f);
+        Assert.assertTrue(filter.filter(0, new float[]{1, 1}));
+        Assert.assertFalse(filter.filter(1, new float[]{1.05f, 0.95f}));
+        Assert.assertFalse(filter.filter(2, new float[]{1.09f, 1}));
+        Assert.assertTrue(filter.filter(3, new float[]{1, 1.2f}));
+        Assert.assertFalse(filter.filter(4, new float[]{1.05f, 1.25f}));
+        filter.reset();
+        Assert.assertTrue(filter.filter(5, new float[]{1.05f, 1.25f}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeThreshold() {
+        new DeadBandFilter(1, -1);
+    }
+}
@@ -0,0 +1,49 @@
+package com.telenor.possumcore.filters;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DecimatorTest {
+    @Test
+    public void testKeepsEveryNth() {
+        Decimator decimator = new Decimator(1, 4);
+        float[] values = new float[1];
+        int kept = 0;
+        for (int i = 0; i < 100; i++) {
+            values[0] = 1;
+            if (decimator.filter(i, values)) {
+                Assert.assertEquals(0, i % 4);
+                Assert.assertEquals(1, values[0], 1e-4);
+                kept++;
+            }
+        }
+        Assert.assertEquals(25, kept);
+    }
+
+    @Test
+    public void testRemovesAliases() {
+        // 45 Hz at 100 Hz would fold down to 5 Hz at 25 Hz if samples were only dropped
+        Decimator decimator = new Decimator(1, 4);
+        float[] values = new float[1];
+        float peak = 0;
+        for (int i = 0; i < 1000; i++) {
+            values[0] = (float) Math.sin(2 * Math.PI * 45 * i / 100.0);
+            if (decimator.filter(i, values) && i > 200) peak = Math.max(peak, Math.abs(values[0]));
+        }
+        Assert.assertTrue("Alias of " + peak, peak < 0.01);
+    }
+
+    @Test
+    public void testFactorOneKeepsAll() {
+        Decimator decimator = new Decimator(1, 1);
+        float[] values = {3};
+        Assert.assertTrue(decimator.filter(0, values));
+        Assert.assertTrue(decimator.filter(1, values));
+        Assert.assertEquals(3, values[0], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFactor() {
+        new Decimator(1, 0);
+    }
+}
@@ -0,0 +1,26 @@
+package com.telenor.possumcore.filters;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FilterPipelineTest {
+    @Test
+    public void testRunsStagesInOrder() {
+        FilterPipeline pipeline = new FilterPipeline(new GravityFilter(1, 1000), new Decimator(1, 2), new DeadBandFilter(1, 0.5f));
+        float[] values = {9.81f};
+        Assert.assertTrue(pipeline.filter(0, values));
+        Assert.assertEquals(0, values[0], 1e-4);
+        values[0] = 9.81f;
+        Assert.assertFalse(pipeline.filter(20, values)); // Dropped by the decimator
+        values[0] = 9.81f;
+        Assert.assertFalse(pipeline.filter(40, values)); // Kept by the decimator, but not changed
+        for (int i = 3; i < 20; i++) {
+            values[0] = 20;
+            if (pipeline.filter(i * 20, values)) Assert.assertTrue(values[0] > 0.5f);
+        }
+        pipeline.reset();
+        values[0] = 20;
+        Assert.assertTrue(pipeline.filter(1000, values));
+        Assert.assertEquals(0, values[0], 1e-4);
+    }
+}
@@ -0,0 +1,43 @@
+package com.telenor.possumcore.filters;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GravityFilterTest {
+    @Test
+    public void testRemovesGravity() {
+        GravityFilter filter = new GravityFilter(3, 500);
+        float[] values = new float[3];
+        for (int i = 0; i < 500; i++) {
+            float shake = (float) Math.sin(2 * Math.PI * i * 2 / 50.0); // 2 Hz at 50 Hz
+            values[0] = 0;
+            values[1] = 3;
+            values[2] = 9.81f + shake;
+            filter.filter(i * 20, values);
+            if (i > 300) {
+                Assert.assertEquals(0, values[1], 0.01);
+                Assert.assertEquals(shake, values[2], 0.2);
+            }
+        }
+        Assert.assertEquals(9.81f, filter.gravity(2), 0.2);
+    }
+
+    @Test
+    public void testFollowsTurning() {
+        GravityFilter filter = new GravityFilter(1, 200);
+        float[] values = new float[1];
+        values[0] = 9.81f;
+        filter.filter(0, values);
+        Assert.assertEquals(0, values[0], 0);
+        for (int i = 1; i <= 100; i++) {
+            values[0] = -9.81f;
+            filter.filter(i * 20, values);
+        }
+        Assert.assertEquals(-9.81f, filter.gravity(0), 0.01);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTimeConstantMustBePositive() {
+        new GravityFilter(3, 0);
+    }
+}
@@ -0,0 +1,106 @@
+package com.telenor.possumcore.motion;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class GaitFeatureExtractorTest {
+    private GaitFeatureExtractor extractor;
+    private List<Long> timestamps;
+    private List<float[]> vectors;
+
+    @Before
+    public void setUp() {
+        timestamps = new ArrayList<>();
+        vectors = new ArrayList<>();
+        extractor = new GaitFeatureExtractor(128, 64, (timestamp, values) -> {
+            timestamps.add(timestamp);
+            vectors.add(values.clone());
+        });
+    }
+
+    private void walk(int samples, double stepsPerMinute, double amplitude) {
+        Random random = new Random(3);
+        for (int i = 0; i < samples; i++) {
+            double seconds = i * 0.02;
+            double step = amplitude * Math.sin(2 * Math.PI * stepsPerMinute / 60 * seconds);
+            // Every other step is a bit harder, so the stride repeats as well
+            double stride = amplitude * 0.3 * Math.sin(Math.PI * stepsPerMinute / 60 * seconds);
+            float noise = (float) random.nextGaussian() * 0.05f;
+            extractor.add(1000 + i * 20, new float[]{0.5f + noise, noise, (float) (9.81 + step + stride)});
+        }
+    }
+
+    @Test
+    public void testEmitsEveryHopOnceFull() {
+        walk(127, 120, 2);
+        Assert.assertEquals(0, vectors.size());
+        walk(1, 120, 2);
+        Assert.assertEquals(1, vectors.size());
+        Assert.assertEquals(GaitFeatureExtractor.features, vectors.get(0).length);
+        extractor.reset();
+        vectors.clear();
+        timestamps.clear();
+        walk(128 + 64 * 10, 120, 2);
+        Assert.assertEquals(11, vectors.size());
+        Assert.assertEquals(1000 + (128 + 64 * 10 - 1) * 20, (long) timestamps.get(10));
+    }
+
+    @Test
+    public void testWalkingFeatures() {
+        walk(2000, 110, 2);
+        float[] features = vectors.get(vectors.size() - 1);
+        Assert.assertEquals(0.5, features[0], 0.05);
+        Assert.assertEquals(0, features[1], 0.05);
+        Assert.assertEquals(9.81, features[3], 0.3);
+        Assert.assertTrue("Variance " + features[4], features[4] > 1.5);
+        Assert.assertEquals(110, features[5], 8);
+        Assert.assertTrue("Periodicity " + features[6], features[6] > 0.5);
+        Assert.assertEquals(110 / 60.0, features[7], 0.4);
+    }
+
+    @Test
+    public void testStillHasNoCadence() {
+        Random random = new Random(5);
+        for (int i = 0; i < 1000; i++) {
+            extractor.add(i * 20, new float[]{0, 0, 9.81f + (float) random.nextGaussian() * 0.02f});
+        }
+        float[] features = vectors.get(vectors.size() - 1);
+        Assert.assertEquals(9.81, features[3], 0.01);
+        Assert.assertTrue(features[4] < 0.01);
+        Assert.assertEquals(0, features[5], 0);
+    }
+
+    @Test
+    public void testSlidingSumsMatchRecomputed() {
+        // After many samples the sliding updates must agree with a window computed from scratch
+        walk(128 + 64 * 39, 100, 3); // Ends half a window after the sums were last recomputed
+        float[] sliding = vectors.get(vectors.size() - 1);
+        GaitFeatureExtractor fresh = new GaitFeatureExtractor(128, 128, (timestamp, values) -> vectors.add(values.clone()));
+        Random random = new Random(3);
+        float[][] samples = new float[128 + 64 * 39][];
+        for (int i = 0; i < samples.length; i++) {
+            double seconds = i * 0.02;
+            double step = 3 * Math.sin(2 * Math.PI * 100 / 60 * seconds);
+            double stride = 3 * 0.3 * Math.sin(Math.PI * 100 / 60 * seconds);
+            float noise = (float) random.nextGaussian() * 0.05f;
+            samples[i] = new float[]{0.5f + noise, noise, (float) (9.81 + step + stride)};
+        }
+        for (int i = samples.length - 128; i < samples.length; i++) {
+            fresh.add(1000 + i * 20, samples[i]);
+        }
+        float[] exact = vectors.get(vectors.size() - 1);
+        for (int feature = 0; feature < GaitFeatureExtractor.features; feature++) {
+            Assert.assertEquals("Feature " + feature, exact[feature], sliding[feature], 1e-3);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWindow() {
+        new GaitFeatureExtractor(8, 4, (timestamp, values) -> {});
+    }
+}
@@ -0,0 +1,119 @@
+package com.telenor.possumcore.motion;
+
+import com.telenor.possumcore.constants.MotionLevel;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class SamplingRateControllerTest {
+    private static final long millis = 1000000L;
+    private SamplingRateController controller;
+    private long timestamp;
+
+    @Before
+    public void setUp() {
+        controller = new SamplingRateController(0.01f, 1f);
+        timestamp = 1000 * millis;
+    }
+
+    private int feed(int events, long intervalMillis, double amplitude) {
+        int accepted = 0;
+        float[] values = new float[3];
+        for (int i = 0; i < events; i++) {
+            timestamp += intervalMillis * millis;
+            values[2] = (float) (9.81 + amplitude * Math.sin(timestamp / (100.0 * millis)));
+            if (controller.accept(timestamp, values)) accepted++;
+        }
+        return accepted;
+    }
+
+    @Test
+    public void testStartsMoving() {
+        Assert.assertEquals(MotionLevel.Moving, controller.level());
+        Assert.assertEquals(35, controller.intervalMillis());
+    }
+
+    @Test
+    public void testSlowsDownWhenStill() {
+        feed(100, 10, 0); // One second, still settling
+        Assert.assertEquals(MotionLevel.Moving, controller.level());
+        feed(150, 10, 0);
+        Assert.assertEquals(MotionLevel.Still, controller.level());
+        int accepted = feed(1000, 10, 0); // Ten seconds lying still
+        Assert.assertTrue("Accepted " + accepted, accepted <= 30);
+        Assert.assertEquals(1, controller.levelChanges());
+    }
+
+    @Test
+    public void testSpeedsUpAtOnceWhenWalking() {
+        feed(300, 10, 0);
+        Assert.assertEquals(MotionLevel.Still, controller.level());
+        feed(50, 10, 3); // Half a second of walking
+        Assert.assertEquals(MotionLevel.Active, controller.level());
+        Assert.assertEquals(20, controller.intervalMillis());
+        int accepted = feed(1000, 10, 3);
+        Assert.assertTrue("Accepted " + accepted, accepted >= 300);
+        Assert.assertTrue(controller.variance() >= 1);
+    }
+
+    @Test
+    public void testKeepsEventsDeliveredAtTheInterval() {
+        feed(50, 20, 3);
+        Assert.assertEquals(MotionLevel.Active, controller.level());
+        Assert.assertEquals(100, feed(100, 20, 3));
+        // The sensor delivers around the registered period, not exactly at it
+        Random random = new Random(42);
+        float[] values = new float[3];
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            timestamp += (20 + random.nextInt(9) - 4) * millis;
+            values[2] = (float) (9.81 + 3 * Math.sin(timestamp / (100.0 * millis)));
+            if (controller.accept(timestamp, values)) accepted++;
+        }
+        Assert.assertTrue("Accepted " + accepted, accepted >= 95);
+    }
+
+    @Test
+    public void testKeepsRateThroughShortPauses() {
+        feed(300, 10, 3);
+        Assert.assertEquals(MotionLevel.Active, controller.level());
+        feed(50, 10, 0);
+        Assert.assertEquals(MotionLevel.Active, controller.level());
+    }
+
+    @Test
+    public void testCountsSkippedEvents() {
+        feed(100, 10, 0.5);
+        Assert.assertEquals(100, controller.accepted() + controller.skipped());
+        Assert.assertTrue(controller.skipped() > 0);
+    }
+
+    @Test
+    public void testCustomIntervals() {
+        controller.setIntervals(1000, 50, 10).setSettleTime(0);
+        Assert.assertEquals(50, controller.intervalMillis());
+        feed(100, 10, 0);
+        Assert.assertEquals(1000, controller.intervalMillis());
+    }
+
+    @Test
+    public void testReset() {
+        feed(300, 10, 0);
+        controller.reset();
+        Assert.assertEquals(MotionLevel.Moving, controller.level());
+        Assert.assertEquals(0, controller.variance(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidVariances() {
+        new SamplingRateController(1f, 0.5f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidIntervals() {
+        controller.setIntervals(10, 50, 20);
+    }
+}
@@ -0,0 +1,141 @@
+package com.telenor.possumcore.motion;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SensorResamplerTest {
+    private static final long ms = 1000000L; // Timestamps are in nanoseconds
+    private SensorResampler resampler;
+    private List<Long> timestamps;
+    private List<float[]> samples;
+
+    @Before
+    public void setUp() {
+        timestamps = new ArrayList<>();
+        samples = new ArrayList<>();
+        resampler = new SensorResampler(20, 100, (timestamp, values) -> {
+            timestamps.add(timestamp);
+            samples.add(values.clone());
+        }, 3, 3);
+    }
+
+    @Test
+    public void testAlignsTwoSourcesLinearly() {
+        // Source 0 every 35 ms, source 1 every 25 ms from another start, both following a line
+        for (long time = 1003; time < 2000; time++) {
+            if ((time - 1003) % 35 == 0)
+                resampler.add(0, time * ms, new float[]{time, 2 * time, -time});
+            if ((time - 1011) % 25 == 0 && time >= 1011)
+                resampler.add(1, time * ms, new float[]{3 * time, 0, 1});
+        }
+        Assert.assertEquals(6, resampler.columns());
+        Assert.assertTrue(timestamps.size() >= 45);
+        Assert.assertEquals(1020 * ms, (long) timestamps.get(0));
+        for (int i = 0; i < timestamps.size(); i++) {
+            long time = timestamps.get(i) / ms;
+            Assert.assertEquals(0, timestamps.get(i) % (20 * ms));
+            if (i > 0) Assert.assertEquals(timestamps.get(i - 1) + 20 * ms, (long) timestamps.get(i));
+            float[] sample = samples.get(i);
+            Assert.assertEquals(time, sample[0], 0.01);
+            Assert.assertEquals(2 * time, sample[1], 0.01);
+            Assert.assertEquals(-time, sample[2], 0.01);
+            Assert.assertEquals(3 * time, sample[3], 0.01);
+            Assert.assertEquals(1, sample[5], 0);
+        }
+        Assert.assertEquals(timestamps.size(), resampler.produced());
+    }
+
+    @Test
+    public void testInterpolatesBetweenSamplesWithinAMillisecond() {
+        // Both sources at 2.5 kHz, 0.4 ms apart, source 1 shifted 0.13 ms, following a line
+        for (long time = 1000000000L; time < 1050000000L; time += 400000) {
+            resampler.add(0, time, new float[]{(time - 1000000000L) / 1000f, 0, 0});
+            resampler.add(1, time + 130000, new float[]{(time + 130000 - 1000000000L) / 1000f, 0, 0});
+        }
+        Assert.assertTrue(timestamps.size() >= 2);
+        for (int i = 0; i < timestamps.size(); i++) {
+            float expected = (timestamps.get(i) - 1000000000L) / 1000f; // Microseconds
+            Assert.assertEquals(expected, samples.get(i)[0], 0.01);
+            Assert.assertEquals(expected, samples.get(i)[3], 0.01);
+        }
+    }
+
+    @Test
+    public void testDoesNotWaitLongerThanLatency() {
+        for (long time = 0; time <= 1000; time += 10) {
+            resampler.add(0, time * ms, new float[]{1, 1, 1});
+            if (time <= 200) resampler.add(1, time * ms, new float[]{2, 2, 2});
+        }
+        long produced = resampler.produced();
+        Assert.assertEquals(11, produced); // 0 to 200
+        Assert.assertTrue(resampler.skipped() >= (1000 - 100 - 200) / 20 - 1);
+        // Source 1 comes back, samples after the gap are aligned again
+        for (long time = 1010; time <= 1200; time += 10) {
+            resampler.add(0, time * ms, new float[]{1, 1, 1});
+            resampler.add(1, time * ms, new float[]{2, 2, 2});
+        }
+        Assert.assertTrue(resampler.produced() > produced);
+        Assert.assertEquals(1200 * ms, (long) timestamps.get(timestamps.size() - 1));
+    }
+
+    @Test
+    public void testLeavesGapsUninterpolated() {
+        for (long time = 0; time <= 1000; time += 10) {
+            boolean paused = time > 100 && time < 500;
+            if (!paused) {
+                resampler.add(0, time * ms, new float[]{1, 1, 1});
+                resampler.add(1, time * ms, new float[]{2, 2, 2});
+            }
+        }
+        for (long timestamp : timestamps) {
+            Assert.assertTrue("Made up " + timestamp, timestamp <= 100 * ms || timestamp >= 500 * ms);
+        }
+        Assert.assertEquals(6 + 26, resampler.produced());
+    }
+
+    @Test
+    public void testKeepsExactSampleBeforeGap() {
+        resampler.add(0, 100 * ms, new float[]{1, 1, 1});
+        resampler.add(0, 500 * ms, new float[]{2, 2, 2});
+        resampler.add(1, 100 * ms, new float[]{3, 3, 3});
+        resampler.add(1, 500 * ms, new float[]{4, 4, 4});
+        Assert.assertEquals(2, timestamps.size());
+        Assert.assertEquals(100 * ms, (long) timestamps.get(0));
+        Assert.assertEquals(3, samples.get(0)[3], 0);
+        Assert.assertEquals(500 * ms, (long) timestamps.get(1));
+        Assert.assertEquals(4, samples.get(1)[3], 0);
+    }
+
+    @Test
+    public void testIgnoresOlderSamples() {
+        resampler.add(0, 100 * ms, new float[]{1, 1, 1});
+        resampler.add(0, 90 * ms, new float[]{5, 5, 5});
+        resampler.add(1, 100 * ms, new float[]{2, 2, 2});
+        Assert.assertEquals(1, timestamps.size());
+        Assert.assertEquals(1, samples.get(0)[0], 0);
+    }
+
+    @Test
+    public void testReset() {
+        resampler.add(0, 100 * ms, new float[]{1, 1, 1});
+        resampler.reset();
+        resampler.add(0, 5000 * ms, new float[]{1, 1, 1});
+        resampler.add(1, 5000 * ms, new float[]{1, 1, 1});
+        Assert.assertEquals(1, timestamps.size());
+        Assert.assertEquals(5000 * ms, (long) timestamps.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPeriod() {
+        new SensorResampler(0, 100, (timestamp, values) -> {}, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoSources() {
+        new SensorResampler(20, 100, (timestamp, values) -> {});
+    }
+}
@@ -0,0 +1,34 @@
+package com.telenor.possumcore.storage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BitWriterTest {
+    @Test
+    public void testWriteAndRead() {
+        BitWriter writer = new BitWriter(1);
+        writer.write(0b101, 3);
+        writer.writeBit(true);
+        writer.write(-1L, 64);
+        writer.write(0x1234, 13);
+        writer.writeVarLong(300);
+        writer.writeVarLong(Long.MIN_VALUE);
+        BitReader reader = new BitReader(writer.toByteArray());
+        Assert.assertEquals(0b101, reader.read(3));
+        Assert.assertTrue(reader.readBit());
+        Assert.assertEquals(-1L, reader.read(64));
+        Assert.assertEquals(0x1234, reader.read(13));
+        Assert.assertEquals(300, reader.readVarLong());
+        Assert.assertEquals(Long.MIN_VALUE, reader.readVarLong());
+    }
+
+    @Test
+    public void testReset() {
+        BitWriter writer = new BitWriter(8);
+        writer.write(0xFF, 8);
+        writer.reset();
+        writer.write(0, 4);
+        Assert.assertEquals(1, writer.toByteArray().length);
+        Assert.assertEquals(0, writer.toByteArray()[0]);
+    }
+}
@@ -0,0 +1,142 @@
+package com.telenor.possumcore.storage;
+
+import com.google.gson.JsonArray;
+import com.telenor.possumcore.constants.ColumnType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+public class CompressedSampleStoreTest {
+    private static final DataSchema mixed = new DataSchema(ColumnType.Float, ColumnType.Double, ColumnType.Int, ColumnType.Long, ColumnType.Text);
+
+    @Test
+    public void testRestoresExactValues() {
+        CompressedSampleStore store = new CompressedSampleStore(RetentionPolicy.entries(10000), mixed);
+        SampleRingBuffer plain = new SampleRingBuffer(10000, mixed);
+        Sample sample = new Sample(mixed);
+        Random random = new Random(42);
+        long timestamp = 1500000000000L;
+        String[] macs = {"00:11:22:33:44:55", "66:77:88:99:aa:bb", null};
+        for (int i = 0; i < 1000; i++) {
+            timestamp += 30 + random.nextInt(20) - (i % 97 == 0 ? 5000 : 0);
+            sample.timestamp(timestamp)
+                    .set(0, i % 5 == 0 ? Float.NaN : random.nextFloat() * 20 - 10)
+                    .set(1, i % 7 == 0 ? -0.0 : random.nextGaussian() * 1e6)
+                    .set(2, random.nextInt())
+                    .set(3, i % 3 == 0 ? Long.MIN_VALUE : random.nextLong())
+                    .set(4, macs[i % macs.length]);
+            store.add(sample);
+            plain.add(sample);
+        }
+        Assert.assertEquals(plain.size(), store.size());
+        for (int i = 0; i < plain.size(); i++) {
+            Assert.assertEquals(plain.get(i), store.get(i));
+        }
+    }
+
+    @Test
+    public void testCompressesSensorData() {
+        CompressedSampleStore store = new CompressedSampleStore(RetentionPolicy.entries(100000), DataSchema.floats(3));
+        float[] values = new float[3];
+        for (int i = 0; i < 10000; i++) {
+            values[0] = (float) Math.sin(i / 50.0) * 2;
+            values[1] = 9.81f;
+            values[2] = Math.round(Math.cos(i / 30.0) * 100) / 100f;
+            store.add(1500000000000L + i * 20, values);
+        }
+        Assert.assertEquals(10000, store.size());
+        Assert.assertTrue("Used " + store.bytesUsed(), store.bytesUsed() < 10000 * 20 / 2);
+        Assert.assertEquals(9.81f, store.value(5000, 1), 0);
+        Assert.assertEquals(1500000000000L + 9999 * 20, store.timestamp(9999));
+    }
+
+    @Test
+    public void testRemovesWholeBlocksByPolicy() {
+        CompressedSampleStore store = new CompressedSampleStore(RetentionPolicy.millis(1000), DataSchema.floats(1));
+        for (int i = 0; i < 1000; i++) {
+            store.add(i * 10, new float[]{i});
+        }
+        Assert.assertTrue(store.timestamp(0) <= 9990 - 1000);
+        Assert.assertTrue(store.size() <= 101 + 128);
+        Assert.assertEquals(1000, store.size() + store.dropped());
+        Assert.assertEquals(999, store.value(store.size() - 1, 0), 0);
+    }
+
+    @Test
+    public void testTrimToRemovesOldestBlocks() {
+        CompressedSampleStore store = new CompressedSampleStore(RetentionPolicy.entries(10000), mixed);
+        Sample sample = new Sample(mixed);
+        for (int i = 0; i < 1000; i++) {
+            store.add(sample.timestamp(i).set(0, (float) i).set(1, (double) i).set(2, i).set(3, (long) i).set(4, "mac" + i % 5));
+        }
+        long before = store.bytesUsed();
+        long freed = store.trimTo(before - 1);
+        Assert.assertTrue(freed > 0);
+        Assert.assertEquals(before - freed, store.bytesUsed());
+        Assert.assertEquals(1000 - 128, store.size()); // The oldest block is removed
+        Assert.assertEquals(128, store.dropped());
+        Assert.assertEquals(128, store.timestamp(0));
+        Assert.assertEquals(999, store.value(store.size() - 1, 2), 0);
+        Assert.assertEquals("mac4", store.text(store.size() - 1, 4));
+        store.trimTo(0);
+        Assert.assertEquals(0, store.size());
+        Assert.assertEquals(0, store.bytesUsed());
+        Assert.assertEquals(1000, store.dropped());
+    }
+
+    @Test
+    public void testReusesRemovedBlocks() {
+        CompressedSampleStore store = new CompressedSampleStore(RetentionPolicy.entries(500), DataSchema.floats(2));
+        Random random = new Random(7);
+        float[][] values = new float[5000][];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new float[]{random.nextFloat(), i % 3 == 0 ? random.nextFloat() * 1000 : 1};
+            store.add(i, values[i]);
+        }
+        Assert.assertEquals(values.length, store.size() + store.dropped());
+        for (int i = 0; i < store.size(); i++) {
+            int source = (int) store.timestamp(i);
+            Assert.assertEquals(values[source][0], store.value(i, 0), 0);
+            Assert.assertEquals(values[source][1], store.value(i, 1), 0);
+        }
+    }
+
+    @Test
+    public void testRange() {
+        CompressedSampleStore store = new CompressedSampleStore(RetentionPolicy.entries(1000), DataSchema.floats(1));
+        for (int i = 0; i < 300; i++) {
+            store.add(i * 10, new float[]{i});
+        }
+        Assert.assertEquals(150, store.indexAt(1500));
+        Assert.assertEquals(290, store.indexAt(2895));
+        Assert.assertEquals(300, store.indexAt(5000));
+        List<JsonArray> range = store.range(1270, 1300);
+        Assert.assertEquals(3, range.size());
+        Assert.assertEquals("127.0", range.get(0).get(1).getAsString());
+        Assert.assertEquals("129.0", range.get(2).get(1).getAsString());
+    }
+
+    @Test
+    public void testClearAndSeal() {
+        CompressedSampleStore store = new CompressedSampleStore(RetentionPolicy.entries(1000), DataSchema.floats(1));
+        for (int i = 0; i < 200; i++) {
+            store.add(i, new float[]{i});
+        }
+        store.clear();
+        Assert.assertEquals(0, store.size());
+        store.add(1, new float[]{1});
+        store.seal();
+        store.add(2, new float[]{2});
+        Assert.assertEquals(1, store.size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        CompressedSampleStore store = new CompressedSampleStore(RetentionPolicy.entries(1000), DataSchema.floats(1));
+        store.add(1, new float[]{1});
+        store.get(1);
+    }
+}
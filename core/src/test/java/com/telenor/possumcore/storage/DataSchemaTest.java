@@ -0,0 +1,37 @@
+package com.telenor.possumcore.storage;
+
+import com.telenor.possumcore.constants.ColumnType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DataSchemaTest {
+    @Test
+    public void testInitialize() {
+        DataSchema schema = new DataSchema(ColumnType.Text, ColumnType.Int, ColumnType.Double);
+        Assert.assertEquals(3, schema.columns());
+        Assert.assertEquals(ColumnType.Text, schema.type(0));
+        Assert.assertEquals(ColumnType.Int, schema.type(1));
+        Assert.assertFalse(schema.isNumeric(0));
+        Assert.assertTrue(schema.isNumeric(2));
+    }
+
+    @Test
+    public void testFloats() {
+        DataSchema schema = DataSchema.floats(3);
+        Assert.assertEquals(3, schema.columns());
+        for (int i = 0; i < schema.columns(); i++) {
+            Assert.assertEquals(ColumnType.Float, schema.type(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoColumns() {
+        new DataSchema();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownType() {
+        new DataSchema(ColumnType.Float, 42);
+    }
+}
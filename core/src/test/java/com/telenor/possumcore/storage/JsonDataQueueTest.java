@@ -0,0 +1,107 @@
+package com.telenor.possumcore.storage;
+
+import com.google.gson.JsonArray;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class JsonDataQueueTest {
+    private static JsonArray entry(long timestamp, String value) {
+        JsonArray data = new JsonArray();
+        data.add("" + timestamp);
+        data.add(value);
+        return data;
+    }
+
+    @Test
+    public void testKeepsLastEntries() {
+        JsonDataQueue queue = new JsonDataQueue(RetentionPolicy.entries(3));
+        for (int i = 0; i < 5; i++) {
+            queue.add(entry(i, "" + i));
+        }
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals(2, queue.dropped());
+        Assert.assertEquals("2", queue.get(0).get(1).getAsString());
+        Assert.assertEquals(4, queue.timestamp(2));
+    }
+
+    @Test
+    public void testKeepsTimeSpan() {
+        JsonDataQueue queue = new JsonDataQueue(RetentionPolicy.millis(100));
+        for (int i = 0; i < 1000; i++) {
+            queue.add(entry(i * 10, "value"));
+        }
+        Assert.assertEquals(11, queue.size());
+        Assert.assertEquals(9890, queue.timestamp(0));
+        Assert.assertEquals(9990, queue.timestamp(10));
+        Assert.assertEquals(989, queue.dropped());
+    }
+
+    @Test
+    public void testKeepsBytes() {
+        JsonArray data = entry(0, "value");
+        long bytes = JsonDataQueue.estimateBytes(data);
+        JsonDataQueue queue = new JsonDataQueue(RetentionPolicy.bytes(bytes * 4));
+        for (int i = 0; i < 10; i++) {
+            queue.add(entry(i, "value"));
+        }
+        Assert.assertEquals(4, queue.size());
+        Assert.assertEquals(bytes * 4, queue.bytesUsed());
+        queue.clear();
+        Assert.assertEquals(0, queue.bytesUsed());
+    }
+
+    @Test
+    public void testTrimTo() {
+        long bytes = JsonDataQueue.estimateBytes(entry(0, "value"));
+        JsonDataQueue queue = new JsonDataQueue(RetentionPolicy.entries(10));
+        for (int i = 0; i < 10; i++) {
+            queue.add(entry(i, "value"));
+        }
+        Assert.assertEquals(bytes * 7, queue.trimTo(bytes * 3));
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals(7, queue.timestamp(0));
+        Assert.assertEquals(7, queue.dropped());
+        Assert.assertEquals(bytes * 3, queue.bytesUsed());
+    }
+
+    @Test
+    public void testRange() {
+        JsonDataQueue queue = new JsonDataQueue(RetentionPolicy.entries(100));
+        for (int i = 0; i < 50; i++) {
+            queue.add(entry(i * 10, "" + i));
+        }
+        List<JsonArray> range = queue.range(95, 130);
+        Assert.assertEquals(3, range.size());
+        Assert.assertEquals("10", range.get(0).get(1).getAsString());
+        Assert.assertEquals("12", range.get(2).get(1).getAsString());
+        Assert.assertEquals(0, queue.range(1000, 2000).size());
+        Assert.assertEquals(50, queue.indexAt(1000));
+    }
+
+    @Test
+    public void testEntriesWithoutTimestamp() {
+        JsonDataQueue queue = new JsonDataQueue(RetentionPolicy.entries(3));
+        queue.add(entry(5, "first"));
+        queue.add(new JsonArray());
+        Assert.assertEquals(5, queue.timestamp(1));
+    }
+
+    @Test
+    public void testSealIgnoresNewEntries() {
+        JsonDataQueue queue = new JsonDataQueue(RetentionPolicy.entries(3));
+        queue.add(entry(1, "a"));
+        queue.seal();
+        Assert.assertFalse(queue.add(entry(2, "b")));
+        Assert.assertEquals(1, queue.size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        JsonDataQueue queue = new JsonDataQueue(RetentionPolicy.entries(3));
+        queue.add(entry(1, "a"));
+        queue.get(1);
+    }
+}
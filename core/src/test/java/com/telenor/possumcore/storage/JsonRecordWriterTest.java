@@ -0,0 +1,102 @@
+package com.telenor.possumcore.storage;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.telenor.possumcore.constants.ColumnType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class JsonRecordWriterTest {
+    private static final DataSchema mixed = new DataSchema(ColumnType.Float, ColumnType.Double, ColumnType.Int, ColumnType.Long, ColumnType.Text);
+
+    private static String serialized(SampleList list) {
+        StringBuilder expected = new StringBuilder();
+        for (JsonArray entry : list) {
+            expected.append(entry.toString()).append("\r\n");
+        }
+        return expected.toString();
+    }
+
+    private static void fill(SampleList list) {
+        Sample sample = new Sample(mixed);
+        String[] texts = {"00:11:22:33:44:55", null, "quote\" slash\\ tab\t\u0001 ", "æøå"};
+        for (int i = 0; i < 300; i++) {
+            list.add(sample.timestamp(1500000000000L + i * 7)
+                    .set(0, i * 0.1f - 3)
+                    .set(1, i % 11 == 0 ? Double.NaN : i * 1e-5)
+                    .set(2, -i)
+                    .set(3, Long.MAX_VALUE - i)
+                    .set(4, texts[i % texts.length]));
+        }
+    }
+
+    @Test
+    public void testWritesSamplesLikeJsonArray() throws Exception {
+        SampleRingBuffer buffer = new SampleRingBuffer(1000, mixed);
+        fill(buffer);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonRecordWriter writer = new JsonRecordWriter(out, "\r\n");
+        Assert.assertEquals(300, buffer.readAll(writer));
+        writer.flush();
+        Assert.assertEquals(300, writer.records());
+        Assert.assertArrayEquals(serialized(buffer).getBytes("UTF-8"), out.toByteArray());
+    }
+
+    @Test
+    public void testWritesCompressedSamplesLikeJsonArray() throws Exception {
+        CompressedSampleStore store = new CompressedSampleStore(RetentionPolicy.entries(1000), mixed);
+        fill(store);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonRecordWriter writer = new JsonRecordWriter(out, "\r\n");
+        Assert.assertEquals(300, store.readAll(writer));
+        writer.flush();
+        Assert.assertArrayEquals(serialized(store).getBytes("UTF-8"), out.toByteArray());
+    }
+
+    @Test
+    public void testWritesEntriesLikeJsonArray() throws Exception {
+        StringBuilder everyChar = new StringBuilder();
+        for (char c = 0; c < 0xFFFF; c++) {
+            everyChar.append(c);
+        }
+        JsonObject object = new JsonObject();
+        object.addProperty("na\"me", 1.5);
+        object.addProperty("flag", true);
+        object.add("nothing", JsonNull.INSTANCE);
+        JsonArray entry = new JsonArray();
+        entry.add("1500000000000");
+        entry.add(everyChar.toString());
+        entry.add(42);
+        entry.add(false);
+        entry.add(JsonNull.INSTANCE);
+        entry.add(object);
+        entry.add(new JsonArray());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonRecordWriter writer = new JsonRecordWriter(out, "\n");
+        writer.entry(entry);
+        writer.flush();
+        Assert.assertArrayEquals((entry.toString() + "\n").getBytes("UTF-8"), out.toByteArray());
+        Assert.assertEquals(1, writer.records());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReportsFailureOnFlush() throws Exception {
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Full");
+            }
+        };
+        JsonRecordWriter writer = new JsonRecordWriter(failing, "\n");
+        writer.begin(1);
+        writer.value(0, 1f);
+        writer.end();
+        writer.flush();
+    }
+}
@@ -0,0 +1,100 @@
+package com.telenor.possumcore.storage;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LockFreeQueueTest {
+    private LockFreeQueue<String> queue;
+
+    @Before
+    public void setUp() {
+        queue = new LockFreeQueue<>(3);
+    }
+
+    @Test
+    public void testInitialize() {
+        Assert.assertEquals(0, queue.size());
+        Assert.assertEquals(3, queue.limit());
+        Assert.assertEquals(0, queue.dropped());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLimit() {
+        new LockFreeQueue<String>(0);
+    }
+
+    @Test
+    public void testDropsNewestWhenFull() {
+        for (int i = 0; i < 5; i++) {
+            queue.add("" + i);
+        }
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals(2, queue.dropped());
+        Assert.assertEquals("0", queue.get(0));
+        Assert.assertEquals("2", queue.get(2));
+    }
+
+    @Test
+    public void testClearMakesRoom() {
+        for (int i = 0; i < 4; i++) {
+            queue.add("" + i);
+        }
+        queue.clear();
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertTrue(queue.add("new"));
+        Assert.assertEquals("new", queue.get(0));
+        Assert.assertEquals(1, queue.dropped());
+    }
+
+    @Test
+    public void testIteratesInOrder() {
+        queue.add("a");
+        queue.add("b");
+        List<String> found = new ArrayList<>();
+        for (String element : queue) {
+            found.add(element);
+        }
+        Assert.assertEquals("a", found.get(0));
+        Assert.assertEquals("b", found.get(1));
+    }
+
+    @Test
+    public void testSealIgnoresNewElements() {
+        queue.add("a");
+        queue.seal();
+        Assert.assertFalse(queue.add("b"));
+        Assert.assertEquals(1, queue.size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        queue.add("a");
+        queue.get(1);
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final LockFreeQueue<Integer> shared = new LockFreeQueue<>(1000);
+        Thread[] producers = new Thread[4];
+        for (int i = 0; i < producers.length; i++) {
+            producers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 500; j++) {
+                        shared.add(j);
+                    }
+                }
+            });
+            producers[i].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        Assert.assertEquals(1000, shared.size());
+        Assert.assertEquals(1000, shared.dropped());
+    }
+}
@@ -0,0 +1,99 @@
+package com.telenor.possumcore.storage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.zip.CRC32;
+
+public class NumberEncoderTest {
+    private final NumberEncoder encoder = new NumberEncoder();
+    private final byte[] buffer = new byte[NumberEncoder.maxLength + 4];
+
+    private String encoded(float value) {
+        return new String(buffer, 2, encoder.encode(value, buffer, 2) - 2);
+    }
+
+    private String encoded(double value) {
+        return new String(buffer, 2, encoder.encode(value, buffer, 2) - 2);
+    }
+
+    private String encoded(long value) {
+        return new String(buffer, 2, encoder.encode(value, buffer, 2) - 2);
+    }
+
+    @Test
+    public void testFloatText() {
+        // Java 8 text, the last of these differ in the last digit from Java 19 and later
+        float[] floats = {0f, -0f, 1f, -1f, 0.1f, 9.81f, 1e7f, 1e-3f, 9.999999e-4f, 0.001f, 1e-4f, -0.0086f, 6.8905146E25f, -4.0016355E25f};
+        String[] expected = {"0.0", "-0.0", "1.0", "-1.0", "0.1", "9.81", "1.0E7", "0.001", "9.999999E-4", "0.001", "1.0E-4", "-0.0086", "6.8905146E25", "-4.0016355E25"};
+        for (int i = 0; i < floats.length; i++) {
+            Assert.assertEquals(expected[i], encoded(floats[i]));
+            Assert.assertEquals(expected[i], NumberEncoder.toString(floats[i]));
+        }
+    }
+
+    @Test
+    public void testDoubleText() {
+        // Java 8 text, from 2e23 on these differ in the last digit from Java 19 and later
+        double[] doubles = {0d, -0d, 1d, 0.1, 1e7, 1e22, 59.9, 10.77, 123456.789, 0.002f, 2e23, 1e23, 8.41e21, 9007199254740993d, -3.5294595709050224E25};
+        String[] expected = {"0.0", "-0.0", "1.0", "0.1", "1.0E7", "1.0E22", "59.9", "10.77", "123456.789", "0.0020000000949949026", "1.9999999999999998E23", "9.999999999999999E22", "8.409999999999999E21", "9.007199254740992E15", "-3.5294595709050224E25"};
+        for (int i = 0; i < doubles.length; i++) {
+            Assert.assertEquals(expected[i], encoded(doubles[i]));
+            Assert.assertEquals(expected[i], NumberEncoder.toString(doubles[i]));
+        }
+    }
+
+    @Test
+    public void testLongText() {
+        long[] longs = {0, 1, -1, 9, 10, Long.MAX_VALUE, Long.MIN_VALUE, 1500000000000L};
+        String[] expected = {"0", "1", "-1", "9", "10", "9223372036854775807", "-9223372036854775808", "1500000000000"};
+        for (int i = 0; i < longs.length; i++) {
+            Assert.assertEquals(expected[i], encoded(longs[i]));
+        }
+    }
+
+    @Test
+    public void testFallsBackToPlatform() {
+        float[] floats = {Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.MIN_VALUE, Float.MAX_VALUE, Float.MIN_NORMAL, 123456789f};
+        for (float value : floats) {
+            Assert.assertEquals(Float.toString(value), encoded(value));
+        }
+        double[] doubles = {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE, Double.MIN_NORMAL, 1e-3};
+        for (double value : doubles) {
+            Assert.assertEquals(Double.toString(value), encoded(value));
+        }
+    }
+
+    @Test
+    public void testFloatChecksum() {
+        // Sensor sized floats, a change to any of the texts changes the checksum
+        Random random = new Random(42);
+        CRC32 checksum = new CRC32();
+        for (int i = 0; i < 1000000; i++) {
+            float value = (float) (random.nextGaussian() * Math.pow(10, random.nextInt(13) - 6));
+            checksum.update(buffer, 0, encoder.encode(value, buffer, 0));
+        }
+        Assert.assertEquals(0x2d490240L, checksum.getValue());
+    }
+
+    @Test
+    public void testDoubleChecksum() {
+        Random random = new Random(42);
+        CRC32 checksum = new CRC32();
+        for (int i = 0; i < 1000000; i++) {
+            checksum.update(buffer, 0, encoder.encode(random.nextGaussian() * 1e4, buffer, 0));
+        }
+        Assert.assertEquals(0x431ab6bcL, checksum.getValue());
+    }
+
+    @Test
+    public void testLongChecksum() {
+        Random random = new Random(42);
+        CRC32 checksum = new CRC32();
+        for (int i = 0; i < 100000; i++) {
+            checksum.update(buffer, 0, encoder.encode(random.nextLong() >> random.nextInt(64), buffer, 0));
+        }
+        Assert.assertEquals(0x2ef48413L, checksum.getValue());
+    }
+}
@@ -0,0 +1,56 @@
+package com.telenor.possumcore.storage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RetentionPolicyTest {
+    @Test
+    public void testEntries() {
+        RetentionPolicy policy = RetentionPolicy.entries(10);
+        Assert.assertTrue(policy.isBoundedByEntries());
+        Assert.assertEquals(10, policy.maxEntries());
+        Assert.assertEquals(10, policy.initialCapacity());
+        Assert.assertFalse(policy.exceeds(10, 0, Long.MAX_VALUE, Long.MAX_VALUE));
+        Assert.assertTrue(policy.exceeds(11, 0, 0, 0));
+    }
+
+    @Test
+    public void testMillis() {
+        RetentionPolicy policy = RetentionPolicy.millis(3000);
+        Assert.assertFalse(policy.isBoundedByEntries());
+        Assert.assertEquals(Integer.MAX_VALUE, policy.maxEntries());
+        Assert.assertFalse(policy.exceeds(1000, 1000, 4000, Long.MAX_VALUE));
+        Assert.assertTrue(policy.exceeds(2, 999, 4000, 0));
+    }
+
+    @Test
+    public void testBytes() {
+        RetentionPolicy policy = RetentionPolicy.bytes(1024);
+        Assert.assertFalse(policy.exceeds(1000, 0, Long.MAX_VALUE, 1024));
+        Assert.assertTrue(policy.exceeds(1, 0, 0, 1025));
+    }
+
+    @Test
+    public void testCombined() {
+        RetentionPolicy policy = RetentionPolicy.millis(3000).withEntries(5);
+        Assert.assertEquals(5, policy.initialCapacity());
+        Assert.assertTrue(policy.exceeds(6, 0, 0, 0));
+        Assert.assertTrue(policy.exceeds(2, 0, 3001, 0));
+        Assert.assertFalse(policy.exceeds(5, 0, 3000, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidEntries() {
+        RetentionPolicy.entries(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMillis() {
+        RetentionPolicy.millis(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBytes() {
+        RetentionPolicy.bytes(-1);
+    }
+}
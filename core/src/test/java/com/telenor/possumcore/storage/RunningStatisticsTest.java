@@ -0,0 +1,125 @@
+package com.telenor.possumcore.storage;
+
+import com.telenor.possumcore.constants.ColumnType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class RunningStatisticsTest {
+    @Test
+    public void testMatchesTwoPassStatistics() {
+        RunningStatistics statistics = new RunningStatistics(DataSchema.floats(2));
+        Random random = new Random(3);
+        float[][] values = new float[1000][];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new float[]{(float) (random.nextGaussian() * 0.01 + 9.81), random.nextFloat() * 100 - 50};
+            statistics.add(1000 + i * 20, values[i]);
+        }
+        StatisticsSnapshot snapshot = statistics.snapshot();
+        Assert.assertEquals(1000, snapshot.samples());
+        Assert.assertEquals(2, snapshot.columns());
+        Assert.assertEquals(50, snapshot.rate(), 1e-9);
+        for (int column = 0; column < 2; column++) {
+            double sum = 0;
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (float[] value : values) {
+                sum += value[column];
+                min = Math.min(min, value[column]);
+                max = Math.max(max, value[column]);
+            }
+            double mean = sum / values.length;
+            double squares = 0;
+            for (float[] value : values) {
+                squares += (value[column] - mean) * (value[column] - mean);
+            }
+            Assert.assertEquals(mean, snapshot.mean(column), 1e-9);
+            Assert.assertEquals(squares / (values.length - 1), snapshot.variance(column), 1e-9 * squares);
+            Assert.assertEquals(min, snapshot.min(column), 0);
+            Assert.assertEquals(max, snapshot.max(column), 0);
+        }
+    }
+
+    @Test
+    public void testSnapshotDoesNotChange() {
+        RunningStatistics statistics = new RunningStatistics(DataSchema.floats(1));
+        statistics.add(0, new float[]{1});
+        statistics.add(100, new float[]{3});
+        StatisticsSnapshot snapshot = statistics.snapshot();
+        statistics.add(200, new float[]{100});
+        Assert.assertEquals(2, snapshot.samples());
+        Assert.assertEquals(2, snapshot.mean(0), 0);
+        Assert.assertEquals(2, snapshot.variance(0), 0);
+        Assert.assertEquals(10, snapshot.rate(), 0);
+        Assert.assertEquals(3, statistics.snapshot().samples());
+    }
+
+    @Test
+    public void testSkipsTextAndNaN() {
+        DataSchema schema = new DataSchema(ColumnType.Text, ColumnType.Int, ColumnType.Float);
+        RunningStatistics statistics = new RunningStatistics(schema);
+        Sample sample = new Sample(schema);
+        statistics.add(sample.timestamp(1).set(0, "mac").set(1, -70).set(2, Float.NaN));
+        statistics.add(sample.timestamp(2).set(0, "mac").set(1, -60).set(2, 1f));
+        StatisticsSnapshot snapshot = statistics.snapshot();
+        Assert.assertEquals(2, snapshot.samples());
+        Assert.assertEquals(0, snapshot.count(0));
+        Assert.assertTrue(Double.isNaN(snapshot.mean(0)));
+        Assert.assertEquals(-65, snapshot.mean(1), 0);
+        Assert.assertEquals(-70, snapshot.min(1), 0);
+        Assert.assertEquals(1, snapshot.count(2));
+        Assert.assertEquals(0, snapshot.variance(2), 0);
+    }
+
+    @Test
+    public void testBatchAndReset() {
+        RunningStatistics statistics = new RunningStatistics(DataSchema.floats(2));
+        statistics.addAll(new long[]{0, 10, 20}, new float[]{1, 2, 3, 4, 5, 6}, 3);
+        StatisticsSnapshot snapshot = statistics.snapshot();
+        Assert.assertEquals(3, snapshot.samples());
+        Assert.assertEquals(3, snapshot.mean(0), 0);
+        Assert.assertEquals(6, snapshot.max(1), 0);
+        Assert.assertEquals(100, snapshot.rate(), 0);
+        statistics.reset();
+        snapshot = statistics.snapshot();
+        Assert.assertEquals(0, snapshot.samples());
+        Assert.assertEquals(0, snapshot.rate(), 0);
+        Assert.assertTrue(Double.isNaN(snapshot.max(1)));
+    }
+
+    @Test
+    public void testSnapshotsWhileAddingOnAnotherThread() throws Exception {
+        final RunningStatistics statistics = new RunningStatistics(DataSchema.floats(2));
+        final int samples = 200000;
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                float[] values = new float[2];
+                for (int i = 1; i <= samples; i++) {
+                    values[0] = i;
+                    values[1] = -i;
+                    statistics.add(i, values);
+                }
+            }
+        });
+        writer.start();
+        long seen = 0;
+        while (seen < samples) {
+            // A snapshot torn between two samples would not mirror its columns
+            StatisticsSnapshot snapshot = statistics.snapshot();
+            Assert.assertTrue(snapshot.samples() >= seen);
+            seen = snapshot.samples();
+            Assert.assertEquals(seen, snapshot.count(0));
+            Assert.assertEquals(seen, snapshot.count(1));
+            Assert.assertEquals(seen, snapshot.lastTimestamp() - snapshot.firstTimestamp() + (seen > 0 ? 1 : 0));
+            if (seen > 0) {
+                Assert.assertEquals(seen, snapshot.max(0), 0);
+                Assert.assertEquals(-seen, snapshot.min(1), 0);
+                Assert.assertEquals(-snapshot.mean(0), snapshot.mean(1), 0);
+            }
+        }
+        writer.join();
+    }
+}
@@ -0,0 +1,65 @@
+package com.telenor.possumcore.storage;
+
+import com.telenor.possumcore.constants.ColumnType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SamplePoolTest {
+    private final DataSchema schema = new DataSchema(ColumnType.Text, ColumnType.Int);
+
+    @Test
+    public void testReusesSamples() {
+        SamplePool pool = new SamplePool(schema, 2);
+        Assert.assertEquals(2, pool.available());
+        Sample first = pool.acquire();
+        Sample second = pool.acquire();
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(0, pool.available());
+        Sample extra = pool.acquire();
+        Assert.assertSame(schema, extra.schema());
+        pool.release(first);
+        pool.release(second);
+        pool.release(extra); // No room, left for the garbage collector
+        Assert.assertEquals(2, pool.available());
+        Sample again = pool.acquire();
+        Assert.assertTrue(again == first || again == second);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsOtherSchema() {
+        new SamplePool(schema, 1).release(new Sample(DataSchema.floats(2)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new SamplePool(schema, 0);
+    }
+
+    @Test
+    public void testConcurrentBorrowing() throws Exception {
+        SamplePool pool = new SamplePool(schema, 2);
+        SampleRingBuffer buffer = new SampleRingBuffer(40000, schema);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    Sample sample = pool.acquire();
+                    sample.timestamp(i).set(0, "thread" + thread).set(1, thread);
+                    buffer.add(sample);
+                    pool.release(sample);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(40000, buffer.size());
+        for (int i = 0; i < buffer.size(); i++) {
+            Assert.assertEquals("thread" + (int) buffer.value(i, 1), buffer.text(i, 0));
+        }
+        Assert.assertEquals(2, pool.available());
+    }
+}
@@ -0,0 +1,190 @@
+package com.telenor.possumcore.storage;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.telenor.possumcore.constants.ColumnType;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+public class SampleRingBufferTest {
+    private SampleRingBuffer buffer;
+
+    @Before
+    public void setUp() {
+        buffer = new SampleRingBuffer(3, 3);
+    }
+
+    @Test
+    public void testInitialize() {
+        Assert.assertEquals(0, buffer.size());
+        Assert.assertEquals(3, buffer.limit());
+        Assert.assertEquals(3, buffer.columns());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLimit() {
+        new SampleRingBuffer(0, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidColumns() {
+        new SampleRingBuffer(3, 0);
+    }
+
+    @Test
+    public void testKeepsMostRecentSamples() {
+        for (int i = 0; i < 5; i++) {
+            buffer.add(i, new float[]{i, i + 0.5f, -i});
+        }
+        Assert.assertEquals(3, buffer.size());
+        Assert.assertEquals(2, buffer.timestamp(0));
+        Assert.assertEquals(4, buffer.timestamp(2));
+        Assert.assertEquals(3.5f, buffer.value(1, 1), 0);
+        Assert.assertEquals(-4f, buffer.value(2, 2), 0);
+        Assert.assertEquals(2, buffer.dropped());
+    }
+
+    @Test
+    public void testAddsBatch() {
+        float[] values = new float[15];
+        long[] timestamps = new long[5];
+        for (int i = 0; i < 5; i++) {
+            timestamps[i] = i;
+            values[i * 3] = i;
+            values[i * 3 + 2] = -i;
+        }
+        buffer.addAll(timestamps, values, 4);
+        Assert.assertEquals(3, buffer.size());
+        Assert.assertEquals(1, buffer.dropped());
+        Assert.assertEquals(1, buffer.timestamp(0));
+        Assert.assertEquals(3, buffer.value(2, 0), 0);
+        Assert.assertEquals(-3, buffer.value(2, 2), 0);
+    }
+
+    @Test
+    public void testIgnoresExtraValues() {
+        buffer.add(1, new float[]{1, 2, 3, 4, 5, 6});
+        Assert.assertEquals(4, buffer.get(0).size());
+    }
+
+    @Test
+    public void testJsonFormatMatchesStringConversion() {
+        buffer.add(1234567890123L, new float[]{0.1f, -9.80665f, 3f});
+        JsonArray data = buffer.get(0);
+        Assert.assertEquals(4, data.size());
+        Assert.assertEquals("1234567890123", data.get(0).getAsString());
+        Assert.assertEquals("" + 0.1f, data.get(1).getAsString());
+        Assert.assertEquals("" + -9.80665f, data.get(2).getAsString());
+        Assert.assertEquals("3.0", data.get(3).getAsString());
+    }
+
+    @Test
+    public void testClear() {
+        buffer.add(1, new float[]{1, 2, 3});
+        buffer.clear();
+        Assert.assertEquals(0, buffer.size());
+        Assert.assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void testSealIgnoresNewSamples() {
+        buffer.add(1, new float[]{1, 2, 3});
+        buffer.seal();
+        buffer.add(2, new float[]{1, 2, 3});
+        Assert.assertEquals(1, buffer.size());
+        Assert.assertEquals(0, buffer.dropped());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        buffer.add(1, new float[]{1, 2, 3});
+        buffer.get(1);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCannotAddJsonDirectly() {
+        buffer.add(new JsonArray());
+    }
+
+    @Test
+    public void testTypedColumns() {
+        DataSchema schema = new DataSchema(ColumnType.Text, ColumnType.Int, ColumnType.Double, ColumnType.Long);
+        SampleRingBuffer typed = new SampleRingBuffer(2, schema);
+        Sample sample = new Sample(schema);
+        typed.add(sample.timestamp(10).set(0, "mac").set(1, -70).set(2, 59.9).set(3, 42L));
+        typed.add(sample.timestamp(11).set(0, null).set(1, 1).set(2, 0.1).set(3, 43L));
+        Assert.assertEquals("mac", typed.text(0, 0));
+        Assert.assertEquals(-70, typed.value(0, 1), 0);
+        JsonArray first = typed.get(0);
+        Assert.assertEquals("10", first.get(0).getAsString());
+        Assert.assertEquals("mac", first.get(1).getAsString());
+        Assert.assertEquals("-70", first.get(2).getAsString());
+        Assert.assertEquals("" + 59.9, first.get(3).getAsString());
+        Assert.assertEquals("42", first.get(4).getAsString());
+        Assert.assertEquals(JsonNull.INSTANCE, typed.get(1).get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTextIsNotNumeric() {
+        SampleRingBuffer typed = new SampleRingBuffer(2, new DataSchema(ColumnType.Text));
+        typed.add(new Sample(typed.schema()).set(0, "text"));
+        typed.value(0, 0);
+    }
+
+    @Test
+    public void testKeepsTimeSpanAndGrows() {
+        SampleRingBuffer timed = new SampleRingBuffer(RetentionPolicy.millis(1000), DataSchema.floats(1));
+        for (int i = 0; i < 500; i++) {
+            timed.add(i * 5, new float[]{i});
+        }
+        Assert.assertEquals(201, timed.size());
+        Assert.assertTrue(timed.limit() >= 201);
+        Assert.assertEquals(1495, timed.timestamp(0));
+        Assert.assertEquals(499, timed.value(200, 0), 0);
+        Assert.assertEquals(299, timed.dropped());
+    }
+
+    @Test
+    public void testKeepsBytes() {
+        SampleRingBuffer sized = new SampleRingBuffer(RetentionPolicy.bytes(100), DataSchema.floats(3));
+        for (int i = 0; i < 10; i++) {
+            sized.add(i, new float[]{i, i, i});
+        }
+        Assert.assertEquals(5, sized.size()); // 20 bytes each
+        Assert.assertEquals(100, sized.bytesUsed());
+        Assert.assertEquals(5, sized.timestamp(0));
+    }
+
+    @Test
+    public void testTrimTo() {
+        SampleRingBuffer buffer = new SampleRingBuffer(10, 3);
+        for (int i = 0; i < 10; i++) {
+            buffer.add(i, new float[]{i, i, i});
+        }
+        Assert.assertEquals(200, buffer.bytesUsed());
+        Assert.assertEquals(120, buffer.trimTo(90));
+        Assert.assertEquals(4, buffer.size());
+        Assert.assertEquals(6, buffer.timestamp(0));
+        Assert.assertEquals(6, buffer.dropped());
+        Assert.assertEquals(0, buffer.trimTo(100));
+        Assert.assertEquals(80, buffer.trimTo(0));
+        Assert.assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testRange() {
+        for (int i = 0; i < 3; i++) {
+            buffer.add(i * 100, new float[]{i, i, i});
+        }
+        Assert.assertEquals(1, buffer.indexAt(50));
+        Assert.assertEquals(3, buffer.indexAt(201));
+        List<JsonArray> range = buffer.range(100, 300);
+        Assert.assertEquals(2, range.size());
+        Assert.assertEquals("100", range.get(0).get(0).getAsString());
+        Assert.assertEquals(0, buffer.range(0, 0).size());
+    }
+}
@@ -0,0 +1,41 @@
+package com.telenor.possumcore.storage;
+
+import com.telenor.possumcore.constants.ColumnType;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SampleTest {
+    private Sample sample;
+
+    @Before
+    public void setUp() {
+        sample = new Sample(new DataSchema(ColumnType.Float, ColumnType.Long, ColumnType.Text));
+    }
+
+    @Test
+    public void testSetValues() {
+        sample.timestamp(100).set(0, 1.5f).set(1, 12345678901L).set(2, "text");
+        Assert.assertEquals(100, sample.timestamp());
+        Assert.assertEquals(1.5, sample.real(0), 0);
+        Assert.assertEquals(12345678901L, sample.integer(1));
+        Assert.assertEquals("text", sample.text(2));
+    }
+
+    @Test
+    public void testIntegerColumnTruncatesReals() {
+        sample.set(1, 3.9);
+        Assert.assertEquals(3, sample.integer(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTextInNumericColumn() {
+        sample.set(0, "text");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNumberInTextColumn() {
+        sample.set(2, 1);
+    }
+}
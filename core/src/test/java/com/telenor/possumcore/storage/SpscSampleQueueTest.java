@@ -0,0 +1,94 @@
+package com.telenor.possumcore.storage;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpscSampleQueueTest {
+    private SpscSampleQueue queue;
+
+    @Before
+    public void setUp() {
+        queue = new SpscSampleQueue(3, DataSchema.floats(2));
+    }
+
+    @Test
+    public void testInitialize() {
+        Assert.assertEquals(0, queue.size());
+        Assert.assertEquals(3, queue.limit());
+        Assert.assertEquals(2, queue.columns());
+        Assert.assertEquals(0, queue.dropped());
+    }
+
+    @Test
+    public void testDropsNewestWhenFull() {
+        for (int i = 0; i < 5; i++) {
+            queue.add(i, new float[]{i, -i});
+        }
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals(2, queue.dropped());
+        Assert.assertEquals(0, queue.timestamp(0));
+        Assert.assertEquals(-2f, queue.value(2, 1), 0);
+    }
+
+    @Test
+    public void testAddsBatchUntilFull() {
+        queue.add(0, new float[]{0, 0});
+        queue.addAll(new long[]{1, 2, 3, 4}, new float[]{1, -1, 2, -2, 3, -3, 4, -4}, 4);
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals(2, queue.dropped());
+        Assert.assertEquals(2, queue.timestamp(2));
+        Assert.assertEquals(-2, queue.value(2, 1), 0);
+    }
+
+    @Test
+    public void testClearMakesRoom() {
+        for (int i = 0; i < 4; i++) {
+            queue.add(i, new float[]{i, i});
+        }
+        queue.clear();
+        Assert.assertTrue(queue.isEmpty());
+        queue.add(10, new float[]{1, 2});
+        Assert.assertEquals(1, queue.size());
+        Assert.assertEquals("10", queue.get(0).get(0).getAsString());
+        Assert.assertEquals("2.0", queue.get(0).get(2).getAsString());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        queue.add(1, new float[]{1, 2});
+        queue.get(1);
+    }
+
+    @Test
+    public void testProducerAndReaderOnDifferentThreads() throws Exception {
+        final SpscSampleQueue shared = new SpscSampleQueue(64, DataSchema.floats(1));
+        final int samples = 10000;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                float[] value = new float[1];
+                for (int i = 0; i < samples; i++) {
+                    value[0] = i;
+                    shared.add(i, value);
+                }
+            }
+        });
+        producer.start();
+        long read = 0;
+        long last = -1;
+        while (producer.isAlive() || !shared.isEmpty()) {
+            int size = shared.size();
+            for (int i = 0; i < size; i++) {
+                long timestamp = shared.timestamp(i);
+                Assert.assertTrue(timestamp > last);
+                Assert.assertEquals(timestamp, shared.value(i, 0), 0);
+                last = timestamp;
+            }
+            read += size;
+            shared.clear();
+        }
+        producer.join();
+        Assert.assertTrue(read + shared.dropped() <= samples); // Clearing also discards samples added after reading
+    }
+}
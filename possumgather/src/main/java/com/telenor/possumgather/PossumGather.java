@@ -6,7 +6,6 @@ import android.content.Intent;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
-import com.google.gson.JsonArray;
 import com.telenor.possumcore.PossumCore;
 import com.telenor.possumcore.abstractdetectors.AbstractDetector;
 import com.telenor.possumcore.constants.CoreStatus;
@@ -17,7 +16,11 @@ import com.telenor.possumcore.detectors.GyroScope;
 import com.telenor.possumcore.detectors.HardwareDetector;
 import com.telenor.possumcore.detectors.ImageDetector;
 import com.telenor.possumcore.detectors.LocationDetector;
+import com.telenor.possumcore.detectors.MultiSensorDetector;
 import com.telenor.possumcore.detectors.NetworkDetector;
+import com.telenor.possumcore.interfaces.ISensorDelivery;
+import com.telenor.possumcore.storage.JsonRecordWriter;
+import com.telenor.possumcore.storage.RetentionPolicy;
 import com.telenor.possumgather.upload.AmazonUploadService;
 import com.telenor.possumgather.utils.CountingOutputStream;
 import com.telenor.possumgather.utils.GatherUtils;
@@ -34,6 +37,8 @@ import java.util.zip.ZipOutputStream;
 public class PossumGather extends PossumCore {
     private static final String tag = PossumGather.class.getName();
     private static final String amazonCatalogue = "data.30012018";
+    private static final long sessionTime = 300000; // Maximum 5 minutes of listening before session is ended
+    private static final int batchLatency = 10000; // Sensors may hold events in their fifo for 10 seconds
 
     /**
      * Constructor for the gather library. Creating this instance will enable you to access and
@@ -44,7 +49,14 @@ public class PossumGather extends PossumCore {
      */
     public PossumGather(Context context, String uniqueUserId) {
         super(context, uniqueUserId);
-        setTimeOut(300000); // Maximum 5 minutes of listening before session is ended
+        setTimeOut(sessionTime);
+        // Keep the whole session compressed instead of only the last few seconds
+        for (AbstractDetector detector : detectors()) {
+            detector.storeCompressed(RetentionPolicy.millis(sessionTime));
+            // Nothing is read before the session ends, so let the sensors wake up less often
+            if (detector instanceof ISensorDelivery)
+                ((ISensorDelivery) detector).setMaxReportLatency(batchLatency);
+        }
     }
 
     /**
@@ -64,6 +76,7 @@ public class PossumGather extends PossumCore {
         addDetector(new LocationDetector(context));
         addDetector(new ImageDetector(context, "tensorflow_facerecognition.pb"));
         addDetector(new BluetoothDetector(context));
+        addDetector(new MultiSensorDetector(context));
     }
 
     /**
@@ -100,7 +113,8 @@ public class PossumGather extends PossumCore {
 
     /**
      * Stops any actual listening. Only fired if it is actually listening.
-     * When fired, it will store all data registered to file after zipping it.
+     * When fired, it will store all data registered to file after zipping it. The data is taken
+     * out of the detectors and streamed straight to the file.
      */
     @Override
     public void stopListening() {
@@ -115,27 +129,23 @@ public class PossumGather extends PossumCore {
         String version = version(context);
 
         for (AbstractDetector detector : detectors()) {
-            for (String dataSet : detector.dataStored().keySet()) {
+            for (String dataSet : detector.jsonKeys()) {
                 try {
                     String setName = dataSet.equals("default")?detector.detectorName():dataSet;
                     String fileName = String.format(Locale.US, "%s#%s#%s#%s#%s.zip", amazonCatalogue, version, setName, detector.getUserId(), detector.now());
-                    List<JsonArray> data = detector.dataStored().get(dataSet);
-                    if (data.size() > 0) {
+                    if (detector.dataSize(dataSet) > 0) {
                         File uploadFile = new File(storedCatalogue, fileName);
                         CountingOutputStream innerStream = new CountingOutputStream(new FileOutputStream(uploadFile));
                         try {
                             ZipOutputStream outerStream = GatherUtils.createZipStream(innerStream, dataSet);
-                            for (JsonArray value : data) {
-                                try {
-                                    if (outerStream != null) {
-                                        outerStream.write(value.toString().getBytes());
-                                        outerStream.write("\r\n".getBytes());
-                                    }
-                                } catch (Exception e) {
-                                    Log.e(tag, "AP: FailedToWrite:", e);
-                                }
+                            JsonRecordWriter records = new JsonRecordWriter(outerStream, "\r\n");
+                            detector.drainData(dataSet, records);
+                            try {
+                                records.flush();
+                            } catch (Exception e) {
+                                Log.e(tag, "AP: FailedToWrite:", e);
                             }
-                            if (outerStream != null) outerStream.close();
+                            outerStream.close();
                             innerStream.close();
                         } catch (Exception e) {
                             Log.i(tag, "AP: Failed to create zipStream:",e);